@@ -0,0 +1,100 @@
+package com.app.bookstore.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.app.bookstore.BookstoreApplication;
+import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.sequencer.PurchaseSequencer;
+import com.app.bookstore.services.PurchaseService;
+
+/**
+ * Many threads buy the same book at once, the clients of the store taking
+ * turns, with the purchases applied by the request threads (default), by the
+ * sequencer of the flash sale mode one transaction at a time (sequencer) and
+ * by the sequencer in batches of up to 32 purchases (group-commit). The stock of the book is large enough for
+ * the whole run, so every purchase succeeds. The sample time mode reports the
+ * percentiles of the latency of a purchase.
+ *
+ * Run with: gradle jmh -PjmhIncludes=FlashSaleBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class FlashSaleBenchmark {
+
+    private static final String HOT_ISBN = "9780743273565";
+    private static final int CLIENTS = 5;
+
+    @Param({ "default", "sequencer", "group-commit" })
+    public String mode;
+
+    private boolean flashSale;
+
+    private ConfigurableApplicationContext context;
+    private PurchaseService purchaseService;
+    private PurchaseSequencer purchaseSequencer;
+
+    @State(Scope.Thread)
+    public static class Buyer {
+        private OrderEntity order;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            order = OrderEntity.builder()
+                    .clientId(1L + threadParams.getThreadIndex() % CLIENTS)
+                    .purchasedBook(List.of(HOT_ISBN))
+                    .freeBooks(Collections.emptyList())
+                    .build();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        flashSale = !"default".equals(mode);
+        context = new SpringApplicationBuilder(BookstoreApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--bookstore.flash-sale.enabled=" + flashSale,
+                        "--bookstore.flash-sale.batch-size=" + ("group-commit".equals(mode) ? 32 : 1));
+        context.getBean(JdbcTemplate.class)
+                .update("UPDATE books SET quantity = 1000000000 WHERE isbn = ?", HOT_ISBN);
+        purchaseService = context.getBean(PurchaseService.class);
+        purchaseSequencer = context.getBean(PurchaseSequencer.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PurchaseEntity purchase(Buyer buyer) {
+        return flashSale ? purchaseSequencer.run(buyer.order) : purchaseService.run(buyer.order);
+    }
+}
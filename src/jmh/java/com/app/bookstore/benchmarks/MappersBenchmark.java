@@ -0,0 +1,109 @@
+package com.app.bookstore.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.app.bookstore.dtos.BooksDto;
+import com.app.bookstore.dtos.PurchaseDto;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.BooksEntity;
+import com.app.bookstore.entities.ClientEntity;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.mappers.BookStoreMapper;
+import com.app.bookstore.types.BookType;
+
+/**
+ * Maps the catalog and a purchase to their DTOs with the generated mapper and
+ * with the ModelMapper it replaced.
+ *
+ * Run with: gradle jmh -PjmhIncludes=MappersBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappersBenchmark {
+
+    @Param({ "1000" })
+    public int books;
+
+    private ModelMapper modelMapper;
+    private BookStoreMapper bookStoreMapper;
+    private BooksEntity catalog;
+    private PurchaseEntity purchase;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        bookStoreMapper = Mappers.getMapper(BookStoreMapper.class);
+
+        List<BookEntity> catalogBooks = new ArrayList<>();
+        for (int i = 0; i < books; i++) {
+            catalogBooks.add(BookEntity.builder()
+                    .id((long) i)
+                    .title("The Book Number " + i)
+                    .quantity((long) (i % 7))
+                    .type(BookType.values()[i % 3])
+                    .price(999L + i % 1000)
+                    .author("Author " + i % 97)
+                    .publisher("Publisher " + i % 13)
+                    .isbn(String.valueOf(9780000000000L + i))
+                    .description("The description of the book number " + i + ".")
+                    .publicationYear(1900 + i % 125)
+                    .build());
+        }
+        catalog = BooksEntity.builder().books(catalogBooks).catalogVersion(1L).catalogETag("\"1-1\"").build();
+        purchase = PurchaseEntity.builder()
+                .client(ClientEntity.builder().id(1L).name("John Doe").email("john.doe@example.com")
+                        .phone("1234567890").address("123 Main St").loyaltyPoints(120L).build())
+                .books(catalogBooks.subList(0, 5))
+                .loyaltyPoints(125L)
+                .totalPrice(6245L)
+                .purchaseDate(LocalDateTime.of(2025, 5, 1, 10, 15, 30))
+                .build();
+
+        // Mapped once, so the first call of ModelMapper, that builds its
+        // mappings, is not measured.
+        modelMapper.map(catalog, BooksDto.class);
+        modelMapper.map(purchase, PurchaseDto.class);
+    }
+
+    @Benchmark
+    public BooksDto catalogModelMapper() {
+        return modelMapper.map(catalog, BooksDto.class);
+    }
+
+    @Benchmark
+    public BooksDto catalogGeneratedMapper() {
+        return bookStoreMapper.toDto(catalog);
+    }
+
+    @Benchmark
+    public PurchaseDto purchaseModelMapper() {
+        return modelMapper.map(purchase, PurchaseDto.class);
+    }
+
+    @Benchmark
+    public PurchaseDto purchaseGeneratedMapper() {
+        return bookStoreMapper.toDto(purchase);
+    }
+}
@@ -0,0 +1,172 @@
+package com.app.bookstore.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.NormalizedOrderEntity;
+import com.app.bookstore.pricing.PricingRules;
+import com.app.bookstore.pricing.PricingTable;
+import com.app.bookstore.types.BookType;
+
+/**
+ * Prices the books of an order with the pricing table and with the switch on
+ * the type of book and the double factors it replaced. The units of every book
+ * are already counted, only the pricing is measured. The *Order benchmarks read
+ * the units from the maps of the order, the *Lines ones from arrays, so they
+ * measure only the arithmetic.
+ *
+ * Run with: gradle jmh -PjmhIncludes=PricingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PricingBenchmark {
+
+    @Param({ "10", "1000" })
+    public int books;
+
+    private List<BookEntity> orderBooks;
+    private NormalizedOrderEntity order;
+    private PricingTable rules;
+    private BookType[] types;
+    private long[] prices;
+    private long[] units;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderBooks = new ArrayList<>();
+        List<String> purchasedBooks = new ArrayList<>();
+        List<String> freeBooks = new ArrayList<>();
+        Map<String, Long> purchasedUnits = new LinkedHashMap<>();
+        Map<String, Long> freeUnits = new LinkedHashMap<>();
+        for (int i = 0; i < books; i++) {
+            String isbn = String.valueOf(9780000000000L + i);
+            orderBooks.add(BookEntity.builder()
+                    .id((long) i)
+                    .type(BookType.values()[i % 3])
+                    .price(999L + i % 1000)
+                    .isbn(isbn)
+                    .build());
+            purchasedUnits.put(isbn, 1L + i % 4);
+            for (int unit = 0; unit < 1 + i % 4; unit++) {
+                purchasedBooks.add(isbn);
+            }
+            if (i % 5 == 0) {
+                freeUnits.put(isbn, 1L);
+                freeBooks.add(isbn);
+            }
+        }
+        order = new NormalizedOrderEntity(1L, purchasedBooks, freeBooks, purchasedUnits, freeUnits);
+        rules = new PricingRules(new ClassPathResource("pricing-rules.properties")).current();
+
+        types = new BookType[books];
+        prices = new long[books];
+        units = new long[books];
+        for (int i = 0; i < books; i++) {
+            BookEntity book = orderBooks.get(i);
+            types[i] = book.getType();
+            prices[i] = book.getPrice();
+            units[i] = order.purchased(book.getIsbn())
+                    - (book.getType() == BookType.NEW_RELEASE ? 0L : order.free(book.getIsbn()));
+        }
+    }
+
+    @Benchmark
+    public long pricingTableLines() {
+        long totalPrice = 0L;
+        int lines = order.getPurchasedBooks().size();
+        for (int i = 0; i < types.length; i++) {
+            totalPrice += rules.price(types[i], prices[i], units[i], lines);
+        }
+        return totalPrice;
+    }
+
+    @Benchmark
+    public long switchWithDoublesLines() {
+        long totalPrice = 0L;
+        boolean discount = order.getPurchasedBooks().size() >= 3;
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case NEW_RELEASE:
+                    totalPrice += prices[i] * units[i];
+                    break;
+                case REGULAR:
+                    totalPrice += discount ? prices[i] * 0.9 * units[i] : prices[i] * units[i];
+                    break;
+                case OLD_EDITIONS:
+                    totalPrice += prices[i] * (discount ? 0.75 : 0.8) * units[i];
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+        return totalPrice;
+    }
+
+    @Benchmark
+    public long pricingTableOrder() {
+        long totalPrice = 0L;
+        int lines = order.getPurchasedBooks().size();
+        for (BookEntity book : orderBooks) {
+            long totalBooks = order.purchased(book.getIsbn());
+            if (rules.deductsFreeBooks(book.getType())) {
+                totalBooks -= order.free(book.getIsbn());
+            }
+            totalPrice += rules.price(book.getType(), book.getPrice(), totalBooks, lines);
+        }
+        return totalPrice;
+    }
+
+    @Benchmark
+    public long switchWithDoublesOrder() {
+        final long[] totalPrice = { 0L };
+        orderBooks.forEach(book -> {
+            long bookPrice = book.getPrice();
+            switch (book.getType()) {
+                case NEW_RELEASE:
+                    totalPrice[0] += bookPrice * order.purchased(book.getIsbn());
+                    break;
+                case REGULAR:
+                    long totalRegularBooks = order.purchased(book.getIsbn()) - order.free(book.getIsbn());
+                    if (order.getPurchasedBooks().size() >= 3) {
+                        totalPrice[0] += bookPrice * 0.9 * totalRegularBooks;
+                    } else {
+                        totalPrice[0] += bookPrice * totalRegularBooks;
+                    }
+                    break;
+                case OLD_EDITIONS:
+                    long totalOldBooks = order.purchased(book.getIsbn()) - order.free(book.getIsbn());
+                    if (order.getPurchasedBooks().size() >= 3) {
+                        totalPrice[0] += bookPrice * 0.75 * totalOldBooks;
+                    } else {
+                        totalPrice[0] += bookPrice * 0.8 * totalOldBooks;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        });
+        return totalPrice[0];
+    }
+}
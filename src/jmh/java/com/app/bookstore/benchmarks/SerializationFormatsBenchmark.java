@@ -0,0 +1,116 @@
+package com.app.bookstore.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.app.bookstore.dtos.BookDto;
+import com.app.bookstore.dtos.BooksDto;
+import com.app.bookstore.dtos.ClientDto;
+import com.app.bookstore.dtos.PurchaseDto;
+import com.app.bookstore.mappers.SparseFieldsFilter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encodes and decodes the catalog and a purchase with JSON, CBOR and Smile.
+ * The size of every payload, plain and gzip compressed, is printed on the
+ * setup of every trial.
+ *
+ * Run with: gradle jmh -PjmhIncludes=SerializationFormatsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationFormatsBenchmark {
+
+    @Param({ "json", "cbor", "smile" })
+    public String format;
+
+    @Param({ "1000" })
+    public int books;
+
+    private ObjectMapper objectMapper;
+    private BooksDto catalog;
+    private PurchaseDto purchase;
+    private byte[] encodedCatalog;
+    private byte[] encodedPurchase;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        JsonFactory factory = switch (format) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        };
+        objectMapper = new ObjectMapper(factory);
+        objectMapper.setFilterProvider(SparseFieldsFilter.ALL_FIELDS);
+
+        List<BookDto> catalogBooks = new ArrayList<>();
+        for (int i = 0; i < books; i++) {
+            catalogBooks.add(new BookDto("The Book Number " + i, i % 7, i % 3 == 0 ? "NEW_RELEASES" : "REGULAR",
+                    999L + i % 1000, "Author " + i % 97, "Publisher " + i % 13,
+                    String.valueOf(9780000000000L + i),
+                    "The description of the book number " + i + ", a story told in a few sentences.",
+                    1900 + i % 125));
+        }
+        catalog = new BooksDto(catalogBooks);
+        purchase = new PurchaseDto(
+                new ClientDto("John Doe", "john.doe@example.com", "1234567890", "123 Main St", 120L),
+                catalogBooks.subList(0, 5), 125L, 6245L, "2025-05-01T10:15:30");
+
+        encodedCatalog = objectMapper.writeValueAsBytes(catalog);
+        encodedPurchase = objectMapper.writeValueAsBytes(purchase);
+        System.out.printf("%n%s: catalog %d bytes (%d gzip), purchase %d bytes (%d gzip)%n", format,
+                encodedCatalog.length, gzipSize(encodedCatalog), encodedPurchase.length, gzipSize(encodedPurchase));
+    }
+
+    @Benchmark
+    public byte[] encodeCatalog() throws IOException {
+        return objectMapper.writeValueAsBytes(catalog);
+    }
+
+    @Benchmark
+    public BooksDto decodeCatalog() throws IOException {
+        return objectMapper.readValue(encodedCatalog, BooksDto.class);
+    }
+
+    @Benchmark
+    public byte[] encodePurchase() throws IOException {
+        return objectMapper.writeValueAsBytes(purchase);
+    }
+
+    @Benchmark
+    public PurchaseDto decodePurchase() throws IOException {
+        return objectMapper.readValue(encodedPurchase, PurchaseDto.class);
+    }
+
+    private static int gzipSize(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        }
+        return compressed.size();
+    }
+}
@@ -0,0 +1,119 @@
+package com.app.bookstore.catalog;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.repositories.BooksRepository;
+
+/**
+ * In-memory catalog of the books that are for sale.
+ * The catalog is loaded from the database when the application starts, before
+ * it accepts any purchase, and then it is kept up to date with the stock
+ * changes published by the purchases. A load after a purchase could read its
+ * stock and then apply its change again, or read the stock of the database
+ * before the inventory writes the units sold.
+ * Every change creates a new immutable snapshot that is published with a single
+ * volatile write, so the readers never block or take a lock. Only the writers
+ * are serialized.
+ */
+@Component
+public class BooksCatalog implements SmartInitializingSingleton {
+
+    private final BooksRepository booksRepository;
+    // Identifies this instance of the catalog, the versions start again from 1
+    // when the application is restarted.
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    // Number of times the catalog has been loaded, guarded by this.
+    private long generation;
+    private volatile CatalogSnapshot snapshot;
+
+    public BooksCatalog(BooksRepository booksRepository) {
+        this.booksRepository = booksRepository;
+    }
+
+    /**
+     * Loads the catalog once all the beans are created, so the data of the
+     * database is initialized, and before the web server is started.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        current();
+    }
+
+    /**
+     * Returns the current version of the catalog. Outside the application
+     * context it is loaded the first time it is read.
+     */
+    public CatalogSnapshot current() {
+        CatalogSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = load(1L);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Discards the current snapshot and loads the catalog again from the
+     * database. It must not run while there are purchases, a purchase that is
+     * committed and not published yet would be applied twice.
+     */
+    public synchronized void reload() {
+        CatalogSnapshot current = snapshot;
+        snapshot = load(current == null ? 1L : current.getVersion() + 1);
+    }
+
+    /**
+     * Publishes a new version of the catalog with the stock of the sold books
+     * reduced, or increased when units were added. It is executed once the transaction that changed the stock is
+     * committed, or right away when there is no transaction.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCatalogChanged(CatalogChangedEvent event) {
+        // The catalog is loaded at startup, it is only missing when it is used
+        // outside the application context and was never read.
+        if (snapshot == null || event.getSoldBooks() == null || event.getSoldBooks().isEmpty()) {
+            return;
+        }
+
+        snapshot = snapshot.withSoldBooks(event.getSoldBooks());
+    }
+
+    private CatalogSnapshot load(long version) {
+        List<BookEntity> availableBooks = booksRepository.findAllAvailableBooks();
+        if (availableBooks == null) {
+            availableBooks = Collections.emptyList();
+        }
+
+        BookEntity[] books = new BookEntity[availableBooks.size()];
+        LongIntHashMap slotsByIsbn = new LongIntHashMap(availableBooks.size());
+        Map<String, Integer> slotsByUnpackedIsbn = new HashMap<>();
+        for (int slot = 0; slot < books.length; slot++) {
+            // The catalog keeps its own copies, so the entities returned by the
+            // repository can be modified without changing the snapshot.
+            books[slot] = availableBooks.get(slot).toBuilder().build();
+
+            long packedIsbn = PackedIsbn.pack(books[slot].getIsbn());
+            if (packedIsbn != PackedIsbn.INVALID) {
+                slotsByIsbn.putIfAbsent(packedIsbn, slot);
+            } else if (books[slot].getIsbn() != null) {
+                slotsByUnpackedIsbn.putIfAbsent(books[slot].getIsbn(), slot);
+            }
+        }
+
+        return new CatalogSnapshot(epoch, ++generation, version, books, slotsByIsbn,
+                Collections.unmodifiableMap(slotsByUnpackedIsbn), new int[0]);
+    }
+}
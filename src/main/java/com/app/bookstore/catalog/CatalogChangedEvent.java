@@ -0,0 +1,19 @@
+package com.app.bookstore.catalog;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Event published when the stock of some books changes.
+ * It contains the number of units sold per book ISBN, so the in-memory
+ * catalog can be updated without reading the books table again. The units
+ * are negative when they were added to the stock, like the corrections of the
+ * inventory.
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogChangedEvent {
+    private final Map<String, Long> soldBooks;
+}
@@ -0,0 +1,48 @@
+package com.app.bookstore.catalog;
+
+import java.util.function.Function;
+
+/**
+ * Keeps an index built from the books of the catalog.
+ * The index is built the first time it is used and it is reused by all the
+ * snapshots of the same generation, as they have the same books in the same
+ * slots. The stock of the books must be read from the snapshot when the index
+ * is queried.
+ *
+ * @param <T> The type of the index.
+ */
+public final class CatalogIndexCache<T> {
+
+    private final Function<CatalogSnapshot, T> indexBuilder;
+    private volatile Entry<T> entry;
+
+    public CatalogIndexCache(Function<CatalogSnapshot, T> indexBuilder) {
+        this.indexBuilder = indexBuilder;
+    }
+
+    public T get(CatalogSnapshot snapshot) {
+        Entry<T> current = entry;
+        if (current != null && current.generation == snapshot.getGeneration()) {
+            return current.index;
+        }
+
+        synchronized (this) {
+            current = entry;
+            if (current == null || current.generation != snapshot.getGeneration()) {
+                current = new Entry<>(snapshot.getGeneration(), indexBuilder.apply(snapshot));
+                entry = current;
+            }
+            return current.index;
+        }
+    }
+
+    private static final class Entry<T> {
+        private final long generation;
+        private final T index;
+
+        private Entry(long generation, T index) {
+            this.generation = generation;
+            this.index = index;
+        }
+    }
+}
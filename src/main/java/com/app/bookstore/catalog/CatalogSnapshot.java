@@ -0,0 +1,138 @@
+package com.app.bookstore.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.app.bookstore.entities.BookEntity;
+
+/**
+ * Immutable view of the books catalog at a given version.
+ * The books are stored in slots that keep the same position for all the
+ * versions created from the same load, so the slot of a book can be used as a
+ * stable identifier by the catalog indexes. The books of a snapshot must not be
+ * modified, a new snapshot is created instead.
+ */
+public final class CatalogSnapshot {
+
+    private final String epoch;
+    private final long generation;
+    private final long version;
+    private final BookEntity[] books;
+    // Slots by packed ISBN, read only once the catalog is loaded. The ISBNs
+    // that cannot be packed are kept on a map.
+    private final LongIntHashMap slotsByIsbn;
+    private final Map<String, Integer> slotsByUnpackedIsbn;
+    // Slots whose book is different from the previous version.
+    private final int[] changedSlots;
+    private final List<BookEntity> availableBooks;
+
+    CatalogSnapshot(String epoch, long generation, long version, BookEntity[] books,
+            LongIntHashMap slotsByIsbn, Map<String, Integer> slotsByUnpackedIsbn, int[] changedSlots) {
+        this.epoch = epoch;
+        this.generation = generation;
+        this.version = version;
+        this.books = books;
+        this.slotsByIsbn = slotsByIsbn;
+        this.slotsByUnpackedIsbn = slotsByUnpackedIsbn;
+        this.changedSlots = changedSlots;
+
+        List<BookEntity> available = new ArrayList<>(books.length);
+        for (BookEntity book : books) {
+            if (!book.isSold()) {
+                available.add(book);
+            }
+        }
+        this.availableBooks = Collections.unmodifiableList(available);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // The snapshots of the same generation come from the same load of the
+    // catalog, so they have the same books in the same slots and only the stock
+    // is different.
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Strong entity tag of this version of the catalog. The version is prefixed
+     * with the epoch of the catalog, so the tags generated before a restart of
+     * the application are never matched by a different catalog.
+     */
+    public String getETag() {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    // Books that are available for sale, in the order they were loaded.
+    public List<BookEntity> getAvailableBooks() {
+        return availableBooks;
+    }
+
+    public int size() {
+        return books.length;
+    }
+
+    public BookEntity getBook(int slot) {
+        return books[slot];
+    }
+
+    public boolean isAvailable(int slot) {
+        return !books[slot].isSold();
+    }
+
+    // Returns the slot of the book with the given ISBN or -1 if it is not in the
+    // catalog. The ISBN can be written with or without hyphens.
+    public int getSlot(String isbn) {
+        long packed = PackedIsbn.pack(isbn);
+        if (packed != PackedIsbn.INVALID) {
+            return slotsByIsbn.get(packed);
+        }
+
+        Integer slot = isbn == null ? null : slotsByUnpackedIsbn.get(isbn);
+        return slot == null ? -1 : slot;
+    }
+
+    // Lets the indexes that depend on the stock apply only the books changed by
+    // this version when they have already applied the previous one. The array
+    // must not be modified.
+    int[] changedSlots() {
+        return changedSlots;
+    }
+
+    /**
+     * Creates the next version of the catalog with the stock of the sold books
+     * reduced. The books that are not changed are shared with this snapshot.
+     *
+     * @param soldBooks The number of units sold per ISBN, negative when units
+     *                  were added. A book with units added is available again.
+     * @return The new snapshot.
+     */
+    CatalogSnapshot withSoldBooks(Map<String, Long> soldBooks) {
+        BookEntity[] nextBooks = books.clone();
+        int[] changed = new int[soldBooks.size()];
+        int[] changedCount = new int[1];
+
+        soldBooks.forEach((isbn, units) -> {
+            int slot = getSlot(isbn);
+            if (slot < 0 || units == null || units == 0) {
+                return;
+            }
+
+            BookEntity book = nextBooks[slot];
+            long quantity = Math.max(0L, book.getQuantity() - units);
+            nextBooks[slot] = book.toBuilder()
+                    .quantity(quantity)
+                    .sold(units > 0 ? book.isSold() || quantity == 0L : quantity == 0L)
+                    .build();
+            changed[changedCount[0]++] = slot;
+        });
+
+        return new CatalogSnapshot(epoch, generation, version + 1, nextBooks, slotsByIsbn, slotsByUnpackedIsbn,
+                Arrays.copyOf(changed, changedCount[0]));
+    }
+}
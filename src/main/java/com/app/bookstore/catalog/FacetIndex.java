@@ -0,0 +1,346 @@
+package com.app.bookstore.catalog;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeMap;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.types.BookType;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Bitmaps of the books of the catalog by type, by decade of publication, by
+ * price band and by availability. Bit n of every bitmap is the book of slot n,
+ * so a filter is an AND of the bitmaps of the selected values, and the number
+ * of books of every value of a facet is the number of bits of its bitmap that
+ * are also set on the filter of the other facets.
+ */
+public final class FacetIndex {
+
+    private static final BookType[] TYPES = BookType.values();
+
+    private final int size;
+    private final int[] years;
+    private final long[] prices;
+    private final long[] all;
+    private final long[][] typeBits;
+    private final int[] decades;
+    private final long[][] decadeBits;
+    private final long[] priceBounds;
+    private final long[][] priceBandBits;
+    private volatile StockBits stock;
+
+    private FacetIndex(int size, int[] years, long[] prices, long[] all, long[][] typeBits, int[] decades,
+            long[][] decadeBits, long[] priceBounds, long[][] priceBandBits) {
+        this.size = size;
+        this.years = years;
+        this.prices = prices;
+        this.all = all;
+        this.typeBits = typeBits;
+        this.decades = decades;
+        this.decadeBits = decadeBits;
+        this.priceBounds = priceBounds;
+        this.priceBandBits = priceBandBits;
+    }
+
+    /**
+     * Builds the bitmaps of the books of the snapshot.
+     *
+     * @param snapshot    The catalog.
+     * @param priceBounds The prices, in cents and in ascending order, where a
+     *                    new price band starts.
+     */
+    public static FacetIndex build(CatalogSnapshot snapshot, long[] priceBounds) {
+        priceBounds = Arrays.stream(priceBounds).sorted().distinct().toArray();
+        int size = snapshot.size();
+        int words = (size + 63) >>> 6;
+        int[] years = new int[size];
+        long[] prices = new long[size];
+        long[] all = new long[words];
+        long[][] typeBits = new long[TYPES.length][words];
+        long[][] priceBandBits = new long[priceBounds.length + 1][words];
+        TreeMap<Integer, long[]> decadeBitsByDecade = new TreeMap<>();
+
+        for (int slot = 0; slot < size; slot++) {
+            BookEntity book = snapshot.getBook(slot);
+            set(all, slot);
+            if (book.getType() != null) {
+                set(typeBits[book.getType().ordinal()], slot);
+            }
+
+            // The books without year or price are not in any decade or band.
+            years[slot] = book.getPublicationYear() == null ? Integer.MIN_VALUE : book.getPublicationYear();
+            if (book.getPublicationYear() != null) {
+                set(decadeBitsByDecade.computeIfAbsent(decade(years[slot]), decade -> new long[words]), slot);
+            }
+            prices[slot] = book.getPrice() == null ? Long.MIN_VALUE : book.getPrice();
+            if (book.getPrice() != null) {
+                set(priceBandBits[priceBand(priceBounds, prices[slot])], slot);
+            }
+        }
+
+        int[] decades = decadeBitsByDecade.keySet().stream().mapToInt(Integer::intValue).toArray();
+        long[][] decadeBits = decadeBitsByDecade.values().toArray(new long[0][]);
+        return new FacetIndex(size, years, prices, all, typeBits, decades, decadeBits, priceBounds, priceBandBits);
+    }
+
+    /**
+     * Filters the books of the catalog and counts the books of every value of
+     * the facets. A null filter selects all the books.
+     *
+     * @param snapshot  The version of the catalog used for the availability.
+     * @param types     The types of the books.
+     * @param yearFrom  First year of publication, inclusive.
+     * @param yearTo    Last year of publication, inclusive.
+     * @param priceFrom Minimum price in cents, inclusive.
+     * @param priceTo   Maximum price in cents, inclusive.
+     * @param inStock   True for the available books, false for the sold ones.
+     * @param offset    Number of books to skip.
+     * @param limit     Maximum number of books.
+     * @return The slots of the books in slot order, the number of books found
+     *         and the counts of the facets.
+     */
+    public Results filter(CatalogSnapshot snapshot, Collection<BookType> types, Integer yearFrom, Integer yearTo,
+            Long priceFrom, Long priceTo, Boolean inStock, int offset, int limit) {
+        long[] inStockBits = inStockBits(snapshot);
+
+        long[] typeFilter = all;
+        if (types != null && !types.isEmpty()) {
+            typeFilter = new long[all.length];
+            for (BookType type : types) {
+                or(typeFilter, typeBits[type.ordinal()]);
+            }
+        }
+        long[] yearFilter = yearFrom == null && yearTo == null
+                ? all
+                : yearFilter(yearFrom == null ? Integer.MIN_VALUE + 1 : yearFrom,
+                        yearTo == null ? Integer.MAX_VALUE : yearTo);
+        long[] priceFilter = priceFrom == null && priceTo == null
+                ? all
+                : priceFilter(priceFrom == null ? Long.MIN_VALUE + 1 : priceFrom,
+                        priceTo == null ? Long.MAX_VALUE : priceTo);
+        long[] stockFilter = inStock == null ? all : inStock ? inStockBits : andNot(all, inStockBits);
+
+        // Every facet is counted with the filters of the other facets, so the
+        // counts are the books that would be found selecting that value.
+        int[] typeCounts = new int[TYPES.length];
+        for (int type = 0; type < TYPES.length; type++) {
+            typeCounts[type] = count(typeBits[type], yearFilter, priceFilter, stockFilter);
+        }
+        int[] decadeCounts = new int[decades.length];
+        for (int decade = 0; decade < decades.length; decade++) {
+            decadeCounts[decade] = count(decadeBits[decade], typeFilter, priceFilter, stockFilter);
+        }
+        int[] priceBandCounts = new int[priceBandBits.length];
+        for (int band = 0; band < priceBandBits.length; band++) {
+            priceBandCounts[band] = count(priceBandBits[band], typeFilter, yearFilter, stockFilter);
+        }
+        int inStockCount = count(inStockBits, typeFilter, yearFilter, priceFilter);
+        int soldCount = count(all, typeFilter, yearFilter, priceFilter) - inStockCount;
+
+        long[] matches = typeFilter.clone();
+        and(matches, yearFilter);
+        and(matches, priceFilter);
+        and(matches, stockFilter);
+
+        int totalHits = 0;
+        for (long word : matches) {
+            totalHits += Long.bitCount(word);
+        }
+        int[] slots = new int[Math.max(0, Math.min(limit, totalHits - offset))];
+        int skipped = 0;
+        int found = 0;
+        for (int slot = nextSetBit(matches, 0); slot >= 0 && found < slots.length; slot = nextSetBit(matches, slot + 1)) {
+            if (skipped++ >= offset) {
+                slots[found++] = slot;
+            }
+        }
+
+        return new Results(slots, totalHits, typeCounts, decadeCounts, priceBandCounts, inStockCount, soldCount);
+    }
+
+    public BookType[] getTypes() {
+        return TYPES;
+    }
+
+    public int[] getDecades() {
+        return decades;
+    }
+
+    // Label of the price band, with the prices in cents.
+    public String getPriceBandLabel(int band) {
+        if (band == priceBounds.length) {
+            return priceBounds.length == 0 ? "0+" : priceBounds[band - 1] + "+";
+        }
+        return (band == 0 ? 0 : priceBounds[band - 1]) + "-" + (priceBounds[band] - 1);
+    }
+
+    // The availability changes with every version of the catalog. The bitmap of
+    // a version is a copy of the previous one with the changed slots updated, so
+    // the queries of the previous version can keep using it.
+    private long[] inStockBits(CatalogSnapshot snapshot) {
+        StockBits current = stock;
+        if (current != null && current.version == snapshot.getVersion()) {
+            return current.bits;
+        }
+
+        long[] bits;
+        if (current != null && current.version == snapshot.getVersion() - 1) {
+            bits = current.bits.clone();
+            for (int slot : snapshot.changedSlots()) {
+                if (snapshot.isAvailable(slot)) {
+                    set(bits, slot);
+                } else {
+                    bits[slot >>> 6] &= ~(1L << slot);
+                }
+            }
+        } else {
+            bits = new long[all.length];
+            for (int slot = 0; slot < size; slot++) {
+                if (snapshot.isAvailable(slot)) {
+                    set(bits, slot);
+                }
+            }
+        }
+
+        // Only a newer version replaces the cached one.
+        StockBits next = new StockBits(snapshot.getVersion(), bits);
+        synchronized (this) {
+            if (stock == null || stock.version < next.version) {
+                stock = next;
+            }
+        }
+        return bits;
+    }
+
+    // The decades inside the range are taken as they are, only the books of the
+    // decades on the edges of the range are checked one by one.
+    private long[] yearFilter(int from, int to) {
+        long[] filter = new long[all.length];
+        for (int i = 0; i < decades.length; i++) {
+            int first = decades[i];
+            int last = first + 9;
+            if (last < from || first > to) {
+                continue;
+            }
+            if (first >= from && last <= to) {
+                or(filter, decadeBits[i]);
+                continue;
+            }
+            for (int slot = nextSetBit(decadeBits[i], 0); slot >= 0; slot = nextSetBit(decadeBits[i], slot + 1)) {
+                if (years[slot] >= from && years[slot] <= to) {
+                    set(filter, slot);
+                }
+            }
+        }
+        return filter;
+    }
+
+    private long[] priceFilter(long from, long to) {
+        long[] filter = new long[all.length];
+        for (int band = 0; band < priceBandBits.length; band++) {
+            long first = band == 0 ? Long.MIN_VALUE + 1 : priceBounds[band - 1];
+            long last = band == priceBounds.length ? Long.MAX_VALUE : priceBounds[band] - 1;
+            if (last < from || first > to) {
+                continue;
+            }
+            if (first >= from && last <= to) {
+                or(filter, priceBandBits[band]);
+                continue;
+            }
+            long[] bits = priceBandBits[band];
+            for (int slot = nextSetBit(bits, 0); slot >= 0; slot = nextSetBit(bits, slot + 1)) {
+                if (prices[slot] >= from && prices[slot] <= to) {
+                    set(filter, slot);
+                }
+            }
+        }
+        return filter;
+    }
+
+    private static int decade(int year) {
+        return Math.floorDiv(year, 10) * 10;
+    }
+
+    private static int priceBand(long[] priceBounds, long price) {
+        int band = 0;
+        while (band < priceBounds.length && price >= priceBounds[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    private static int count(long[] bits, long[] first, long[] second, long[] third) {
+        int count = 0;
+        for (int i = 0; i < bits.length; i++) {
+            count += Long.bitCount(bits[i] & first[i] & second[i] & third[i]);
+        }
+        return count;
+    }
+
+    private static void set(long[] bits, int slot) {
+        bits[slot >>> 6] |= 1L << slot;
+    }
+
+    private static void or(long[] target, long[] bits) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] |= bits[i];
+        }
+    }
+
+    private static void and(long[] target, long[] bits) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] &= bits[i];
+        }
+    }
+
+    private static long[] andNot(long[] bits, long[] excluded) {
+        long[] result = new long[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            result[i] = bits[i] & ~excluded[i];
+        }
+        return result;
+    }
+
+    private static int nextSetBit(long[] bits, int from) {
+        int index = from >>> 6;
+        if (index >= bits.length) {
+            return -1;
+        }
+        long word = bits[index] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (index << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++index == bits.length) {
+                return -1;
+            }
+            word = bits[index];
+        }
+    }
+
+    private static final class StockBits {
+        private final long version;
+        private final long[] bits;
+
+        private StockBits(long version, long[] bits) {
+            this.version = version;
+            this.bits = bits;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Results {
+        private final int[] slots;
+        private final int totalHits;
+        // Counts in the order of getTypes, getDecades and the price bands.
+        private final int[] typeCounts;
+        private final int[] decadeCounts;
+        private final int[] priceBandCounts;
+        private final int inStockCount;
+        private final int soldCount;
+    }
+}
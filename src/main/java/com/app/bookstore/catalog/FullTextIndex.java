@@ -0,0 +1,183 @@
+package com.app.bookstore.catalog;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.app.bookstore.entities.BookEntity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Inverted index over the title and the description of the books, ranked with
+ * BM25. Every term keeps the sorted slots of the books that contain it and the
+ * number of times it appears on each of them, so a query only reads the
+ * postings of its own terms.
+ */
+public final class FullTextIndex {
+
+    // Saturation of the term frequency and normalization by the length of the
+    // text, the usual values of BM25.
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final int[] NO_SLOTS = new int[0];
+    private static final ThreadLocal<float[]> SCORES = ThreadLocal.withInitial(() -> new float[0]);
+
+    private final Map<String, Integer> termIds;
+    private final int[][] slots;
+    private final int[][] frequencies;
+    private final int[] lengths;
+    private final float averageLength;
+
+    private FullTextIndex(Map<String, Integer> termIds, int[][] slots, int[][] frequencies, int[] lengths,
+            float averageLength) {
+        this.termIds = termIds;
+        this.slots = slots;
+        this.frequencies = frequencies;
+        this.lengths = lengths;
+        this.averageLength = averageLength;
+    }
+
+    public static FullTextIndex build(CatalogSnapshot snapshot) {
+        int size = snapshot.size();
+        Map<String, Integer> termIds = new HashMap<>();
+        int[] documentFrequencies = new int[1024];
+        int[][] terms = new int[size][];
+        int[] lengths = new int[size];
+        long totalLength = 0;
+
+        // The first pass gives an id to every term and keeps the terms of every
+        // book, so the postings are allocated with their final size.
+        Map<Integer, Integer> bookTerms = new HashMap<>();
+        for (int slot = 0; slot < size; slot++) {
+            String[] words = tokenize(snapshot.getBook(slot));
+            bookTerms.clear();
+            for (String word : words) {
+                int id = termIds.computeIfAbsent(word, term -> termIds.size());
+                bookTerms.merge(id, 1, Integer::sum);
+            }
+
+            // The terms are stored as pairs of id and frequency.
+            int[] pairs = new int[bookTerms.size() * 2];
+            int position = 0;
+            for (Map.Entry<Integer, Integer> term : bookTerms.entrySet()) {
+                int id = term.getKey();
+                if (id >= documentFrequencies.length) {
+                    documentFrequencies = Arrays.copyOf(documentFrequencies, Math.max(id + 1, id * 2));
+                }
+                documentFrequencies[id]++;
+                pairs[position++] = id;
+                pairs[position++] = term.getValue();
+            }
+            terms[slot] = pairs;
+            lengths[slot] = words.length;
+            totalLength += words.length;
+        }
+
+        int[][] slots = new int[termIds.size()][];
+        int[][] frequencies = new int[termIds.size()][];
+        for (int id = 0; id < slots.length; id++) {
+            slots[id] = new int[documentFrequencies[id]];
+            frequencies[id] = new int[documentFrequencies[id]];
+        }
+
+        // The second pass fills the postings in slot order, so they are sorted.
+        int[] filled = new int[slots.length];
+        for (int slot = 0; slot < size; slot++) {
+            int[] pairs = terms[slot];
+            for (int i = 0; i < pairs.length; i += 2) {
+                int id = pairs[i];
+                slots[id][filled[id]] = slot;
+                frequencies[id][filled[id]++] = pairs[i + 1];
+            }
+        }
+
+        float averageLength = size == 0 ? 0 : (float) totalLength / size;
+        return new FullTextIndex(termIds, slots, frequencies, lengths, averageLength);
+    }
+
+    /**
+     * Searches the available books that contain any of the terms of the query.
+     *
+     * @param snapshot The version of the catalog used to check the availability.
+     * @param query    The text to search.
+     * @param offset   Number of results to skip.
+     * @param limit    Maximum number of results.
+     * @return The slots of the books, the most relevant first, and the number of
+     *         books found.
+     */
+    public Results search(CatalogSnapshot snapshot, String query, int offset, int limit) {
+        String[] queryTerms = Arrays.stream(TextNormalizer.words(TextNormalizer.normalize(query)))
+                .distinct()
+                .toArray(String[]::new);
+
+        float[] scores = SCORES.get();
+        if (scores.length < lengths.length) {
+            scores = new float[lengths.length];
+            SCORES.set(scores);
+        }
+
+        int[] touched = new int[16];
+        int touchedSize = 0;
+        for (String term : queryTerms) {
+            Integer id = termIds.get(term);
+            if (id == null) {
+                continue;
+            }
+
+            int[] termSlots = slots[id];
+            int[] termFrequencies = frequencies[id];
+            float idf = (float) Math.log(1 + (lengths.length - termSlots.length + 0.5) / (termSlots.length + 0.5));
+            for (int i = 0; i < termSlots.length; i++) {
+                int slot = termSlots[i];
+                if (scores[slot] == 0) {
+                    if (touchedSize == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedSize * 2);
+                    }
+                    touched[touchedSize++] = slot;
+                }
+                float frequency = termFrequencies[i];
+                float norm = K1 * (1 - B + B * lengths[slot] / averageLength);
+                scores[slot] += idf * frequency * (K1 + 1) / (frequency + norm);
+            }
+        }
+
+        // The score and the slot are packed in a long, so the results are sorted
+        // without boxing. The scores are positive, so the order of their bits is
+        // the order of the scores, and the lower slot goes first on a tie.
+        long[] ranked = new long[touchedSize];
+        int hits = 0;
+        for (int i = 0; i < touchedSize; i++) {
+            int slot = touched[i];
+            if (snapshot.isAvailable(slot)) {
+                ranked[hits++] = ((long) Float.floatToIntBits(scores[slot]) << 32) | (Integer.MAX_VALUE - slot);
+            }
+            scores[slot] = 0;
+        }
+        Arrays.sort(ranked, 0, hits);
+
+        int from = Math.min(offset, hits);
+        int[] page = new int[Math.min(limit, hits - from)];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = Integer.MAX_VALUE - (int) ranked[hits - 1 - from - i];
+        }
+        return new Results(page.length == 0 ? NO_SLOTS : page, hits);
+    }
+
+    private static String[] tokenize(BookEntity book) {
+        String title = TextNormalizer.normalize(book.getTitle());
+        String description = TextNormalizer.normalize(book.getDescription());
+        return TextNormalizer.words(title.isEmpty() || description.isEmpty()
+                ? title + description
+                : title + " " + description);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Results {
+        private final int[] slots;
+        private final int totalHits;
+    }
+}
@@ -0,0 +1,279 @@
+package com.app.bookstore.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.app.bookstore.entities.BookEntity;
+
+import de.uni_jena.cs.fusion.similarity.jarowinkler.JaroWinklerSimilarity;
+
+/**
+ * Typo tolerant index over the title and the author of the books.
+ * The words are split in trigrams and every trigram keeps the sorted list of
+ * the slots that contain it. A query only scores with Jaro-Winkler the books
+ * that share enough trigrams with it, instead of comparing it with every book
+ * of the catalog.
+ */
+public final class FuzzySearchIndex {
+
+    // Share of the trigrams of the query that a book needs to be a candidate.
+    private static final double MIN_TRIGRAM_OVERLAP = 0.3;
+    // Trigrams contained in more than this share of the books (like the first
+    // letters of a common word) are too frequent to select candidates.
+    private static final double MAX_TRIGRAM_SHARE = 0.05;
+    // Maximum number of candidates scored with Jaro-Winkler per query.
+    private static final int MAX_CANDIDATES = 128;
+
+    private static final int[] NO_SLOTS = new int[0];
+    private static final ThreadLocal<int[]> TRIGRAM_COUNTS = ThreadLocal.withInitial(() -> NO_SLOTS);
+
+    private final LongIntHashMap trigramIds;
+    private final int[][] postings;
+    private final String[] titles;
+    private final String[] authors;
+    private final String[][] titleWords;
+    private final String[][] authorWords;
+
+    private FuzzySearchIndex(LongIntHashMap trigramIds, int[][] postings, String[] titles, String[] authors) {
+        this.trigramIds = trigramIds;
+        this.postings = postings;
+        this.titles = titles;
+        this.authors = authors;
+        this.titleWords = new String[titles.length][];
+        this.authorWords = new String[authors.length][];
+        for (int slot = 0; slot < titles.length; slot++) {
+            titleWords[slot] = TextNormalizer.words(titles[slot]);
+            authorWords[slot] = TextNormalizer.words(authors[slot]);
+        }
+    }
+
+    public static FuzzySearchIndex build(CatalogSnapshot snapshot) {
+        int size = snapshot.size();
+        String[] titles = new String[size];
+        String[] authors = new String[size];
+        LongIntHashMap trigramIds = new LongIntHashMap(1024);
+        int[] frequencies = new int[1024];
+
+        // The first pass gives an id to every trigram and counts the books that
+        // contain it, so the posting lists are allocated with their final size.
+        for (int slot = 0; slot < size; slot++) {
+            BookEntity book = snapshot.getBook(slot);
+            titles[slot] = TextNormalizer.normalize(book.getTitle());
+            authors[slot] = TextNormalizer.normalize(book.getAuthor());
+
+            for (long trigram : trigrams(titles[slot] + " " + authors[slot])) {
+                int id = trigramIds.putIfAbsent(trigram, trigramIds.size());
+                if (id == LongIntHashMap.MISSING) {
+                    id = trigramIds.size() - 1;
+                    if (id == frequencies.length) {
+                        frequencies = Arrays.copyOf(frequencies, id * 2);
+                    }
+                }
+                frequencies[id]++;
+            }
+        }
+
+        int[][] postings = new int[trigramIds.size()][];
+        for (int id = 0; id < postings.length; id++) {
+            postings[id] = new int[frequencies[id]];
+        }
+
+        // The second pass fills the posting lists in slot order, so they are sorted.
+        int[] filled = new int[postings.length];
+        for (int slot = 0; slot < size; slot++) {
+            for (long trigram : trigrams(titles[slot] + " " + authors[slot])) {
+                int id = trigramIds.get(trigram);
+                postings[id][filled[id]++] = slot;
+            }
+        }
+
+        return new FuzzySearchIndex(trigramIds, postings, titles, authors);
+    }
+
+    /**
+     * Searches the books whose title or author is similar to the query.
+     *
+     * @param snapshot The version of the catalog used to check the availability.
+     * @param query    The text to search.
+     * @param minScore Minimum Jaro-Winkler similarity of the results.
+     * @param limit    Maximum number of results.
+     * @return The slots of the available books, the most similar first.
+     */
+    public int[] search(CatalogSnapshot snapshot, String query, double minScore, int limit) {
+        String normalizedQuery = TextNormalizer.normalize(query);
+        long[] queryTrigrams = trigrams(normalizedQuery);
+        if (queryTrigrams.length == 0) {
+            return NO_SLOTS;
+        }
+
+        int[] candidates = candidates(snapshot, queryTrigrams);
+        int queryWordCount = TextNormalizer.words(normalizedQuery).length;
+
+        List<ScoredSlot> results = new ArrayList<>();
+        for (int slot : candidates) {
+            double score = Math.max(
+                    score(normalizedQuery, queryWordCount, titles[slot], titleWords[slot], minScore),
+                    score(normalizedQuery, queryWordCount, authors[slot], authorWords[slot], minScore));
+            if (score >= minScore) {
+                results.add(new ScoredSlot(slot, score));
+            }
+        }
+
+        results.sort((a, b) -> a.score != b.score ? Double.compare(b.score, a.score) : Integer.compare(a.slot, b.slot));
+
+        int[] slots = new int[Math.min(limit, results.size())];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = results.get(i).slot;
+        }
+        return slots;
+    }
+
+    // Returns the available books that share more trigrams with the query.
+    private int[] candidates(CatalogSnapshot snapshot, long[] queryTrigrams) {
+        List<int[]> lists = new ArrayList<>(queryTrigrams.length);
+        for (long trigram : queryTrigrams) {
+            int id = trigramIds.get(trigram);
+            lists.add(id == LongIntHashMap.MISSING ? NO_SLOTS : postings[id]);
+        }
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+
+        // The too frequent trigrams are ignored, unless the query has no other ones.
+        int maxListLength = Math.max(MAX_CANDIDATES, (int) (titles.length * MAX_TRIGRAM_SHARE));
+        int selective = 0;
+        while (selective < lists.size() && lists.get(selective).length <= maxListLength) {
+            selective++;
+        }
+        if (selective > 0) {
+            lists = lists.subList(0, selective);
+        }
+
+        // A book that shares minOverlap trigrams with the query is in at least one
+        // of the (trigrams - minOverlap + 1) shortest lists. Only those lists are
+        // scanned, the longest ones are only used to count the overlap of the
+        // books already found.
+        int minOverlap = Math.max(1, (int) Math.ceil(lists.size() * MIN_TRIGRAM_OVERLAP));
+        int scannedLists = lists.size() - minOverlap + 1;
+
+        int[] counts = TRIGRAM_COUNTS.get();
+        if (counts.length < titles.length) {
+            counts = new int[titles.length];
+            TRIGRAM_COUNTS.set(counts);
+        }
+
+        SlotList touched = new SlotList();
+        for (int list = 0; list < scannedLists; list++) {
+            for (int slot : lists.get(list)) {
+                if (counts[slot]++ == 0) {
+                    touched.add(slot);
+                }
+            }
+        }
+
+        // The candidates are grouped by the number of shared trigrams, so the
+        // best ones are taken without sorting all of them.
+        SlotList[] byOverlap = new SlotList[lists.size() + 1];
+        for (int i = 0; i < touched.size; i++) {
+            int slot = touched.slots[i];
+            int overlap = counts[slot];
+            counts[slot] = 0;
+            // The sold books are skipped here, so they do not take the place
+            // of an available book in the candidates.
+            if (!snapshot.isAvailable(slot)) {
+                continue;
+            }
+            for (int list = scannedLists; list < lists.size(); list++) {
+                if (Arrays.binarySearch(lists.get(list), slot) >= 0) {
+                    overlap++;
+                }
+            }
+
+            if (overlap >= minOverlap) {
+                if (byOverlap[overlap] == null) {
+                    byOverlap[overlap] = new SlotList();
+                }
+                byOverlap[overlap].add(slot);
+            }
+        }
+
+        SlotList candidates = new SlotList();
+        for (int overlap = lists.size(); overlap >= minOverlap && candidates.size < MAX_CANDIDATES; overlap--) {
+            SlotList slots = byOverlap[overlap];
+            for (int i = 0; slots != null && i < slots.size && candidates.size < MAX_CANDIDATES; i++) {
+                candidates.add(slots.slots[i]);
+            }
+        }
+        return candidates.toArray();
+    }
+
+    // The query is compared with the whole text and with every group of
+    // consecutive words of the text with the same number of words as the query.
+    private static double score(String query, int queryWordCount, String text, String[] words, double minScore) {
+        double best = similarity(query, text, minScore);
+        for (int start = 0; queryWordCount < words.length && start + queryWordCount <= words.length; start++) {
+            String window = queryWordCount == 1
+                    ? words[start]
+                    : String.join(" ", Arrays.copyOfRange(words, start, start + queryWordCount));
+            best = Math.max(best, similarity(query, window, minScore));
+        }
+        return best;
+    }
+
+    private static double similarity(String query, String text, double minScore) {
+        if (text.isEmpty()) {
+            return 0;
+        }
+        Double similarity = JaroWinklerSimilarity.of(query, text, minScore);
+        return similarity == null ? 0 : similarity;
+    }
+
+    // Every word is padded with two spaces at the beginning and one at the end,
+    // so the short words and the beginning of the words have their own trigrams.
+    // The trigrams are returned sorted and without duplicates.
+    static long[] trigrams(String normalized) {
+        long[] trigrams = new long[normalized.length() * 2 + 2];
+        int size = 0;
+        for (String word : TextNormalizer.words(normalized)) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams[size++] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            }
+        }
+
+        Arrays.sort(trigrams, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static final class ScoredSlot {
+        private final int slot;
+        private final double score;
+
+        private ScoredSlot(int slot, double score) {
+            this.slot = slot;
+            this.score = score;
+        }
+    }
+
+    // Growable list of slots without boxing.
+    private static final class SlotList {
+        private int[] slots = new int[8];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(slots, size);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.app.bookstore.catalog;
+
+/**
+ * Open addressing hash map from long keys to non negative int values, without
+ * boxing. It is used by the catalog indexes to map packed keys (trigrams,
+ * ISBNs) to dense ids or slots. It is not thread safe while it is written, the
+ * indexes only read it once they are built.
+ */
+public final class LongIntHashMap {
+
+    public static final int MISSING = -1;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    // The values are stored plus one, so 0 marks an empty bucket.
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int get(long key) {
+        int bucket = bucket(key);
+        while (values[bucket] != 0) {
+            if (keys[bucket] == key) {
+                return values[bucket] - 1;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Associates the value to the key if the key is not in the map yet.
+     *
+     * @return The value already associated to the key, or MISSING if the value
+     *         has been added.
+     */
+    public int putIfAbsent(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("The value cannot be negative: " + value);
+        }
+
+        int bucket = bucket(key);
+        while (values[bucket] != 0) {
+            if (keys[bucket] == key) {
+                return values[bucket] - 1;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+
+        keys[bucket] = key;
+        values[bucket] = value + 1;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        return MISSING;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int bucket(long key) {
+        // Mixes the bits of the key (murmur3 finalizer), the packed keys are not
+        // well distributed on the low bits.
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int bucket = bucket(oldKeys[i]);
+                while (values[bucket] != 0) {
+                    bucket = (bucket + 1) & mask;
+                }
+                keys[bucket] = oldKeys[i];
+                values[bucket] = oldValues[i];
+            }
+        }
+    }
+
+}
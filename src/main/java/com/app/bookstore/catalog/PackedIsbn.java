@@ -0,0 +1,67 @@
+package com.app.bookstore.catalog;
+
+/**
+ * Packs an ISBN in a long, so the catalog indexes can look up the books by ISBN
+ * without hashing or boxing strings. The hyphens and the spaces are ignored and
+ * an ISBN-10 is packed as the equivalent ISBN-13. The check digit is kept as it
+ * is, it is not validated.
+ */
+public final class PackedIsbn {
+
+    public static final long INVALID = -1L;
+
+    private PackedIsbn() {
+    }
+
+    /**
+     * @return The 13 digits of the ISBN as a number, or INVALID if the text is
+     *         not an ISBN-10 or an ISBN-13.
+     */
+    public static long pack(String isbn) {
+        if (isbn == null) {
+            return INVALID;
+        }
+
+        long packed = 0;
+        int digits = 0;
+        boolean tenthIsX = false;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (c >= '0' && c <= '9' && !tenthIsX && digits < 13) {
+                packed = packed * 10 + (c - '0');
+                digits++;
+            } else if ((c == 'X' || c == 'x') && digits == 9) {
+                tenthIsX = true;
+                digits++;
+            } else {
+                return INVALID;
+            }
+        }
+
+        if (digits == 13 && !tenthIsX) {
+            return packed;
+        }
+        if (digits == 10) {
+            // The ISBN-13 of an ISBN-10 is 978 followed by its first 9 digits and
+            // a new check digit.
+            long body = 978_000_000_000L + (tenthIsX ? packed : packed / 10);
+            return body * 10 + checkDigit(body);
+        }
+        return INVALID;
+    }
+
+    // Check digit of an ISBN-13 from its first 12 digits: the digits are
+    // weighted 1 and 3 alternately from the left.
+    private static int checkDigit(long body) {
+        int sum = 0;
+        for (int position = 12; position >= 1; position--) {
+            int digit = (int) (body % 10);
+            sum += position % 2 == 0 ? digit * 3 : digit;
+            body /= 10;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,283 @@
+package com.app.bookstore.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.types.SuggestionType;
+
+/**
+ * Prefix index of the titles, the authors and the publishers of the books,
+ * used to complete the text of the search box.
+ * Every suggestion is stored with all its word suffixes ("the hobbit" and
+ * "hobbit") in a sorted array, so the keys that start with a prefix are a range
+ * found with a binary search. A max segment tree over that array keeps the
+ * available units of every suggestion, so the suggestions with more stock of a
+ * range are found without reading the whole range.
+ */
+public final class SuggestionIndex {
+
+    private static final SuggestionType[] FIELDS = SuggestionType.values();
+    private static final int[] NO_SUGGESTIONS = new int[0];
+
+    private final String[] keys;
+    private final int[] keySuggestions;
+    private final String[] texts;
+    private final SuggestionType[] types;
+    private final int[][] suggestionKeys;
+    // Suggestion of every field of every slot, FIELDS.length per slot.
+    private final int[] slotSuggestions;
+
+    // The stock is changed in place when the catalog changes, guarded by this.
+    // The tree is read without locking, so a query that runs while a change is
+    // applied can rank some suggestions with the previous stock.
+    private final long[] slotStocks;
+    private final long[] stocks;
+    private final int leaves;
+    private final int[] tree;
+    private volatile long appliedVersion = -1;
+
+    private SuggestionIndex(String[] keys, int[] keySuggestions, String[] texts, SuggestionType[] types,
+            int[] slotSuggestions, int slots) {
+        this.keys = keys;
+        this.keySuggestions = keySuggestions;
+        this.texts = texts;
+        this.types = types;
+        this.slotSuggestions = slotSuggestions;
+
+        int[] keyCounts = new int[texts.length];
+        for (int suggestion : keySuggestions) {
+            keyCounts[suggestion]++;
+        }
+        this.suggestionKeys = new int[texts.length][];
+        for (int suggestion = 0; suggestion < texts.length; suggestion++) {
+            suggestionKeys[suggestion] = new int[keyCounts[suggestion]];
+            keyCounts[suggestion] = 0;
+        }
+        for (int key = 0; key < keySuggestions.length; key++) {
+            int suggestion = keySuggestions[key];
+            suggestionKeys[suggestion][keyCounts[suggestion]++] = key;
+        }
+
+        this.slotStocks = new long[slots];
+        this.stocks = new long[texts.length];
+        this.leaves = Integer.highestOneBit(Math.max(1, keys.length - 1)) << 1;
+        this.tree = new int[leaves * 2];
+    }
+
+    public static SuggestionIndex build(CatalogSnapshot snapshot) {
+        Map<String, Integer> suggestionIds = new HashMap<>();
+        List<String> texts = new ArrayList<>();
+        List<SuggestionType> types = new ArrayList<>();
+        List<Key> keys = new ArrayList<>();
+        int[] slotSuggestions = new int[snapshot.size() * FIELDS.length];
+
+        for (int slot = 0; slot < snapshot.size(); slot++) {
+            BookEntity book = snapshot.getBook(slot);
+            for (SuggestionType type : FIELDS) {
+                String text = text(book, type);
+                String normalized = TextNormalizer.normalize(text);
+                if (normalized.isEmpty()) {
+                    slotSuggestions[slot * FIELDS.length + type.ordinal()] = -1;
+                    continue;
+                }
+
+                Integer id = suggestionIds.get(type.ordinal() + normalized);
+                if (id == null) {
+                    id = texts.size();
+                    suggestionIds.put(type.ordinal() + normalized, id);
+                    texts.add(text.trim());
+                    types.add(type);
+
+                    keys.add(new Key(normalized, id));
+                    for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+                        keys.add(new Key(normalized.substring(i + 1), id));
+                    }
+                }
+                slotSuggestions[slot * FIELDS.length + type.ordinal()] = id;
+            }
+        }
+
+        keys.sort(Comparator.comparing((Key key) -> key.text).thenComparingInt(key -> key.suggestion));
+        String[] sortedKeys = new String[keys.size()];
+        int[] keySuggestions = new int[keys.size()];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            sortedKeys[i] = keys.get(i).text;
+            keySuggestions[i] = keys.get(i).suggestion;
+        }
+
+        SuggestionIndex index = new SuggestionIndex(sortedKeys, keySuggestions, texts.toArray(new String[0]),
+                types.toArray(new SuggestionType[0]), slotSuggestions, snapshot.size());
+        index.refresh(snapshot);
+        return index;
+    }
+
+    /**
+     * Returns the suggestions that have a word starting with the prefix, the
+     * ones with more available units first.
+     *
+     * @param snapshot The version of the catalog used to rank the suggestions.
+     * @param prefix   The text typed by the user.
+     * @param limit    Maximum number of suggestions.
+     * @return The ids of the suggestions.
+     */
+    public int[] suggest(CatalogSnapshot snapshot, String prefix, int limit) {
+        refresh(snapshot);
+
+        String normalized = TextNormalizer.normalize(prefix);
+        if (normalized.isEmpty()) {
+            return NO_SUGGESTIONS;
+        }
+        int from = lowerBound(normalized);
+        int to = lowerBound(normalized + Character.MAX_VALUE);
+
+        // The nodes of the tree that cover the range are visited from the one
+        // with more stock, and a node is replaced by its children until a leaf
+        // is reached. The stock and the node are packed in a long, and on a tie
+        // the lower node, the first key in order, goes first.
+        PriorityQueue<Long> nodes = new PriorityQueue<>(Comparator.reverseOrder());
+        for (int left = from + leaves, right = to + leaves; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1) {
+                nodes.add(node(left++));
+            }
+            if ((right & 1) == 1) {
+                nodes.add(node(--right));
+            }
+        }
+
+        int[] suggestions = new int[limit];
+        int found = 0;
+        while (found < limit && !nodes.isEmpty()) {
+            long top = nodes.poll();
+            if ((top >>> 32) == 0) {
+                break;
+            }
+
+            int node = Integer.MAX_VALUE - (int) top;
+            if (node < leaves) {
+                nodes.add(node(node * 2));
+                nodes.add(node(node * 2 + 1));
+                continue;
+            }
+
+            // A suggestion has a key per word, so it can be found more than once.
+            int suggestion = keySuggestions[node - leaves];
+            boolean duplicated = false;
+            for (int i = 0; i < found && !duplicated; i++) {
+                duplicated = suggestions[i] == suggestion;
+            }
+            if (!duplicated) {
+                suggestions[found++] = suggestion;
+            }
+        }
+        return Arrays.copyOf(suggestions, found);
+    }
+
+    public String getText(int suggestion) {
+        return texts[suggestion];
+    }
+
+    public SuggestionType getType(int suggestion) {
+        return types[suggestion];
+    }
+
+    public long getStock(int suggestion) {
+        return tree[leaves + suggestionKeys[suggestion][0]];
+    }
+
+    // Applies the stock of the snapshot. When the index has applied the
+    // previous version only the changed slots are updated, otherwise the stock
+    // of all the slots is compared.
+    private void refresh(CatalogSnapshot snapshot) {
+        if (snapshot.getVersion() <= appliedVersion) {
+            return;
+        }
+
+        synchronized (this) {
+            if (snapshot.getVersion() <= appliedVersion) {
+                return;
+            }
+
+            if (snapshot.getVersion() == appliedVersion + 1) {
+                for (int slot : snapshot.changedSlots()) {
+                    updateStock(snapshot, slot);
+                }
+            } else {
+                for (int slot = 0; slot < slotStocks.length; slot++) {
+                    updateStock(snapshot, slot);
+                }
+            }
+            appliedVersion = snapshot.getVersion();
+        }
+    }
+
+    private void updateStock(CatalogSnapshot snapshot, int slot) {
+        BookEntity book = snapshot.getBook(slot);
+        long stock = snapshot.isAvailable(slot) && book.getQuantity() != null ? book.getQuantity() : 0L;
+        long difference = stock - slotStocks[slot];
+        if (difference == 0) {
+            return;
+        }
+        slotStocks[slot] = stock;
+
+        for (int field = 0; field < FIELDS.length; field++) {
+            int suggestion = slotSuggestions[slot * FIELDS.length + field];
+            if (suggestion < 0) {
+                continue;
+            }
+
+            stocks[suggestion] += difference;
+            int value = (int) Math.min(Integer.MAX_VALUE, Math.max(0L, stocks[suggestion]));
+            for (int key : suggestionKeys[suggestion]) {
+                int node = leaves + key;
+                tree[node] = value;
+                for (node >>= 1; node > 0; node >>= 1) {
+                    tree[node] = Math.max(tree[node * 2], tree[node * 2 + 1]);
+                }
+            }
+        }
+    }
+
+    private long node(int node) {
+        return ((long) tree[node] << 32) | (Integer.MAX_VALUE - node);
+    }
+
+    // Position of the first key that is not lower than the text.
+    private int lowerBound(String text) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(text) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String text(BookEntity book, SuggestionType type) {
+        String text = switch (type) {
+            case TITLE -> book.getTitle();
+            case AUTHOR -> book.getAuthor();
+            case PUBLISHER -> book.getPublisher();
+        };
+        return text == null ? "" : text;
+    }
+
+    private static final class Key {
+        private final String text;
+        private final int suggestion;
+
+        private Key(String text, int suggestion) {
+            this.text = text;
+            this.suggestion = suggestion;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.app.bookstore.catalog;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Normalizes the text of the books for the catalog indexes: lower case, without
+ * accents and with the words separated by a single space.
+ */
+public final class TextNormalizer {
+
+    private static final String[] NO_WORDS = new String[0];
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // Splits a normalized text in words.
+    public static String[] words(String normalized) {
+        return normalized.isEmpty() ? NO_WORDS : normalized.split(" ");
+    }
+}
@@ -1,17 +1,59 @@
 package com.app.bookstore.controllers;
 
-import org.modelmapper.ModelMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.app.bookstore.configurations.JacksonConfig;
+import com.app.bookstore.dtos.BookDto;
+import com.app.bookstore.dtos.BookSummaryDto;
 import com.app.bookstore.dtos.BooksDto;
+import com.app.bookstore.dtos.BooksPageDto;
+import com.app.bookstore.dtos.FacetedBooksDto;
+import com.app.bookstore.dtos.RankedBooksDto;
+import com.app.bookstore.dtos.SuggestionsDto;
+import com.app.bookstore.entities.BooksEntity;
 import com.app.bookstore.entities.EmptyEnitity;
+import com.app.bookstore.entities.FacetFilterEntity;
+import com.app.bookstore.entities.IsbnEntity;
+import com.app.bookstore.entities.IsbnListEntity;
+import com.app.bookstore.entities.FullTextSearchEntity;
+import com.app.bookstore.entities.PageRequestEntity;
+import com.app.bookstore.entities.RenderedBooksEntity;
+import com.app.bookstore.entities.SearchEntity;
+import com.app.bookstore.entities.SuggestEntity;
+import com.app.bookstore.exceptions.BookStoreError;
+import com.app.bookstore.mappers.BookStoreMapper;
+import com.app.bookstore.mappers.SparseFieldsFilter;
+import com.app.bookstore.services.FilterBooksService;
+import com.app.bookstore.services.FullTextSearchBooksService;
+import com.app.bookstore.services.GetBookService;
+import com.app.bookstore.services.GetBooksByIsbnService;
+import com.app.bookstore.services.GetBooksPageService;
 import com.app.bookstore.services.GetBooksService;
+import com.app.bookstore.services.RenderBooksService;
+import com.app.bookstore.services.SearchBooksService;
+import com.app.bookstore.services.StreamBooksService;
+import com.app.bookstore.services.SuggestBooksService;
+import com.app.bookstore.types.BookType;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -22,22 +64,346 @@ import lombok.AllArgsConstructor;
 @RequestMapping("/bookstore/books")
 @AllArgsConstructor
 public class BooksBookStoreController {
+    public static final String CATALOG_VERSION_HEADER = "X-Catalog-Version";
+
     private final GetBooksService getBooksService;
-    private final ModelMapper bookStoreModelMapper;
+    private final GetBooksByIsbnService getBooksByIsbnService;
+    private final GetBookService getBookService;
+    private final GetBooksPageService getBooksPageService;
+    private final StreamBooksService streamBooksService;
+    private final RenderBooksService renderBooksService;
+    private final SearchBooksService searchBooksService;
+    private final FullTextSearchBooksService fullTextSearchBooksService;
+    private final SuggestBooksService suggestBooksService;
+    private final FilterBooksService filterBooksService;
+    private final BookStoreMapper bookStoreMapper;
 
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Results are ok", content = {
                     @Content(mediaType = "application/json", schema = @Schema(implementation = BooksDto.class)) }),
+            @ApiResponse(responseCode = "304", description = "The catalog has not changed since the version of the If-None-Match header", content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid request", content = @Content),
             @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
-    @Operation(summary = "Get all books", description = "Get all books from the Book Store that are available for sale")
-    @GetMapping(path = "/", produces = "application/json")
-    public ResponseEntity<BooksDto> books() {
+    @Operation(summary = "Get all books", description = "Get all books from the Book Store that are available for sale. "
+            + "The response has the ETag of the catalog version, send it on the If-None-Match header to receive "
+            + "a 304 Not Modified while the catalog does not change. The response is gzip compressed when the "
+            + "Accept-Encoding header allows it. The fields parameter selects the properties of the books that are "
+            + "returned. Send application/cbor or application/x-jackson-smile on the Accept header to receive the "
+            + "catalog in a binary format.")
+    @GetMapping(path = "/", produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+    public ResponseEntity<?> books(WebRequest webRequest,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @Parameter(description = "Properties of the books to return separated by commas. All when empty", example = "isbn,price,quantity") @RequestParam(name = "fields", required = false) String fields) {
+
+        BooksEntity booksEntity = getBooksService.run(new EmptyEnitity());
+
+        // The cached catalog is the JSON with all the properties, the binary
+        // formats and a selection of the properties are rendered on every
+        // request and have their own ETag.
+        MediaType mediaType = catalogMediaType(accept);
+        String sparseFields = SparseFieldsFilter.canonical(fields);
+        if (!sparseFields.isEmpty() || !MediaType.APPLICATION_JSON.equals(mediaType)) {
+            return renderedBooks(webRequest, booksEntity, mediaType, sparseFields);
+        }
+
+        // Nothing is rendered when the client already has this version of the
+        // catalog in the encoding it accepts. The gzip body has its own ETag,
+        // so a cache never revalidates one encoding with the ETag of the other.
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String eTag = gzip ? gzipETag(booksEntity.getCatalogETag()) : booksEntity.getCatalogETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
+        RenderedBooksEntity rendered = renderBooksService.run(booksEntity);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .header(CATALOG_VERSION_HEADER, String.valueOf(rendered.getCatalogVersion()));
+
+        if (gzip) {
+            return response.eTag(gzipETag(rendered.getCatalogETag()))
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip").body(rendered.getGzipJson());
+        }
+        return response.eTag(rendered.getCatalogETag()).body(rendered.getJson());
+    }
+
+    // The ETag of the gzip body of a version of the catalog.
+    private static String gzipETag(String catalogETag) {
+        if (catalogETag == null) {
+            return null;
+        }
+        return catalogETag.substring(0, catalogETag.length() - 1) + "-gzip\"";
+    }
+
+    private ResponseEntity<MappingJacksonValue> renderedBooks(WebRequest webRequest, BooksEntity booksEntity,
+            MediaType mediaType, String fields) {
+        String catalogETag = booksEntity.getCatalogETag();
+        String eTag = null;
+        if (catalogETag != null) {
+            StringBuilder variant = new StringBuilder(catalogETag.substring(0, catalogETag.length() - 1));
+            if (!MediaType.APPLICATION_JSON.equals(mediaType)) {
+                variant.append('-').append(mediaType.getSubtype());
+            }
+            if (!fields.isEmpty()) {
+                // The fields themselves and not a hash, two selections never
+                // share an ETag. Base64 keeps the ETag valid for any fields.
+                variant.append('-').append(Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString(fields.getBytes(StandardCharsets.UTF_8)));
+            }
+            eTag = variant.append('"').toString();
+        }
+        if (eTag != null && webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK)
+                .contentType(mediaType)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .header(CATALOG_VERSION_HEADER, String.valueOf(booksEntity.getCatalogVersion()));
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        return response.body(SparseFieldsFilter.apply(
+                bookStoreMapper.toDto(booksEntity), fields, "books"));
+    }
+
+    // The format of the catalog for the Accept header. Every format takes the
+    // quality of the most specific media range that includes it, and JSON is
+    // chosen on a tie, so the binary formats are only used when they are asked
+    // explicitly.
+    private static MediaType catalogMediaType(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+
+        List<MediaType> ranges = MediaType.parseMediaTypes(accept);
+        MediaType selected = MediaType.APPLICATION_JSON;
+        double selectedQuality = quality(ranges, MediaType.APPLICATION_JSON);
+        for (MediaType binary : List.of(MediaType.APPLICATION_CBOR, JacksonConfig.APPLICATION_SMILE)) {
+            double quality = quality(ranges, binary);
+            if (quality > selectedQuality) {
+                selected = binary;
+                selectedQuality = quality;
+            }
+        }
+        return selected;
+    }
+
+    private static double quality(List<MediaType> ranges, MediaType mediaType) {
+        int specificity = -1;
+        double quality = 0;
+        for (MediaType range : ranges) {
+            if (!range.includes(mediaType)) {
+                continue;
+            }
+            int rangeSpecificity = range.isWildcardType() ? 0 : range.isWildcardSubtype() ? 1 : 2;
+            if (rangeSpecificity > specificity) {
+                specificity = rangeSpecificity;
+                quality = range.getQualityValue();
+            }
+        }
+        return quality;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+
+            // A coding with q=0 is not acceptable.
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results are ok", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = BooksDto.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid request. Error Codes\n" + //
+                    "      VALIDATION_ERROR(105) - The list of ISBNs is empty, too long or has an invalid ISBN", content = {
+                            @Content(schema = @Schema(implementation = BookStoreError.class)) }),
+            @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+    @Operation(summary = "Get books by ISBN", description = "Get the available books with the given ISBNs in the order "
+            + "of the request. The ISBNs that are not in the catalog or are sold are not returned.")
+    @GetMapping(path = { "", "/" }, params = "isbn", produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+    public ResponseEntity<MappingJacksonValue> booksByIsbn(
+            @Parameter(description = "ISBNs separated by commas, with or without hyphens", required = true, example = "9780547928227,9780451524935") @RequestParam(name = "isbn") List<String> isbns,
+            @Parameter(description = "Properties of the books to return separated by commas. All when empty", example = "isbn,price,quantity") @RequestParam(name = "fields", required = false) String fields) {
+
+        BooksEntity books = getBooksByIsbnService.run(new IsbnListEntity(isbns));
+
+        return ResponseEntity.status(HttpStatus.OK)
+                .header(CATALOG_VERSION_HEADER, String.valueOf(books.getCatalogVersion()))
+                .body(SparseFieldsFilter.apply(bookStoreMapper.toDto(books), fields, "books"));
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results are ok", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = BooksPageDto.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid request. Error Codes\n" + //
+                    "      VALIDATION_ERROR(105) - The page size is not valid, \n" + //
+                    "      INVALID_CURSOR(107) - The cursor is not valid", content = {
+                            @Content(schema = @Schema(implementation = BookStoreError.class)) }),
+            @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+    @Operation(summary = "Get a page of books", description = "Get a page of the books that are available for sale ordered by id. "
+            + "The books do not have the description, it is returned by the book details. "
+            + "Use the nextCursor of the response to request the following page.")
+    @GetMapping(path = "/page", produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+    public ResponseEntity<MappingJacksonValue> booksPage(
+            @Parameter(description = "Cursor returned by the previous page. Empty for the first page") @RequestParam(name = "cursor", required = false) String cursor,
+            @Parameter(description = "Number of books of the page", example = "20") @RequestParam(name = "limit", required = false) Integer limit,
+            @Parameter(description = "Properties of the books to return separated by commas. All when empty", example = "isbn,price,quantity") @RequestParam(name = "fields", required = false) String fields) {
+
+        BooksPageDto page = bookStoreMapper.toDto(
+                getBooksPageService.run(new PageRequestEntity(cursor, limit)));
+
+        return new ResponseEntity<>(SparseFieldsFilter.apply(page, fields, "books"), HttpStatus.OK);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results are ok. One book per line", content = {
+                    @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = BookSummaryDto.class)) }),
+            @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+    @Operation(summary = "Stream all books", description = "Stream all books from the Book Store that are available for sale "
+            + "as newline delimited JSON, without the description. The books are written while they are read from "
+            + "the database.")
+    @GetMapping(path = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> booksStream(
+            @Parameter(description = "Properties of the books to return separated by commas. All when empty", example = "isbn,price,quantity") @RequestParam(name = "fields", required = false) String fields) {
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> streamBooksService.writeAvailableBooks(outputStream, fields));
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results are ok", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = BooksDto.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid request. Error Codes\n" + //
+                    "      VALIDATION_ERROR(105) - The query is empty or the limit is not valid", content = {
+                            @Content(schema = @Schema(implementation = BookStoreError.class)) }),
+            @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+    @Operation(summary = "Search books", description = "Search the available books by title or author. "
+            + "The search tolerates typos and the most similar books are returned first.")
+    @GetMapping(path = "/search", produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+    public ResponseEntity<MappingJacksonValue> search(
+            @Parameter(description = "Text to search on the title and the author", required = true, example = "hobit") @RequestParam(name = "q") String query,
+            @Parameter(description = "Maximum number of books", example = "10") @RequestParam(name = "limit", required = false) Integer limit,
+            @Parameter(description = "Properties of the books to return separated by commas. All when empty", example = "isbn,price,quantity") @RequestParam(name = "fields", required = false) String fields) {
+
+        BooksDto books = bookStoreMapper.toDto(
+                searchBooksService.run(new SearchEntity(query, limit)));
+
+        return new ResponseEntity<>(SparseFieldsFilter.apply(books, fields, "books"), HttpStatus.OK);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results are ok", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = RankedBooksDto.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid request. Error Codes\n" + //
+                    "      VALIDATION_ERROR(105) - The query is empty or the page is not valid", content = {
+                            @Content(schema = @Schema(implementation = BookStoreError.class)) }),
+            @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+    @Operation(summary = "Full text search of books", description = "Search the available books with the words of the query "
+            + "on the title or the description. The books are ranked by relevance and returned by pages.")
+    @GetMapping(path = "/fulltext", produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+    public ResponseEntity<MappingJacksonValue> fullTextSearch(
+            @Parameter(description = "Words to search on the title and the description", required = true, example = "dragon") @RequestParam(name = "q") String query,
+            @Parameter(description = "Number of the page, starting at 0", example = "0") @RequestParam(name = "page", required = false) Integer page,
+            @Parameter(description = "Number of books of the page", example = "10") @RequestParam(name = "size", required = false) Integer size,
+            @Parameter(description = "Properties of the books to return separated by commas. All when empty", example = "isbn,price,quantity") @RequestParam(name = "fields", required = false) String fields) {
+
+        RankedBooksDto books = bookStoreMapper.toDto(
+                fullTextSearchBooksService.run(new FullTextSearchEntity(query, page, size)));
+
+        return new ResponseEntity<>(SparseFieldsFilter.apply(books, fields, "books"), HttpStatus.OK);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results are ok", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = SuggestionsDto.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid request. Error Codes\n" + //
+                    "      VALIDATION_ERROR(105) - The prefix is empty or the limit is not valid", content = {
+                            @Content(schema = @Schema(implementation = BookStoreError.class)) }),
+            @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+    @Operation(summary = "Suggest books", description = "Complete the text of the search box with the titles, authors "
+            + "and publishers of the available books. The ones with more units available come first.")
+    @GetMapping(path = "/suggest", produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+    public ResponseEntity<SuggestionsDto> suggest(
+            @Parameter(description = "Text typed by the user", required = true, example = "hob") @RequestParam(name = "prefix") String prefix,
+            @Parameter(description = "Maximum number of suggestions", example = "8") @RequestParam(name = "limit", required = false) Integer limit) {
+
+        SuggestionsDto suggestions = bookStoreMapper.toDto(
+                suggestBooksService.run(new SuggestEntity(prefix, limit)));
+
+        return new ResponseEntity<>(suggestions, HttpStatus.OK);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results are ok", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = FacetedBooksDto.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid request. Error Codes\n" + //
+                    "      VALIDATION_ERROR(105) - A range or the page is not valid", content = {
+                            @Content(schema = @Schema(implementation = BookStoreError.class)) }),
+            @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+    @Operation(summary = "Filter books", description = "Filter the books of the catalog by type, year of publication, "
+            + "price and availability. The response has the number of books of every type, decade, price band and "
+            + "availability, counted with the filters of the other facets.")
+    @GetMapping(path = "/filter", produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+    public ResponseEntity<MappingJacksonValue> filter(
+            @Parameter(description = "Types of the books, repeat the parameter to select several") @RequestParam(name = "type", required = false) List<BookType> types,
+            @Parameter(description = "First year of publication", example = "1950") @RequestParam(name = "yearFrom", required = false) Integer yearFrom,
+            @Parameter(description = "Last year of publication", example = "1999") @RequestParam(name = "yearTo", required = false) Integer yearTo,
+            @Parameter(description = "Minimum price in cents", example = "1000") @RequestParam(name = "priceFrom", required = false) Long priceFrom,
+            @Parameter(description = "Maximum price in cents", example = "1999") @RequestParam(name = "priceTo", required = false) Long priceTo,
+            @Parameter(description = "True for the books in stock, false for the sold ones. All when empty") @RequestParam(name = "inStock", required = false) Boolean inStock,
+            @Parameter(description = "Number of the page, starting at 0", example = "0") @RequestParam(name = "page", required = false) Integer page,
+            @Parameter(description = "Number of books of the page", example = "20") @RequestParam(name = "size", required = false) Integer size,
+            @Parameter(description = "Properties of the books to return separated by commas. All when empty", example = "isbn,price,quantity") @RequestParam(name = "fields", required = false) String fields) {
+
+        FacetedBooksDto books = bookStoreMapper.toDto(
+                filterBooksService.run(new FacetFilterEntity(types, yearFrom, yearTo, priceFrom, priceTo, inStock, page, size)));
+
+        return new ResponseEntity<>(SparseFieldsFilter.apply(books, fields, "books"), HttpStatus.OK);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Results are ok", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = BookDto.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid request. Error Codes\n" + //
+                    "      BOOK_NOT_FOUND(104) - There is no book with the ISBN", content = {
+                            @Content(schema = @Schema(implementation = BookStoreError.class)) }),
+            @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+    @Operation(summary = "Get a book", description = "Get all the details of a book, including its description.")
+    @GetMapping(path = "/{isbn}", produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+    public ResponseEntity<MappingJacksonValue> book(
+            @Parameter(description = "ISBN of the book", required = true, example = "9780061120084") @PathVariable(name = "isbn") String isbn,
+            @Parameter(description = "Properties of the book to return separated by commas. All when empty", example = "isbn,price,quantity") @RequestParam(name = "fields", required = false) String fields) {
 
-        BooksDto books = bookStoreModelMapper.map(
-                getBooksService.run(new EmptyEnitity()),
-                BooksDto.class);
+        BookDto book = bookStoreMapper.toDto(
+                getBookService.run(new IsbnEntity(isbn)));
 
-        return new ResponseEntity<>(books, HttpStatus.OK);
+        return new ResponseEntity<>(SparseFieldsFilter.apply(book, fields, null), HttpStatus.OK);
     }
 }
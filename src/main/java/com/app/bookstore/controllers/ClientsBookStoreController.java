@@ -1,21 +1,39 @@
 package com.app.bookstore.controllers;
 
-import org.modelmapper.ModelMapper;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.app.bookstore.dtos.BatchOrderDto;
+import com.app.bookstore.dtos.BatchPurchaseDto;
+import com.app.bookstore.dtos.ClientOrderDto;
 import com.app.bookstore.dtos.OrderDto;
 import com.app.bookstore.dtos.PurchaseDto;
+import com.app.bookstore.dtos.QuoteDto;
+import com.app.bookstore.entities.BatchOrderEntity;
+import com.app.bookstore.entities.BatchPurchaseEntity;
 import com.app.bookstore.entities.ClientEntity;
 import com.app.bookstore.entities.OrderEntity;
 import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.entities.QuoteEntity;
 import com.app.bookstore.exceptions.BookStoreError;
+import com.app.bookstore.idempotency.IdempotentPurchases;
+import com.app.bookstore.mappers.BookStoreMapper;
+import com.app.bookstore.mappers.SparseFieldsFilter;
+import com.app.bookstore.sequencer.PurchaseSequencer;
+import com.app.bookstore.services.BatchPurchaseService;
 import com.app.bookstore.services.GetLoyaltyPointsService;
 import com.app.bookstore.services.PurchaseService;
+import com.app.bookstore.services.QuoteService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -35,7 +53,11 @@ import org.springframework.web.bind.annotation.RequestBody;
 public class ClientsBookStoreController {
         private GetLoyaltyPointsService getLoyaltyPointsService;
         private PurchaseService purchaseService;
-        private final ModelMapper bookStoreModelMapper;
+        private QuoteService quoteService;
+        private PurchaseSequencer purchaseSequencer;
+        private BatchPurchaseService batchPurchaseService;
+        private IdempotentPurchases idempotentPurchases;
+        private final BookStoreMapper bookStoreMapper;
 
         /**
          * Get loyalty points
@@ -52,7 +74,7 @@ public class ClientsBookStoreController {
                                                         @Content(schema = @Schema(implementation = BookStoreError.class)) }),
                         @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
 
-        @GetMapping(path = "/{id}/loyalty", produces = "application/json")
+        @GetMapping(path = "/{id}/loyalty", produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
         public ResponseEntity<Long> loyalty(
                         @Parameter(description = "ID of the client", required = true, example = "1") 
                         @PathVariable(name = "id") Long clientId) {
@@ -80,7 +102,10 @@ public class ClientsBookStoreController {
                                         + //
                                         "      Error Code 103: NOT_ENOUGH_LOYALTY_POINTS - The client doesn't have enough point for receving a free book, \n"
                                         + //
-                                        "      Error Code 104: BOOK_NOT_FOUND - The book ISBN is not found;", content = {
+                                        "      Error Code 104: BOOK_NOT_FOUND - The book ISBN is not found, \n" + //
+                                        "      Error Code 105: VALIDATION_ERROR - The idempotency key is empty or too long, \n" + //
+                                        "      Error Code 108: IDEMPOTENCY_KEY_REUSED - The idempotency key was used with a different order, \n" + //
+                                        "      Error Code 109: PURCHASE_TIMEOUT - The purchase was not applied in time by the sequencer, or while a retry waits for it;", content = {
                                                         @Content(schema = @Schema(implementation = BookStoreError.class)) }),
                         @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
         @Operation(summary = "Purchase books", description = "Calculates the total price of the order and the loyalty points earned by the client.\n"
@@ -92,24 +117,136 @@ public class ClientsBookStoreController {
                         "      3 - Old Editions: 20% discount, with an additional 5% discount if 3 or more books are purchased.\n"
                         + //
                         "      4 - 1 loyalty point is awarded on every purchased book.\n" + //
-                        "      5 - The books that are in the list of free books are not included in the calculation. This applies to Regular and Old Editions.")
-        @PostMapping(path = "/{id}/purchase", produces = "application/json")
-        public ResponseEntity<PurchaseDto> purchase(
+                        "      5 - The books that are in the list of free books are not included in the calculation. This applies to Regular and Old Editions.\n"
+                        + //
+                        "      The fields parameter selects the properties of the purchase that are returned, for example totalPrice,loyaltyPoints or books.isbn.\n"
+                        + //
+                        "      A purchase sent again with the same Idempotency-Key returns the outcome of the first one, the books are not bought twice.\n"
+                        + //
+                        "      A purchase that failed with PURCHASE_TIMEOUT(109) is run again, unless it may have been applied: then the retry gets the outcome it had.")
+        @PostMapping(path = "/{id}/purchase", consumes = { "application/json", "application/cbor",
+                        "application/x-jackson-smile" }, produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+        public ResponseEntity<MappingJacksonValue> purchase(
                         @Parameter(description = "ID of the client that is doing the pruchase", required = true, example = "1") @PathVariable("id") Long clientId,
-                        @Parameter(description = "The order that is doing the client for the buying books", required = true) @Valid @RequestBody OrderDto order) {
+                        @Parameter(description = "The order that is doing the client for the buying books", required = true) @Valid @RequestBody OrderDto order,
+                        @Parameter(description = "Properties of the purchase to return separated by commas, with a dot for the properties of the client and the books. All when empty", example = "totalPrice,loyaltyPoints") @RequestParam(name = "fields", required = false) String fields,
+                        @Parameter(description = "Key chosen by the client for the purchase, the retries of the purchase are sent with the same key", example = "9b1deb4d-3b7d-4bad-9bdd-2b0d7b3dcb6d") @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+
+                PurchaseEntity purchaseEntity = idempotencyKey == null
+                                ? purchase(clientId, order)
+                                : idempotentPurchases.run(clientId, idempotencyKey, order, () -> purchase(clientId, order));
+                PurchaseDto purchaseDto = bookStoreMapper.toDto(purchaseEntity);
+
+                return new ResponseEntity<>(SparseFieldsFilter.apply(purchaseDto, fields, null), HttpStatus.OK);
+        }
+
+        private PurchaseEntity purchase(Long clientId, OrderDto order) {
+                OrderEntity orderEntity = OrderEntity.builder()
+                                .clientId(clientId)
+                                .purchasedBook(order.getPurchasedBook())
+                                .freeBooks(order.getFreeBooks())
+                                .build();
+
+                // With the group commit or on a flash sale the purchases are
+                // applied one after the other by the sequencer, in batches that
+                // share a transaction.
+                return purchaseSequencer.isEnabled()
+                                ? purchaseSequencer.run(orderEntity)
+                                : purchaseService.run(orderEntity);
+        }
+
+        /**
+         * Purchase the orders of many clients
+         * 
+         * @param batch
+         * @return
+         */
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Results are ok, the result of every order has the purchase or the error code and the message of the order", content = {
+                                        @Content(mediaType = "application/json", schema = @Schema(implementation = BatchPurchaseDto.class)) }),
+                        @ApiResponse(responseCode = "400", description = "Invalid request. Causes:" + //
+                                        "      Error Code 105: VALIDATION_ERROR - The list of orders is empty or has too many orders;", content = {
+                                                        @Content(schema = @Schema(implementation = BookStoreError.class)) }),
+                        @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+        @Operation(summary = "Purchase the orders of many clients", description = "Purchases every order with the same rules as the purchase of a single client, an order that fails does not stop the others.\n"
+                        + //
+                        "      The orders are served in the order of the list, an order sees the stock and the loyalty points left by the orders before it.\n"
+                        + //
+                        "      The result of an order that fails has the error code and the message of the purchase of a single client.\n"
+                        + //
+                        "      With the inventory disabled the units of an order that fails are given back at the end of the batch, so a later order of the same book can fail with NOT_ENOUGH_BOOKS(106) while they were taken, and is not retried.\n"
+                        + //
+                        "      The fields parameter selects the properties of the purchases that are returned, for example totalPrice,loyaltyPoints or books.isbn.")
+        @PostMapping(path = "/purchases", consumes = { "application/json", "application/cbor",
+                        "application/x-jackson-smile" }, produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+        public ResponseEntity<MappingJacksonValue> purchases(
+                        @Parameter(description = "The orders of the clients", required = true) @Valid @RequestBody BatchOrderDto batch,
+                        @Parameter(description = "Properties of the purchases to return separated by commas, with a dot for the properties of the client and the books. All when empty", example = "totalPrice,loyaltyPoints") @RequestParam(name = "fields", required = false) String fields) {
+
+                List<OrderEntity> orders = new ArrayList<>(batch.getOrders().size());
+                for (ClientOrderDto clientOrder : batch.getOrders()) {
+                        orders.add(OrderEntity.builder()
+                                        .clientId(clientOrder.getClientId())
+                                        .purchasedBook(clientOrder.getOrder().getPurchasedBook())
+                                        .freeBooks(clientOrder.getOrder().getFreeBooks())
+                                        .build());
+                }
+
+                BatchPurchaseEntity purchases = batchPurchaseService.run(BatchOrderEntity.builder()
+                                .orders(orders)
+                                .build());
+
+                BatchPurchaseDto purchasesDto = bookStoreMapper.toDto(purchases);
+
+                return new ResponseEntity<>(SparseFieldsFilter.apply(purchasesDto, fields, "results.purchase"),
+                                HttpStatus.OK);
+        }
+
+        /**
+         * Quote books
+         * 
+         * @param clientId
+         * @param order
+         * @return
+         */
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Results are ok", content = {
+                                        @Content(mediaType = "application/json", schema = @Schema(implementation = QuoteDto.class)) }),
+                        @ApiResponse(responseCode = "400", description = "Invalid request. Causes:" + //
+                                        "      Error Code 100: CLIENT_NOT_FOUND - The client is not found, \n" + //
+                                        "      Error Code 101: UNKNOWN_BOOK_TYPE - The book types are New Release, Regular and Old Editions, \n"
+                                        + //
+                                        "      Error Code 102: INCORRECT_ORDER - The error appears when the order is not or empty, \n"
+                                        + //
+                                        "      Error Code 103: NOT_ENOUGH_LOYALTY_POINTS - The client doesn't have enough point for receving a free book, \n"
+                                        + //
+                                        "      Error Code 104: BOOK_NOT_FOUND - The book ISBN is not found, \n" + //
+                                        "      Error Code 106: NOT_ENOUGH_BOOKS - There are not enough units of a book;", content = {
+                                                        @Content(schema = @Schema(implementation = BookStoreError.class)) }),
+                        @ApiResponse(responseCode = "404", description = "resource not found", content = @Content) })
+        @Operation(summary = "Quote books", description = "Calculates the total price of the order and the loyalty points the client would earn and use, with the same rules as the purchase.\n"
+                        + //
+                        "      Nothing is changed, the stock and the loyalty points stay the same.\n" + //
+                        "      The quote is valid for the version of the catalog that is returned, every purchase publishes a new version.\n"
+                        + //
+                        "      The fields parameter selects the properties of the quote that are returned, for example totalPrice,loyaltyPoints or books.isbn.")
+        @PostMapping(path = "/{id}/quote", consumes = { "application/json", "application/cbor",
+                        "application/x-jackson-smile" }, produces = { "application/json", "application/cbor", "application/x-jackson-smile" })
+        public ResponseEntity<MappingJacksonValue> quote(
+                        @Parameter(description = "ID of the client that is quoting the order", required = true, example = "1") @PathVariable("id") Long clientId,
+                        @Parameter(description = "The order to quote", required = true) @Valid @RequestBody OrderDto order,
+                        @Parameter(description = "Properties of the quote to return separated by commas, with a dot for the properties of the books. All when empty", example = "totalPrice,loyaltyPoints") @RequestParam(name = "fields", required = false) String fields) {
 
-                PurchaseEntity purchaseEntity = purchaseService.run(
+                QuoteEntity quoteEntity = quoteService.run(
                                 OrderEntity.builder()
                                                 .clientId(clientId)
                                                 .purchasedBook(order.getPurchasedBook())
                                                 .freeBooks(order.getFreeBooks())
                                                 .build());
 
-                PurchaseDto purchaseDto = bookStoreModelMapper.map(
-                                purchaseEntity,
-                                PurchaseDto.class);
+                QuoteDto quoteDto = bookStoreMapper.toDto(quoteEntity);
 
-                return new ResponseEntity<>(purchaseDto, HttpStatus.OK);
+                return new ResponseEntity<>(SparseFieldsFilter.apply(quoteDto, fields, null), HttpStatus.OK);
         }
 
 }
@@ -0,0 +1,22 @@
+package com.app.bookstore.dtos;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchOrderDto {
+    @NotNull
+    @NotEmpty
+    @Valid
+    @Schema(description = "The orders of the batch, every order is purchased or fails on its own")
+    private List<ClientOrderDto> orders;
+}
@@ -1,5 +1,8 @@
 package com.app.bookstore.dtos;
 
+import com.app.bookstore.mappers.SparseFieldsFilter;
+import com.fasterxml.jackson.annotation.JsonFilter;
+
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,6 +14,7 @@ import lombok.NoArgsConstructor;
  * application.
  */
 @Data
+@JsonFilter(SparseFieldsFilter.ID)
 @AllArgsConstructor
 @NoArgsConstructor
 public class BookDto {
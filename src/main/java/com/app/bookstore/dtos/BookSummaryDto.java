@@ -0,0 +1,32 @@
+package com.app.bookstore.dtos;
+
+import com.app.bookstore.mappers.SparseFieldsFilter;
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the books of the listings. It has the same fields as
+ * BookDto without the description, use the book details endpoint to get it.
+ */
+@Data
+@JsonFilter(SparseFieldsFilter.ID)
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSummaryDto {
+    private String title;
+    @Schema(description = "The quantity of books in stock. Whne the value is 0, the book is not available for sale.")
+    private Integer quantity;
+    @Schema(description = "The books are grouped on 3 types: New Release, Regular and Old Editions.", example = "REGULAR")
+    private String type;
+    private Long price;
+    private String author;
+    private String publisher;
+
+    @Schema(description = "The ISBN identify a book and it is used for purchasing.", example = "9780061120084")
+    private String isbn;
+    private Integer publicationYear;
+}
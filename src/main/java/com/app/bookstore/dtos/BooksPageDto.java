@@ -0,0 +1,17 @@
+package com.app.bookstore.dtos;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BooksPageDto {
+    private List<BookSummaryDto> books;
+    @Schema(description = "Opaque token to request the next page. It is null when there are no more books.")
+    private String nextCursor;
+}
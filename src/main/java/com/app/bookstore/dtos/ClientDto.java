@@ -1,10 +1,14 @@
 package com.app.bookstore.dtos;
 
+import com.app.bookstore.mappers.SparseFieldsFilter;
+import com.fasterxml.jackson.annotation.JsonFilter;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
+@JsonFilter(SparseFieldsFilter.ID)
 @AllArgsConstructor
 @NoArgsConstructor
 public class ClientDto {
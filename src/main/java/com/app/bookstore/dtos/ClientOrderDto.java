@@ -0,0 +1,21 @@
+package com.app.bookstore.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ClientOrderDto {
+    @NotNull
+    @Schema(description = "ID of the client that is doing the purchase", example = "1")
+    private Long clientId;
+    @NotNull
+    @Valid
+    @Schema(description = "The order of the client")
+    private OrderDto order;
+}
@@ -0,0 +1,13 @@
+package com.app.bookstore.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FacetCountDto {
+    private String value;
+    private int count;
+}
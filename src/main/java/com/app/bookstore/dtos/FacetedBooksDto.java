@@ -0,0 +1,23 @@
+package com.app.bookstore.dtos;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FacetedBooksDto {
+    @Schema(description = "Books of the page.")
+    private List<BookDto> books;
+    @Schema(description = "Number of the page, starting at 0.")
+    private int page;
+    @Schema(description = "Maximum number of books of the page.")
+    private int size;
+    @Schema(description = "Number of books that match the filters.")
+    private int totalHits;
+    private FacetsDto facets;
+}
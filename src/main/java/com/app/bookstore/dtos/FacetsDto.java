@@ -0,0 +1,23 @@
+package com.app.bookstore.dtos;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Number of books of every value of the facets, counted with the filters of the other facets.")
+public class FacetsDto {
+    @Schema(description = "Books by type.")
+    private List<FacetCountDto> types;
+    @Schema(description = "Books by decade of publication, like 1990.")
+    private List<FacetCountDto> decades;
+    @Schema(description = "Books by price band in cents, like 1000-1499.")
+    private List<FacetCountDto> priceBands;
+    @Schema(description = "Books in stock (true) and sold (false).")
+    private List<FacetCountDto> availability;
+}
@@ -2,11 +2,15 @@ package com.app.bookstore.dtos;
 
 import java.util.List;
 
+import com.app.bookstore.mappers.SparseFieldsFilter;
+import com.fasterxml.jackson.annotation.JsonFilter;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
+@JsonFilter(SparseFieldsFilter.ID)
 @NoArgsConstructor
 @AllArgsConstructor
 public class PurchaseDto {
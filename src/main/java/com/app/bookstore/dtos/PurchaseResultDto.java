@@ -0,0 +1,17 @@
+package com.app.bookstore.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurchaseResultDto {
+    private Long clientId;
+    // Null when the order failed.
+    private PurchaseDto purchase;
+    // Null when the order was purchased.
+    private Integer errorCode;
+    private String msg;
+}
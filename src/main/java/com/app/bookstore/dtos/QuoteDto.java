@@ -0,0 +1,23 @@
+package com.app.bookstore.dtos;
+
+import java.util.List;
+
+import com.app.bookstore.mappers.SparseFieldsFilter;
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@JsonFilter(SparseFieldsFilter.ID)
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuoteDto {
+    private List<BookDto> books;
+    private Long loyaltyPoints;
+    private Long usedLoyaltyPoints;
+    private Long totalPrice;
+    private Long catalogVersion;
+    private String catalogETag;
+}
@@ -0,0 +1,22 @@
+package com.app.bookstore.dtos;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RankedBooksDto {
+    @Schema(description = "Books of the page, the most relevant first.")
+    private List<BookDto> books;
+    @Schema(description = "Number of the page, starting at 0.")
+    private int page;
+    @Schema(description = "Maximum number of books of the page.")
+    private int size;
+    @Schema(description = "Number of available books that match the query.")
+    private int totalHits;
+}
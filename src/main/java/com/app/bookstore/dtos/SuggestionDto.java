@@ -0,0 +1,19 @@
+package com.app.bookstore.dtos;
+
+import com.app.bookstore.types.SuggestionType;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SuggestionDto {
+    @Schema(description = "Title, author or publisher that completes the text.")
+    private String text;
+    private SuggestionType type;
+    @Schema(description = "Units available of the books with this title, author or publisher.")
+    private Long stock;
+}
@@ -0,0 +1,14 @@
+package com.app.bookstore.dtos;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SuggestionsDto {
+    private List<SuggestionDto> suggestions;
+}
@@ -0,0 +1,16 @@
+package com.app.bookstore.entities;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchOrderEntity implements StoreEntity {
+    private List<OrderEntity> orders;
+}
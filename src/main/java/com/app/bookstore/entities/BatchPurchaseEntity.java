@@ -0,0 +1,17 @@
+package com.app.bookstore.entities;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchPurchaseEntity implements StoreEntity {
+    // In the order of the orders of the batch.
+    private List<PurchaseResultEntity> results;
+}
@@ -0,0 +1,29 @@
+package com.app.bookstore.entities;
+
+import com.app.bookstore.types.BookType;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projection of a book with all the details shown for a single book.
+ * It is created by the queries with a constructor expression, so the row is
+ * not loaded as a managed entity.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookDetailEntity implements StoreEntity {
+    private String title;
+    private Long quantity;
+    private BookType type;
+    private Long price;
+    private String author;
+    private String publisher;
+    private String isbn;
+    private String description;
+    private Integer publicationYear;
+}
@@ -0,0 +1,29 @@
+package com.app.bookstore.entities;
+
+import com.app.bookstore.types.BookType;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projection of a book for the listings, without the description.
+ * It is created by the queries with a constructor expression, so the rows are
+ * not loaded as managed entities.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSummaryEntity implements StoreEntity {
+    private Long id;
+    private String title;
+    private Long quantity;
+    private BookType type;
+    private Long price;
+    private String author;
+    private String publisher;
+    private String isbn;
+    private Integer publicationYear;
+}
@@ -15,4 +15,6 @@ import lombok.NoArgsConstructor;
 @MappedSuperclass
 public class BooksEntity implements StoreEntity {
     private List<BookEntity> books;
+    private Long catalogVersion;
+    private String catalogETag;
 }
@@ -0,0 +1,17 @@
+package com.app.bookstore.entities;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BooksPageEntity implements StoreEntity {
+    private List<BookSummaryEntity> books;
+    private String nextCursor;
+}
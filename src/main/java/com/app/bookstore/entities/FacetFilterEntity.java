@@ -0,0 +1,25 @@
+package com.app.bookstore.entities;
+
+import java.util.List;
+
+import com.app.bookstore.types.BookType;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FacetFilterEntity implements StoreEntity {
+    private List<BookType> types;
+    private Integer yearFrom;
+    private Integer yearTo;
+    private Long priceFrom;
+    private Long priceTo;
+    private Boolean inStock;
+    private Integer page;
+    private Integer size;
+}
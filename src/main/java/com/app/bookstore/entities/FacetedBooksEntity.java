@@ -0,0 +1,20 @@
+package com.app.bookstore.entities;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FacetedBooksEntity implements StoreEntity {
+    private List<BookEntity> books;
+    private int page;
+    private int size;
+    private int totalHits;
+    private FacetsEntity facets;
+}
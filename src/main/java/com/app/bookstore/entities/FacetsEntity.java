@@ -0,0 +1,19 @@
+package com.app.bookstore.entities;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FacetsEntity implements StoreEntity {
+    private List<FacetCountEntity> types;
+    private List<FacetCountEntity> decades;
+    private List<FacetCountEntity> priceBands;
+    private List<FacetCountEntity> availability;
+}
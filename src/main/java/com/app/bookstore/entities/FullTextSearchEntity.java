@@ -0,0 +1,16 @@
+package com.app.bookstore.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FullTextSearchEntity implements StoreEntity {
+    private String query;
+    private Integer page;
+    private Integer size;
+}
@@ -0,0 +1,14 @@
+package com.app.bookstore.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IsbnEntity implements StoreEntity {
+    private String isbn;
+}
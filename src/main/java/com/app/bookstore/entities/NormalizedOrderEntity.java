@@ -0,0 +1,37 @@
+package com.app.bookstore.entities;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An order with the units of every ISBN counted once. The validation, the
+ * pricing, the loyalty points and the stock read the units of an ISBN from the
+ * maps instead of counting it on the lists of the order.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NormalizedOrderEntity implements StoreEntity {
+    private Long clientId;
+    // The ISBNs as they were sent, used for the number of lines of the order
+    // and to list the wrong ISBNs of an error in the order of the request.
+    private List<String> purchasedBooks;
+    private List<String> freeBooks;
+    // Units of every ISBN, in the order the ISBNs appear for the first time.
+    private Map<String, Long> purchasedUnits;
+    private Map<String, Long> freeUnits;
+
+    public long purchased(String isbn) {
+        return purchasedUnits.getOrDefault(isbn, 0L);
+    }
+
+    public long free(String isbn) {
+        return freeUnits.getOrDefault(isbn, 0L);
+    }
+}
@@ -0,0 +1,15 @@
+package com.app.bookstore.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageRequestEntity implements StoreEntity {
+    private String cursor;
+    private Integer limit;
+}
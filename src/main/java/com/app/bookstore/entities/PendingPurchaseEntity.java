@@ -0,0 +1,25 @@
+package com.app.bookstore.entities;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A purchase checked and priced, but whose stock and loyalty points are not
+ * taken yet. It is read without changing anything, so it can be prepared by
+ * many threads at once and applied later.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PendingPurchaseEntity implements StoreEntity {
+    private ClientEntity client;
+    private NormalizedOrderEntity order;
+    private List<BookEntity> books;
+    private PurchaseEntity purchase;
+    private Long usedLoyaltyPoints;
+}
@@ -0,0 +1,21 @@
+package com.app.bookstore.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The result of an order of a batch: the purchase when it succeeded, or the
+ * error code and message when it failed.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PurchaseResultEntity implements StoreEntity {
+    private Long clientId;
+    private PurchaseEntity purchase;
+    private Integer errorCode;
+    private String msg;
+}
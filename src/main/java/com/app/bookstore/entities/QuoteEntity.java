@@ -0,0 +1,26 @@
+package com.app.bookstore.entities;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The price of an order with the catalog of the given version. The quotes are
+ * shared by all the clients that quote the same order, they must not be
+ * modified.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class QuoteEntity implements StoreEntity {
+    private List<BookEntity> books;
+    private Long loyaltyPoints;
+    private Long usedLoyaltyPoints;
+    private Long totalPrice;
+    private Long catalogVersion;
+    private String catalogETag;
+}
@@ -0,0 +1,21 @@
+package com.app.bookstore.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Books catalog already serialized as JSON, plain and gzip compressed, for a
+ * given version of the catalog.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RenderedBooksEntity implements StoreEntity {
+    private Long catalogVersion;
+    private String catalogETag;
+    private byte[] json;
+    private byte[] gzipJson;
+}
@@ -0,0 +1,18 @@
+package com.app.bookstore.entities;
+
+import com.app.bookstore.types.SuggestionType;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SuggestionEntity implements StoreEntity {
+    private String text;
+    private SuggestionType type;
+    private Long stock;
+}
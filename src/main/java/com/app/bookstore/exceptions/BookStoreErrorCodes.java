@@ -7,7 +7,10 @@ public enum BookStoreErrorCodes {
     NOT_ENOUGH_LOYALTY_POINTS(103), 
     BOOK_NOT_FOUND(104), 
     VALIDATION_ERROR(105), 
-    NOT_ENOUGH_BOOKS(106);
+    NOT_ENOUGH_BOOKS(106), 
+    INVALID_CURSOR(107),
+    IDEMPOTENCY_KEY_REUSED(108),
+    PURCHASE_TIMEOUT(109);
 
     private final int code;
     BookStoreErrorCodes(int i) {
@@ -13,7 +13,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @RestControllerAdvice
 public class BookStoreHandlerExceptions {
 
-    @ExceptionHandler({ PurchaseException.class, ClientException.class })
+    @ExceptionHandler({ PurchaseException.class, ClientException.class, BooksException.class })
     public ResponseEntity<Object> handleGlobalException(Exception exception) {
         BookStoreException bookStoreException = (BookStoreException) exception;
         BookStoreError error = new BookStoreError();
@@ -0,0 +1,14 @@
+package com.app.bookstore.exceptions;
+
+public class BooksException extends BookStoreException {
+    private static final long serialVersionUID = 1L;
+
+    public BooksException(String message, int erroCode) {
+        super(message, erroCode);
+    }
+
+    public BooksException(String message, int erroCode, Throwable cause) {
+        super(message, erroCode, cause);
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.app.bookstore.exceptions;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.app.bookstore.entities.PurchaseEntity;
+
+/**
+ * A purchase taken by the sequencer that was not confirmed in time. It may
+ * still be applied, its handle is completed with the purchase, or with the
+ * error that rolled it back, once its batch ends.
+ */
+public class UnconfirmedPurchaseException extends PurchaseException {
+    private static final long serialVersionUID = 1L;
+    private final transient CompletableFuture<PurchaseEntity> purchase;
+
+    public UnconfirmedPurchaseException(String message, int erroCode, CompletableFuture<PurchaseEntity> purchase) {
+        super(message, erroCode);
+        this.purchase = purchase;
+    }
+
+    public CompletableFuture<PurchaseEntity> getPurchase() {
+        return purchase;
+    }
+
+}
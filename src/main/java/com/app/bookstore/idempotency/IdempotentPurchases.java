@@ -0,0 +1,243 @@
+package com.app.bookstore.idempotency;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.app.bookstore.dtos.OrderDto;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.BookStoreException;
+import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.exceptions.UnconfirmedPurchaseException;
+
+/**
+ * Outcomes of the purchases sent with an idempotency key, so a client that
+ * retries a purchase gets the outcome of the first one instead of buying
+ * twice. The outcome is the purchase, or the error of the store that made it
+ * fail. A purchase that fails for another reason, like the database being
+ * down, or that was not applied in time, is forgotten, and a retry runs it
+ * again. A purchase that was not confirmed in time may still be applied, its
+ * outcome is the one the sequencer gives it once its batch ends.
+ * A duplicate that arrives while the first purchase is running waits for its
+ * outcome, for a limited time. The outcomes are kept for a time to live, and
+ * the oldest finished ones are evicted when there are too many. A purchase
+ * that is running is never evicted.
+ */
+@Component
+public class IdempotentPurchases {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long waitNanos;
+    // Insertion order, the first entry is the oldest, and so the first to
+    // expire. Guarded by itself.
+    private final Map<Key, Outcome> outcomes;
+
+    public IdempotentPurchases(@Value("${bookstore.purchase.idempotency.max-size:10000}") int maxSize,
+            @Value("${bookstore.purchase.idempotency.ttl:86400000}") long ttlMillis,
+            @Value("${bookstore.purchase.idempotency.wait-millis:15000}") long waitMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        this.outcomes = new LinkedHashMap<>();
+    }
+
+    /**
+     * Runs the purchase the first time the key is used by the client, and
+     * returns its outcome the next times.
+     *
+     * @param clientId       The client that is doing the purchase.
+     * @param idempotencyKey The key chosen by the client for the purchase.
+     * @param order          The order of the purchase, a key can only be used
+     *                       again with the same order.
+     * @param purchase       Runs the purchase.
+     * @return The purchase, of this call or of the first one with the key.
+     */
+    public PurchaseEntity run(Long clientId, String idempotencyKey, OrderDto order, Supplier<PurchaseEntity> purchase)
+            throws PurchaseException {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new PurchaseException("The idempotency key must have between 1 and " + MAX_KEY_LENGTH
+                    + " characters", BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+
+        Key key = new Key(clientId, idempotencyKey);
+        Outcome outcome;
+        boolean first = false;
+        synchronized (outcomes) {
+            long now = System.nanoTime();
+            outcome = outcomes.get(key);
+            if (outcome == null || outcome.isExpired(now)) {
+                // Removed first, so the new outcome goes to the end of the map.
+                outcomes.remove(key);
+                outcome = new Outcome(order, now + ttlNanos);
+                outcomes.put(key, outcome);
+                evictOverflow();
+                first = true;
+            }
+        }
+
+        if (!first) {
+            if (!outcome.order.equals(order)) {
+                throw new PurchaseException("The idempotency key " + idempotencyKey
+                        + " was used with a different order",
+                        BookStoreErrorCodes.IDEMPOTENCY_KEY_REUSED.getErrorCode());
+            }
+            return await(idempotencyKey, outcome.result);
+        }
+        return run(key, outcome, purchase);
+    }
+
+    // Runs the purchase of the first call with the key and completes its
+    // outcome.
+    private PurchaseEntity run(Key key, Outcome outcome, Supplier<PurchaseEntity> purchase) {
+        try {
+            PurchaseEntity result = purchase.get();
+            outcome.result.complete(result);
+            return result;
+        } catch (UnconfirmedPurchaseException e) {
+            // The outcome stays running until the sequencer ends the batch of
+            // the purchase.
+            e.getPurchase().whenComplete((result, error) -> complete(key, outcome, result, error));
+            throw e;
+        } catch (Throwable e) {
+            // Also the errors that are not exceptions.
+            complete(key, outcome, null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the outcomes whose time to live is over.
+     *
+     * @return The number of outcomes removed.
+     */
+    @Scheduled(fixedDelayString = "${bookstore.purchase.idempotency.evict-interval:60000}")
+    public int evictExpired() {
+        int evicted = 0;
+        synchronized (outcomes) {
+            long now = System.nanoTime();
+            Iterator<Outcome> iterator = outcomes.values().iterator();
+            while (iterator.hasNext()) {
+                Outcome outcome = iterator.next();
+                if (outcome.isExpired(now)) {
+                    iterator.remove();
+                    evicted++;
+                } else if (outcome.result.isDone()) {
+                    // The next ones were added later, so they expire later.
+                    break;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        synchronized (outcomes) {
+            return outcomes.size();
+        }
+    }
+
+    // Removes the oldest finished outcomes while there are too many. The
+    // purchases that are running are skipped, there are as many as requests
+    // in flight.
+    private void evictOverflow() {
+        Iterator<Outcome> iterator = outcomes.values().iterator();
+        while (outcomes.size() > maxSize && iterator.hasNext()) {
+            if (iterator.next().result.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Keeps the purchase and the errors of the store. The other errors, and
+    // the purchases not applied in time, are removed so the duplicates waiting
+    // are released and a retry runs the purchase again.
+    private void complete(Key key, Outcome outcome, PurchaseEntity result, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error == null) {
+            outcome.result.complete(result);
+            return;
+        }
+        if (!(error instanceof BookStoreException e)
+                || e.getErroCode() == BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode()) {
+            synchronized (outcomes) {
+                outcomes.remove(key, outcome);
+            }
+        }
+        outcome.result.completeExceptionally(error);
+    }
+
+    private PurchaseEntity await(String idempotencyKey, CompletableFuture<PurchaseEntity> result) {
+        try {
+            return result.get(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("The purchase failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new PurchaseException("The purchase with the idempotency key " + idempotencyKey
+                    + " is still running", BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the purchase", e);
+        }
+    }
+
+    // The key of a client does not clash with the same key of another client.
+    private static final class Key {
+        private final Long clientId;
+        private final String idempotencyKey;
+
+        private Key(Long clientId, String idempotencyKey) {
+            this.clientId = clientId;
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return Objects.equals(clientId, key.clientId) && idempotencyKey.equals(key.idempotencyKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(clientId) + idempotencyKey.hashCode();
+        }
+    }
+
+    // A running purchase has a result that is not done, and does not expire.
+    private static final class Outcome {
+        private final OrderDto order;
+        private final long expiresAt;
+        private final CompletableFuture<PurchaseEntity> result = new CompletableFuture<>();
+
+        private Outcome(OrderDto order, long expiresAt) {
+            this.order = order;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return result.isDone() && now - expiresAt >= 0L;
+        }
+    }
+}
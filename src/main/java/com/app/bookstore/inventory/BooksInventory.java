@@ -0,0 +1,245 @@
+package com.app.bookstore.inventory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.app.bookstore.catalog.CatalogChangedEvent;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.repositories.BooksRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-memory stock of the books, the purchases take their units from it
+ * instead of updating the database.
+ * Every book has its own atomic counters, the units are taken and given back
+ * with compare and set, so the purchases of different books never contend and
+ * the purchases of the same book never block. The units sold are written to the
+ * database in batches behind the purchases.
+ * The database is the source of truth: the stock of a book is loaded from it
+ * the first time the book is purchased, and the reconciliation corrects the
+ * books whose stock on the database differs from the one in memory.
+ */
+@Component
+public class BooksInventory {
+
+    private final BooksRepository booksRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final ConcurrentHashMap<Long, Stock> stocks = new ConcurrentHashMap<>();
+    // Differences found by the previous reconciliation, guarded by this.
+    private Map<Long, Long> previousDrifts = Collections.emptyMap();
+
+    public BooksInventory(BooksRepository booksRepository, ApplicationEventPublisher eventPublisher,
+            @Value("${bookstore.inventory.enabled:true}") boolean enabled) {
+        this.booksRepository = booksRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+    }
+
+    // When it is not enabled the purchases take the stock on the database.
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes the units of every book, all of them or none.
+     *
+     * @param ids        The ids of the books.
+     * @param quantities The quantity of every book on the database, used when
+     *                   the book is not in memory yet.
+     * @param units      The units to take from every book.
+     * @param remaining  Filled with the units left of every book.
+     * @return -1 when the units were taken, otherwise the index of the first
+     *         book without enough units.
+     */
+    public int reserve(long[] ids, long[] quantities, long[] units, long[] remaining) {
+        for (int i = 0; i < ids.length; i++) {
+            long quantity = quantities[i];
+            Stock stock = stocks.computeIfAbsent(ids[i], id -> new Stock(quantity));
+
+            long left = stock.take(units[i]);
+            if (left < 0) {
+                for (int taken = 0; taken < i; taken++) {
+                    stocks.get(ids[taken]).giveBack(units[taken]);
+                }
+                return i;
+            }
+            remaining[i] = left;
+        }
+        return -1;
+    }
+
+    /**
+     * Completes the units reserved. They are written to the database once the
+     * transaction of the purchase is committed, or given back when it is rolled
+     * back. Without a transaction they are completed right away.
+     */
+    public void confirm(long[] ids, long[] units) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            sold(ids, units);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    sold(ids, units);
+                } else {
+                    release(ids, units);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gives back the units reserved.
+     */
+    public void release(long[] ids, long[] units) {
+        for (int i = 0; i < ids.length; i++) {
+            stocks.get(ids[i]).giveBack(units[i]);
+        }
+    }
+
+    // Returns the units of the book that are available, or -1 if the book is
+    // not in memory.
+    public long available(long id) {
+        Stock stock = stocks.get(id);
+        return stock == null ? -1L : stock.available.get();
+    }
+
+    /**
+     * Writes the units sold since the previous flush to the database, one
+     * update per book in a single batch. When the batch fails the units are
+     * written by the next flush.
+     */
+    @Scheduled(fixedDelayString = "${bookstore.inventory.flush-interval:100}")
+    @PreDestroy
+    public synchronized void flush() {
+        List<Long> ids = new ArrayList<>();
+        List<Long> units = new ArrayList<>();
+        stocks.forEach((id, stock) -> {
+            long sold = stock.unwritten.getAndSet(0L);
+            if (sold != 0L) {
+                ids.add(id);
+                units.add(sold);
+            }
+        });
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        long[] bookIds = ids.stream().mapToLong(Long::longValue).toArray();
+        long[] soldUnits = units.stream().mapToLong(Long::longValue).toArray();
+        try {
+            booksRepository.applyStockChanges(bookIds, soldUnits);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < bookIds.length; i++) {
+                stocks.get(bookIds[i]).unwritten.addAndGet(soldUnits[i]);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Compares the stock of the books in memory with the database, where the
+     * quantity of a book must be its units available, reserved and sold but
+     * not written yet. A difference can be seen for a moment while a purchase
+     * is changing the counters, so a book is corrected only when the same
+     * difference is found by two reconciliations in a row. The database wins,
+     * the difference is added to the units available, and published to the
+     * catalog so its stock matches the inventory.
+     *
+     * @return The differences corrected, by id of book.
+     */
+    @Scheduled(fixedDelayString = "${bookstore.inventory.reconcile-interval:60000}")
+    public synchronized Map<Long, Long> reconcile() {
+        Map<Long, Long> drifts = new HashMap<>();
+        Map<Long, Long> corrected = new HashMap<>();
+        // The units added to a book are published as negative units sold.
+        Map<String, Long> catalogChanges = new HashMap<>();
+        if (stocks.isEmpty()) {
+            previousDrifts = drifts;
+            return corrected;
+        }
+
+        for (BookEntity book : booksRepository.findAllById(new ArrayList<>(stocks.keySet()))) {
+            Stock stock = stocks.get(book.getId());
+            long drift = book.getQuantity() - stock.total();
+            if (drift == 0L) {
+                continue;
+            }
+
+            if (Long.valueOf(drift).equals(previousDrifts.get(book.getId()))) {
+                stock.available.addAndGet(drift);
+                corrected.put(book.getId(), drift);
+                catalogChanges.put(book.getIsbn(), -drift);
+            } else {
+                drifts.put(book.getId(), drift);
+            }
+        }
+        previousDrifts = drifts;
+
+        if (!catalogChanges.isEmpty()) {
+            eventPublisher.publishEvent(new CatalogChangedEvent(catalogChanges));
+        }
+        return corrected;
+    }
+
+    private void sold(long[] ids, long[] units) {
+        for (int i = 0; i < ids.length; i++) {
+            Stock stock = stocks.get(ids[i]);
+            stock.reserved.addAndGet(-units[i]);
+            stock.unwritten.addAndGet(units[i]);
+        }
+    }
+
+    // The units of a book move from available to reserved when a purchase
+    // takes them, and from reserved to unwritten when it is committed, until
+    // the flush writes them.
+    private static final class Stock {
+        private final AtomicLong available;
+        private final AtomicLong reserved = new AtomicLong();
+        private final AtomicLong unwritten = new AtomicLong();
+
+        private Stock(long quantity) {
+            this.available = new AtomicLong(quantity);
+        }
+
+        // Returns the units left, or -1 when there are not enough units.
+        private long take(long units) {
+            long current;
+            do {
+                current = available.get();
+                if (current < units) {
+                    return -1L;
+                }
+            } while (!available.compareAndSet(current, current - units));
+
+            reserved.addAndGet(units);
+            return current - units;
+        }
+
+        private void giveBack(long units) {
+            reserved.addAndGet(-units);
+            available.addAndGet(units);
+        }
+
+        private long total() {
+            return available.get() + reserved.get() + unwritten.get();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.app.bookstore.mappers;
+
+import java.time.LocalDateTime;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+import com.app.bookstore.dtos.BatchPurchaseDto;
+import com.app.bookstore.dtos.BookDto;
+import com.app.bookstore.dtos.BookSummaryDto;
+import com.app.bookstore.dtos.BooksDto;
+import com.app.bookstore.dtos.BooksPageDto;
+import com.app.bookstore.dtos.ClientDto;
+import com.app.bookstore.dtos.FacetCountDto;
+import com.app.bookstore.dtos.FacetedBooksDto;
+import com.app.bookstore.dtos.FacetsDto;
+import com.app.bookstore.dtos.PurchaseDto;
+import com.app.bookstore.dtos.QuoteDto;
+import com.app.bookstore.dtos.RankedBooksDto;
+import com.app.bookstore.dtos.SuggestionDto;
+import com.app.bookstore.dtos.SuggestionsDto;
+import com.app.bookstore.entities.BatchPurchaseEntity;
+import com.app.bookstore.entities.BookDetailEntity;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.BookSummaryEntity;
+import com.app.bookstore.entities.BooksEntity;
+import com.app.bookstore.entities.BooksPageEntity;
+import com.app.bookstore.entities.ClientEntity;
+import com.app.bookstore.entities.FacetCountEntity;
+import com.app.bookstore.entities.FacetedBooksEntity;
+import com.app.bookstore.entities.FacetsEntity;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.entities.QuoteEntity;
+import com.app.bookstore.entities.RankedBooksEntity;
+import com.app.bookstore.entities.SuggestionEntity;
+import com.app.bookstore.entities.SuggestionsEntity;
+
+/**
+ * Maps the entities returned by the services to the DTOs of the responses.
+ * The implementation is generated on compilation, so the properties are copied
+ * with plain getters and setters. A property of a DTO that is not mapped is a
+ * compilation error.
+ */
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING, unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface BookStoreMapper {
+
+    BooksDto toDto(BooksEntity books);
+
+    BooksPageDto toDto(BooksPageEntity page);
+
+    RankedBooksDto toDto(RankedBooksEntity books);
+
+    FacetedBooksDto toDto(FacetedBooksEntity books);
+
+    SuggestionsDto toDto(SuggestionsEntity suggestions);
+
+    PurchaseDto toDto(PurchaseEntity purchase);
+
+    QuoteDto toDto(QuoteEntity quote);
+
+    BatchPurchaseDto toDto(BatchPurchaseEntity purchases);
+
+    BookDto toDto(BookEntity book);
+
+    BookDto toDto(BookDetailEntity book);
+
+    BookSummaryDto toDto(BookSummaryEntity book);
+
+    ClientDto toDto(ClientEntity client);
+
+    SuggestionDto toDto(SuggestionEntity suggestion);
+
+    FacetsDto toDto(FacetsEntity facets);
+
+    FacetCountDto toDto(FacetCountEntity count);
+
+    // The dates are written as LocalDateTime.toString, as ModelMapper did. The
+    // ISO formatter of MapStruct writes the seconds and the fractions of a
+    // second in a different way.
+    default String toDto(LocalDateTime dateTime) {
+        return dateTime == null ? null : dateTime.toString();
+    }
+}
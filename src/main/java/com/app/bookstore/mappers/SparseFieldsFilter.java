@@ -0,0 +1,148 @@
+package com.app.bookstore.mappers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+/**
+ * Writes only the properties requested on the fields parameter of a request.
+ * The fields are paths from the root of the response separated by dots, like
+ * "totalPrice" or "client.name". A selected property is written with all its
+ * properties, and the properties that lead to a selected one are written with
+ * only the selected properties. The properties of the lists are selected on
+ * the path of the list, "books.isbn" selects the ISBN of every book.
+ * Only the classes annotated with {@code @JsonFilter(SparseFieldsFilter.ID)}
+ * are filtered, the properties of the other classes are always written.
+ */
+public final class SparseFieldsFilter extends SimpleBeanPropertyFilter {
+
+    public static final String ID = "sparseFields";
+
+    // Used when the request has no fields.
+    public static final FilterProvider ALL_FIELDS = new SimpleFilterProvider()
+            .addFilter(ID, SimpleBeanPropertyFilter.serializeAll());
+
+    // The requested paths and the paths that lead to them.
+    private final Set<String> selected;
+    private final Set<String> included;
+
+    private SparseFieldsFilter(Set<String> selected) {
+        this.selected = selected;
+        this.included = new HashSet<>(selected);
+        for (String path : selected) {
+            for (int dot = path.indexOf('.'); dot >= 0; dot = path.indexOf('.', dot + 1)) {
+                included.add(path.substring(0, dot));
+            }
+        }
+    }
+
+    /**
+     * Returns the filters that write only the requested fields.
+     *
+     * @param fields The fields separated by commas. Null or empty to write all
+     *               the properties.
+     * @param root   Path added before every field, so the fields of a list of
+     *               books are given as the properties of a book. Null when the
+     *               fields are paths from the root of the response.
+     * @return The filters, or null when all the properties are written.
+     */
+    public static FilterProvider filters(String fields, String root) {
+        List<String> paths = paths(fields);
+        if (paths.isEmpty()) {
+            return null;
+        }
+
+        Set<String> selected = new HashSet<>();
+        for (String path : paths) {
+            selected.add(root == null ? path : root + "." + path);
+        }
+        return new SimpleFilterProvider().addFilter(ID, new SparseFieldsFilter(selected));
+    }
+
+    /**
+     * Wraps the body of a response so the converter writes only the requested
+     * fields.
+     *
+     * @see #filters(String, String)
+     */
+    public static MappingJacksonValue apply(Object body, String fields, String root) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(filters(fields, root));
+        return value;
+    }
+
+    /**
+     * Returns the fields trimmed and in a canonical order, empty when all the
+     * properties are written. Two values of the fields parameter that select
+     * the same properties are equal.
+     */
+    public static String canonical(String fields) {
+        return String.join(",", paths(fields).stream().sorted().distinct().toList());
+    }
+
+    private static List<String> paths(String fields) {
+        List<String> paths = new ArrayList<>();
+        if (fields == null) {
+            return paths;
+        }
+        for (String field : fields.split(",")) {
+            String path = field.trim();
+            if (!path.isEmpty()) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    @Override
+    public void serializeAsField(Object pojo, JsonGenerator generator, SerializerProvider provider,
+            PropertyWriter writer) throws Exception {
+        if (isIncluded(path(generator.getOutputContext(), writer.getName()))) {
+            writer.serializeAsField(pojo, generator, provider);
+        } else if (!generator.canOmitFields()) {
+            writer.serializeAsOmittedField(pojo, generator, provider);
+        }
+    }
+
+    private boolean isIncluded(String path) {
+        if (included.contains(path)) {
+            return true;
+        }
+        // The properties of a selected property are all written.
+        for (int dot = path.lastIndexOf('.'); dot > 0; dot = path.lastIndexOf('.', dot - 1)) {
+            if (selected.contains(path.substring(0, dot))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The context of the generator is the object being written. Every object
+    // above it has as current name the property that holds the object, and the
+    // lists are skipped, so the books of a list share the same path.
+    private static String path(JsonStreamContext context, String name) {
+        JsonStreamContext parent = context.getParent();
+        if (parent == null || parent.inRoot()) {
+            return name;
+        }
+
+        StringBuilder path = new StringBuilder(name);
+        for (; parent != null; parent = parent.getParent()) {
+            if (parent.inObject() && parent.getCurrentName() != null) {
+                path.insert(0, '.').insert(0, parent.getCurrentName());
+            }
+        }
+        return path.toString();
+    }
+}
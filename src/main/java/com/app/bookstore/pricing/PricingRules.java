@@ -0,0 +1,88 @@
+package com.app.bookstore.pricing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * The pricing rules that are in use. They are read from the rules file when
+ * they are used for the first time and read again when the file is modified,
+ * so the rules can be changed without a restart. A new table is published with
+ * a single volatile write and an order keeps the table it started with.
+ * A file with invalid rules is rejected and the previous rules are kept.
+ */
+@Component
+public class PricingRules {
+
+    private final Resource location;
+    // Guarded by this.
+    private long lastModified;
+    private long generation;
+    private volatile PricingTable table;
+
+    public PricingRules(@Value("${bookstore.pricing.rules-location:classpath:pricing-rules.properties}") Resource location) {
+        this.location = location;
+    }
+
+    /**
+     * Returns the rules that are in use.
+     */
+    public PricingTable current() {
+        PricingTable current = table;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (table == null) {
+                reload();
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Reads the rules file again and publishes its rules.
+     *
+     * @throws IllegalArgumentException if the rules are not valid.
+     */
+    public synchronized void reload() {
+        long modified = lastModified();
+        Properties properties = new Properties();
+        try (InputStream in = location.getInputStream()) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the pricing rules from " + location, e);
+        }
+
+        table = PricingTable.parse(generation + 1, properties);
+        generation++;
+        lastModified = modified;
+    }
+
+    /**
+     * Reloads the rules when the file was modified since it was read.
+     */
+    @Scheduled(fixedDelayString = "${bookstore.pricing.refresh-interval:30000}")
+    public synchronized void refresh() {
+        if (table != null && lastModified() != lastModified) {
+            reload();
+        }
+    }
+
+    // The resources inside a jar have no modification time, they are read
+    // only once.
+    private long lastModified() {
+        try {
+            return location.isFile() ? location.lastModified() : 0L;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.app.bookstore.pricing;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import com.app.bookstore.types.BookType;
+
+/**
+ * Immutable table of the pricing rules of every type of book.
+ * A rule has the tiers of the type, the rate paid on each tier in basis points
+ * (10000 is the full price) and whether the free books of the order are
+ * deducted from the purchased ones. The tier is chosen by the number of lines
+ * of the order. The price of a line is computed with integer arithmetic and
+ * nothing is allocated, the fractions of a cent are truncated.
+ */
+public final class PricingTable {
+
+    public static final int FULL_PRICE = 10_000;
+
+    private final long version;
+    // Indexed by the ordinal of the type, null when the type has no rule.
+    // The tiers are sorted by their minimum number of lines, the first one
+    // starts at 0.
+    private final int[][] minLines;
+    private final int[][] basisPoints;
+    private final boolean[] freeBooks;
+    // Rate of every type by number of lines, up to the start of the last tier
+    // of all the types, so the rate of a line is read without a search.
+    private final int[][] basisPointsByLines;
+
+    private PricingTable(long version, int[][] minLines, int[][] basisPoints, boolean[] freeBooks) {
+        this.version = version;
+        this.minLines = minLines;
+        this.basisPoints = basisPoints;
+        this.freeBooks = freeBooks;
+
+        int maxLines = 0;
+        for (int[] tiers : minLines) {
+            if (tiers != null) {
+                maxLines = Math.max(maxLines, tiers[tiers.length - 1]);
+            }
+        }
+        this.basisPointsByLines = new int[minLines.length][];
+        for (int type = 0; type < minLines.length; type++) {
+            if (minLines[type] == null) {
+                continue;
+            }
+            basisPointsByLines[type] = new int[maxLines + 1];
+            int tier = 0;
+            for (int lines = 0; lines <= maxLines; lines++) {
+                if (tier + 1 < minLines[type].length && lines >= minLines[type][tier + 1]) {
+                    tier++;
+                }
+                basisPointsByLines[type][lines] = basisPoints[type][tier];
+            }
+        }
+    }
+
+    /**
+     * Reads the rules from properties like:
+     * REGULAR.basis-points=0:10000,3:9000
+     * REGULAR.free-books=true
+     * Every tier is the minimum number of lines of the order and the rate paid
+     * from it on.
+     *
+     * @throws IllegalArgumentException if a rule is not valid.
+     */
+    public static PricingTable parse(long version, Properties properties) {
+        int types = BookType.values().length;
+        int[][] minLines = new int[types][];
+        int[][] basisPoints = new int[types][];
+        boolean[] freeBooks = new boolean[types];
+
+        for (BookType type : BookType.values()) {
+            String tiers = properties.getProperty(type.name() + ".basis-points");
+            if (tiers == null || tiers.isBlank()) {
+                continue;
+            }
+
+            String[] values = tiers.split(",");
+            minLines[type.ordinal()] = new int[values.length];
+            basisPoints[type.ordinal()] = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                String[] tier = values[i].trim().split(":");
+                if (tier.length != 2) {
+                    throw new IllegalArgumentException("Invalid pricing tier " + values[i] + " of " + type);
+                }
+                minLines[type.ordinal()][i] = Integer.parseInt(tier[0].trim());
+                basisPoints[type.ordinal()][i] = Integer.parseInt(tier[1].trim());
+
+                if (basisPoints[type.ordinal()][i] < 0
+                        || (i == 0 && minLines[type.ordinal()][i] != 0)
+                        || (i > 0 && minLines[type.ordinal()][i] <= minLines[type.ordinal()][i - 1])) {
+                    throw new IllegalArgumentException("Invalid pricing tiers " + tiers + " of " + type);
+                }
+            }
+            freeBooks[type.ordinal()] = Boolean.parseBoolean(
+                    properties.getProperty(type.name() + ".free-books", "true").trim());
+        }
+
+        return new PricingTable(version, minLines, basisPoints, freeBooks);
+    }
+
+    // Incremented every time the rules are loaded.
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean hasRule(BookType type) {
+        return type != null && basisPoints[type.ordinal()] != null;
+    }
+
+    // Whether the free books of this type are not paid and use loyalty points.
+    public boolean deductsFreeBooks(BookType type) {
+        return freeBooks[type.ordinal()];
+    }
+
+    /**
+     * Rate paid for the books of the type, in basis points, on an order with
+     * the given number of lines.
+     */
+    public int basisPoints(BookType type, int lines) {
+        int[] rates = basisPointsByLines[type.ordinal()];
+        return rates[Math.min(lines, rates.length - 1)];
+    }
+
+    /**
+     * Price of the units of a book of the type on an order with the given
+     * number of lines. The price is truncated to the cent.
+     *
+     * @throws ArithmeticException if the price does not fit in a long.
+     */
+    public long price(BookType type, long price, long units, int lines) {
+        return Math.multiplyExact(Math.multiplyExact(price, units), (long) basisPoints(type, lines)) / FULL_PRICE;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder rules = new StringBuilder("PricingTable[version=").append(version);
+        for (BookType type : BookType.values()) {
+            if (hasRule(type)) {
+                rules.append(", ").append(type)
+                        .append("=").append(Arrays.toString(minLines[type.ordinal()]))
+                        .append(Arrays.toString(basisPoints[type.ordinal()]))
+                        .append(freeBooks[type.ordinal()] ? "" : " no free books");
+            }
+        }
+        return rules.append("]").toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.app.bookstore.pricing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.app.bookstore.entities.NormalizedOrderEntity;
+import com.app.bookstore.entities.QuoteEntity;
+
+/**
+ * Bounded cache of the last quotes, the least recently used quote is evicted
+ * when it is full. A quote is found by the units of every ISBN of the order,
+ * whatever the order of its lines, and by the versions of the catalog and of
+ * the pricing rules it was computed with. Every purchase publishes a new
+ * version of the catalog, so the older quotes are not found anymore and are
+ * evicted over time.
+ */
+@Component
+public class QuoteCache {
+
+    private final Map<Key, QuoteEntity> quotes;
+
+    public QuoteCache(@Value("${bookstore.pricing.quote-cache-size:1024}") int maxSize) {
+        // Access order, the first entry is the least recently used.
+        this.quotes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, QuoteEntity> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized QuoteEntity get(NormalizedOrderEntity order, long catalogVersion, long pricingVersion) {
+        return quotes.get(new Key(order, catalogVersion, pricingVersion));
+    }
+
+    public synchronized void put(NormalizedOrderEntity order, long catalogVersion, long pricingVersion,
+            QuoteEntity quote) {
+        quotes.put(new Key(order, catalogVersion, pricingVersion), quote);
+    }
+
+    public synchronized int size() {
+        return quotes.size();
+    }
+
+    private static final class Key {
+        // The maps compare their entries whatever their order.
+        private final Map<String, Long> purchasedUnits;
+        private final Map<String, Long> freeUnits;
+        private final long catalogVersion;
+        private final long pricingVersion;
+        private final int hash;
+
+        private Key(NormalizedOrderEntity order, long catalogVersion, long pricingVersion) {
+            this.purchasedUnits = order.getPurchasedUnits();
+            this.freeUnits = order.getFreeUnits();
+            this.catalogVersion = catalogVersion;
+            this.pricingVersion = pricingVersion;
+            this.hash = 31 * (31 * (31 * purchasedUnits.hashCode() + freeUnits.hashCode())
+                    + Long.hashCode(catalogVersion)) + Long.hashCode(pricingVersion);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return catalogVersion == key.catalogVersion
+                    && pricingVersion == key.pricingVersion
+                    && purchasedUnits.equals(key.purchasedUnits)
+                    && freeUnits.equals(key.freeUnits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,20 +1,53 @@
 package com.app.bookstore.repositories;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.app.bookstore.entities.BookDetailEntity;
 import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.BookSummaryEntity;
+
+import jakarta.persistence.QueryHint;
 
 @Repository
-public interface BooksRepository extends JpaRepository<BookEntity, Long> {
+public interface BooksRepository extends JpaRepository<BookEntity, Long>, BooksStockRepository {
 
     @Query("SELECT b FROM BookEntity b WHERE b.isbn IN :isbnList AND b.sold = false")
 	public List<BookEntity> findAllByIsbn(@Param("isbnList") List<String> isbnList);
 
     @Query("SELECT b FROM BookEntity b WHERE b.sold = false")
     public List<BookEntity> findAllAvailableBooks();
+
+    // Keyset pagination: seeks past the last id of the previous page using the
+    // primary key index, so the cost of a page does not depend on its position.
+    // The books are read as summaries, so the description is not transferred
+    // and the rows are not registered on the persistence context.
+    @Query("SELECT new com.app.bookstore.entities.BookSummaryEntity(b.id, b.title, b.quantity, b.type, b.price, "
+            + "b.author, b.publisher, b.isbn, b.publicationYear) "
+            + "FROM BookEntity b WHERE b.sold = false AND b.id > :afterId ORDER BY b.id")
+    public List<BookSummaryEntity> findAvailableBookSummariesAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Reads the summaries of the available books with a database cursor. It has
+    // to be consumed inside a transaction and the stream has to be closed once
+    // it is read.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @Query("SELECT new com.app.bookstore.entities.BookSummaryEntity(b.id, b.title, b.quantity, b.type, b.price, "
+            + "b.author, b.publisher, b.isbn, b.publicationYear) "
+            + "FROM BookEntity b WHERE b.sold = false ORDER BY b.id")
+    public Stream<BookSummaryEntity> streamAvailableBookSummaries();
+
+    @Query("SELECT new com.app.bookstore.entities.BookDetailEntity(b.title, b.quantity, b.type, b.price, "
+            + "b.author, b.publisher, b.isbn, b.description, b.publicationYear) "
+            + "FROM BookEntity b WHERE b.isbn = :isbn")
+    public Optional<BookDetailEntity> findBookDetailByIsbn(@Param("isbn") String isbn);
 }
@@ -0,0 +1,29 @@
+package com.app.bookstore.repositories;
+
+/**
+ * Stock operations of the books that are written with plain JDBC.
+ */
+public interface BooksStockRepository {
+
+    /**
+     * Takes the units from the stock of the available books only when they
+     * have enough of them, with a single batch of conditional updates, so two
+     * purchases cannot sell the same units. A book is sold when its last units
+     * are taken. The updates are executed in the order of the arrays.
+     *
+     * @param ids   The ids of the books.
+     * @param units The units to take from every book.
+     * @return The number of rows updated for every book, 0 when the book does
+     *         not have enough units.
+     */
+    int[] decrementStock(long[] ids, long[] units);
+
+    /**
+     * Takes the units sold from the stock of the books, with a single batch of
+     * updates. A book is sold when it has no units left.
+     *
+     * @param ids   The ids of the books.
+     * @param units The units sold of every book, negative to give units back.
+     */
+    void applyStockChanges(long[] ids, long[] units);
+}
@@ -0,0 +1,71 @@
+package com.app.bookstore.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The JDBC statements run on the connection of the JPA transaction, nothing of
+ * the persistence context is flushed or refreshed. The books read by the same
+ * transaction keep the stock they were read with.
+ * The stock taken by the purchases does not join the transaction with its own
+ * interceptor, so a statement that fails does not mark the transaction of the
+ * purchase sequencer for rollback, only the purchase is rolled back to its
+ * savepoint. The changes written behind the purchases are applied in a
+ * transaction of their own when there is none, all of them or none.
+ */
+public class BooksStockRepositoryImpl implements BooksStockRepository {
+
+    private static final String DECREMENT_STOCK = "UPDATE books SET quantity = quantity - ?, "
+            + "sold = CASE WHEN quantity = ? THEN TRUE ELSE FALSE END "
+            + "WHERE id = ? AND sold = FALSE AND quantity >= ?";
+
+    private static final String APPLY_STOCK_CHANGE = "UPDATE books SET quantity = quantity - ?, "
+            + "sold = CASE WHEN quantity <= ? THEN TRUE ELSE FALSE END "
+            + "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BooksStockRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int[] decrementStock(long[] ids, long[] units) {
+        return jdbcTemplate.batchUpdate(DECREMENT_STOCK, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, units[i]);
+                statement.setLong(2, units[i]);
+                statement.setLong(3, ids[i]);
+                statement.setLong(4, units[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ids.length;
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public void applyStockChanges(long[] ids, long[] units) {
+        jdbcTemplate.batchUpdate(APPLY_STOCK_CHANGE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, units[i]);
+                statement.setLong(2, units[i]);
+                statement.setLong(3, ids[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ids.length;
+            }
+        });
+    }
+}
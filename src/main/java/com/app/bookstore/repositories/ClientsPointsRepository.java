@@ -0,0 +1,31 @@
+package com.app.bookstore.repositories;
+
+/**
+ * Loyalty points operations of the clients that are written with plain JDBC.
+ */
+public interface ClientsPointsRepository {
+
+    /**
+     * Adds the points earned minus the points used to the client with a single
+     * statement, only when the client has at least the points required, so
+     * two purchases of the same client cannot spend the same points.
+     *
+     * @return 1, or 0 when the client does not have enough points.
+     */
+    int updateLoyaltyPoints(Long id, long delta, long required);
+
+    /**
+     * Adds the points earned minus the points used to every client only when
+     * the client has at least the points required, with a single batch of
+     * conditional updates. The updates are executed in the order of the
+     * arrays, so the same client can appear more than once.
+     *
+     * @param ids      The ids of the clients.
+     * @param deltas   The points to add to every client, negative when the
+     *                 client uses more points than it earns.
+     * @param required The points that every client must have.
+     * @return The number of rows updated for every client, 0 when the client
+     *         does not have enough points.
+     */
+    int[] updateLoyaltyPoints(long[] ids, long[] deltas, long[] required);
+}
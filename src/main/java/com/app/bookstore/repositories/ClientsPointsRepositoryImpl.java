@@ -0,0 +1,49 @@
+package com.app.bookstore.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The JDBC statements run on the connection of the JPA transaction, the
+ * clients read by the same transaction keep the points they were read with.
+ * The methods do not open or join a transaction of their own: a statement that
+ * fails in the transaction of a purchase would mark it for rollback, and the
+ * purchase sequencer rolls back only the failed purchase to its savepoint.
+ * Without a transaction every statement is committed on its own.
+ */
+public class ClientsPointsRepositoryImpl implements ClientsPointsRepository {
+
+    private static final String UPDATE_LOYALTY_POINTS = "UPDATE clients SET loyalty_points = loyalty_points + ? "
+            + "WHERE id = ? AND loyalty_points >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ClientsPointsRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int updateLoyaltyPoints(Long id, long delta, long required) {
+        return jdbcTemplate.update(UPDATE_LOYALTY_POINTS, delta, id, required);
+    }
+
+    @Override
+    public int[] updateLoyaltyPoints(long[] ids, long[] deltas, long[] required) {
+        return jdbcTemplate.batchUpdate(UPDATE_LOYALTY_POINTS, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, deltas[i]);
+                statement.setLong(2, ids[i]);
+                statement.setLong(3, required[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ids.length;
+            }
+        });
+    }
+}
@@ -6,5 +6,5 @@ import org.springframework.stereotype.Repository;
 import com.app.bookstore.entities.ClientEntity;
 
 @Repository
-public interface ClientsRepository extends JpaRepository<ClientEntity, Long> {
+public interface ClientsRepository extends JpaRepository<ClientEntity, Long>, ClientsPointsRepository {
 }
@@ -0,0 +1,435 @@
+package com.app.bookstore.sequencer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.entities.PendingPurchaseEntity;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.exceptions.UnconfirmedPurchaseException;
+import com.app.bookstore.services.PurchaseService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Group commit of the purchases, and their flash sale mode. The request threads check and price their
+ * orders at once and put them in a ring buffer, and a single thread takes the
+ * stock and the loyalty points of the purchases one after the other, in the
+ * order they were put. Only that thread writes, so the purchases never wait
+ * for each other on the rows of the hot books and clients, and a purchase
+ * fails only when there is really no stock or points left.
+ * The slots of the ring are allocated once. A request thread takes a free slot
+ * from a semaphore, claims it with an atomic counter and publishes its purchase
+ * with the sequence of the slot, the sequencer thread reads the slots in
+ * sequence and gives them back to the semaphore. Nothing is locked while the
+ * ring has free slots, the request thread waits on the handle of its purchase.
+ * The purchases that arrive within a short window are applied in a single
+ * transaction, so they share its commit. Every purchase has its own savepoint:
+ * a purchase that fails is rolled back to it and the rest of the batch is
+ * committed. The savepoints are set on the JDBC connection of the transaction,
+ * the JPA transaction manager does not support nested transactions.
+ * The purchases need a single thread that owns the transaction to share its
+ * commit, so the group commit of the purchases is this sequencer too. It runs
+ * when the group commit or the flash sale mode is enabled.
+ * A request thread waits for a free slot and for its purchase for a limited
+ * time. When the time is over and the sequencer has not taken the purchase
+ * yet, the purchase is dropped, so it is never applied after the request
+ * failed. A slot is claimed only once it is free, so a request that gives up
+ * waiting for one never leaves a hole in the ring. Any error of a
+ * batch fails the purchases of the batch and the sequencer goes on with the
+ * next one. The purchases left in the ring when the sequencer ends are failed.
+ */
+@Component
+public class PurchaseSequencer {
+
+    private final PurchaseService purchaseService;
+    private final DataSource dataSource;
+    private final TransactionTemplate batchTransaction;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long batchWindowNanos;
+    private final long timeoutNanos;
+    private final Slot[] slots;
+    private final int mask;
+    // Sequence of the next slot to claim.
+    private final AtomicLong claimed = new AtomicLong();
+    // Sequence of the purchase written on every slot, -1 while it has none.
+    private final AtomicLongArray published;
+    // Slots that can be claimed, given back by the sequencer once it has read
+    // them.
+    private final Semaphore free;
+    private volatile boolean running;
+    // Set once the sequencer thread has ended, the purchases put after it are
+    // failed by their own thread.
+    private volatile boolean terminated;
+    private Thread sequencer;
+
+    private final DistributionSummary batchSizes;
+    private final Timer batchTimes;
+    private final Counter appliedPurchases;
+    private final Counter rolledBackPurchases;
+    private final Counter failedBatches;
+
+    public PurchaseSequencer(PurchaseService purchaseService, PlatformTransactionManager transactionManager,
+            DataSource dataSource, MeterRegistry meterRegistry,
+            @Value("#{${bookstore.flash-sale.enabled:false} or ${bookstore.purchase.group-commit.enabled:true}}") boolean enabled,
+            @Value("${bookstore.flash-sale.ring-size:1024}") int ringSize,
+            @Value("${bookstore.flash-sale.batch-size:32}") int batchSize,
+            @Value("${bookstore.flash-sale.batch-window-micros:1000}") long batchWindowMicros,
+            @Value("${bookstore.flash-sale.timeout-millis:10000}") long timeoutMillis) {
+        if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("The size of the ring must be a power of two: " + ringSize);
+        }
+        if (batchSize <= 0 || batchWindowMicros < 0) {
+            throw new IllegalArgumentException(
+                    "Wrong batch of purchases, size " + batchSize + " and window " + batchWindowMicros);
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("The timeout of a purchase must be positive: " + timeoutMillis);
+        }
+
+        this.purchaseService = purchaseService;
+        this.dataSource = dataSource;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(batchWindowMicros);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.slots = new Slot[ringSize];
+        this.mask = ringSize - 1;
+        this.published = new AtomicLongArray(ringSize);
+        this.free = new Semaphore(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1L);
+        }
+
+        this.batchSizes = DistributionSummary.builder("bookstore.purchases.batch.size")
+                .description("Purchases applied in a single transaction")
+                .register(meterRegistry);
+        this.batchTimes = Timer.builder("bookstore.purchases.batch.time")
+                .description("Time to apply and commit a batch of purchases")
+                .register(meterRegistry);
+        this.appliedPurchases = Counter.builder("bookstore.purchases.sequenced")
+                .tag("result", "applied")
+                .register(meterRegistry);
+        this.rolledBackPurchases = Counter.builder("bookstore.purchases.sequenced")
+                .tag("result", "rolled-back")
+                .register(meterRegistry);
+        this.failedBatches = Counter.builder("bookstore.purchases.batch.failed")
+                .description("Batches of purchases whose commit failed")
+                .register(meterRegistry);
+    }
+
+    // When it is not enabled the purchases are applied by the request threads.
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+
+        running = true;
+        terminated = false;
+        sequencer = new Thread(this::sequence, "purchase-sequencer");
+        sequencer.setDaemon(true);
+        sequencer.start();
+    }
+
+    // The purchases already in the ring are applied before the thread ends.
+    // The web server is stopped before, so no purchase is put meanwhile.
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        sequencer.join();
+    }
+
+    /**
+     * Checks and prices the order on the calling thread and waits for the
+     * sequencer thread to apply it.
+     *
+     * @param order The order of the client.
+     * @return The purchase with the books and the client updated.
+     * @throws PurchaseException With PURCHASE_TIMEOUT when the purchase was
+     *                           not applied in time, an
+     *                           UnconfirmedPurchaseException when it may still
+     *                           be applied.
+     */
+    public PurchaseEntity run(OrderEntity order) throws PurchaseException {
+        PendingPurchaseEntity pending = purchaseService.prepare(order);
+        long deadline = System.nanoTime() + timeoutNanos;
+        Ticket ticket = put(pending, deadline);
+
+        try {
+            return await(ticket, deadline);
+        } catch (TimeoutException e) {
+            if (ticket.taken.compareAndSet(false, true)) {
+                ticket.result.cancel(false);
+                throw notAppliedInTime();
+            }
+        }
+
+        // The sequencer took the purchase meanwhile, its batch is running.
+        try {
+            return await(ticket, System.nanoTime() + timeoutNanos);
+        } catch (TimeoutException e) {
+            // A copy, so the caller cannot complete the handle of the sequencer.
+            throw new UnconfirmedPurchaseException("The purchase was not confirmed in time, it may have been applied",
+                    BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode(), ticket.result.copy());
+        }
+    }
+
+    /**
+     * Puts a prepared purchase in the ring, waiting for a free slot when it is
+     * full.
+     *
+     * @param pending The purchase returned by PurchaseService.prepare.
+     * @return The handle completed with the purchase applied, or with the
+     *         exception that rolled it back. It fails with PURCHASE_TIMEOUT
+     *         when no slot is free in time.
+     */
+    public CompletableFuture<PurchaseEntity> submit(PendingPurchaseEntity pending) {
+        return put(pending, System.nanoTime() + timeoutNanos).result;
+    }
+
+    private Ticket put(PendingPurchaseEntity pending, long deadline) {
+        if (!running) {
+            throw new IllegalStateException("The purchase sequencer is not running");
+        }
+
+        Ticket ticket = new Ticket(pending);
+        try {
+            if (!free.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                fail(ticket, notAppliedInTime());
+                return ticket;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(ticket, new IllegalStateException("Interrupted while waiting for a slot of the ring", e));
+            return ticket;
+        }
+        // The slot is given back, so the next thread waiting sees the sequencer
+        // ended too.
+        if (terminated) {
+            free.release();
+            fail(ticket, new IllegalStateException("The purchase sequencer is not running"));
+            return ticket;
+        }
+
+        long sequence = claimed.getAndIncrement();
+        int index = (int) sequence & mask;
+        slots[index].ticket = ticket;
+        // The volatile write makes the slot visible to the sequencer thread.
+        published.set(index, sequence);
+
+        // The sequencer ended before it could see the purchase.
+        if (terminated) {
+            fail(ticket, new IllegalStateException("The purchase sequencer is not running"));
+        }
+        return ticket;
+    }
+
+    private PurchaseEntity await(Ticket ticket, long deadline) throws TimeoutException {
+        try {
+            return ticket.result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("The purchase failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the purchase", e);
+        }
+    }
+
+    private void sequence() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        long next = 0L;
+        int idle = 0;
+        try {
+            while (running || next < claimed.get()) {
+                if (published.get((int) next & mask) != next) {
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+
+                // The batch starts with the first purchase and takes the ones
+                // that arrive within the window, up to its size. The purchases
+                // whose request gave up waiting are dropped.
+                long deadline = System.nanoTime() + batchWindowNanos;
+                do {
+                    Slot slot = slots[(int) next & mask];
+                    Ticket ticket = slot.ticket;
+                    slot.ticket = null;
+                    next++;
+                    free.release();
+                    if (ticket.taken.compareAndSet(false, true)) {
+                        batch.add(ticket);
+                    }
+                } while (batch.size() < batchSize && waitFor(next, deadline));
+
+                if (!batch.isEmpty()) {
+                    apply(batch);
+                }
+                batch.clear();
+            }
+        } finally {
+            running = false;
+            terminated = true;
+            // Wakes up the threads waiting for a slot, they fail their purchase.
+            free.release();
+            for (Ticket ticket : batch) {
+                fail(ticket, new IllegalStateException("The purchase sequencer is not running"));
+            }
+            // The purchases put after the last one taken. A purchase that is
+            // not published yet is failed by its own thread.
+            for (long sequence = next; sequence < claimed.get(); sequence++) {
+                int index = (int) sequence & mask;
+                if (published.get(index) == sequence) {
+                    fail(slots[index].ticket, new IllegalStateException("The purchase sequencer is not running"));
+                }
+            }
+        }
+    }
+
+    private static PurchaseException notAppliedInTime() {
+        return new PurchaseException("The purchase was not applied in time, nothing was bought",
+                BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode());
+    }
+
+    private static void fail(Ticket ticket, Throwable error) {
+        ticket.taken.set(true);
+        ticket.result.completeExceptionally(error);
+    }
+
+    // Waits for the purchase of the sequence until the deadline, giving the
+    // processor to the request threads meanwhile.
+    private boolean waitFor(long sequence, long deadline) {
+        while (published.get((int) sequence & mask) != sequence) {
+            if (System.nanoTime() - deadline >= 0L) {
+                return false;
+            }
+            Thread.yield();
+        }
+        return true;
+    }
+
+    // The handles are completed once the batch is committed. When the commit
+    // fails, all the purchases of the batch fail with it.
+    private void apply(List<Ticket> batch) {
+        PurchaseEntity[] purchases = new PurchaseEntity[batch.size()];
+        RuntimeException[] errors = new RuntimeException[batch.size()];
+
+        long start = System.nanoTime();
+        try {
+            batchTransaction.executeWithoutResult(status -> {
+                Connection connection = DataSourceUtils.getConnection(dataSource);
+                try {
+                    for (int i = 0; i < purchases.length; i++) {
+                        Savepoint savepoint = connection.setSavepoint();
+                        try {
+                            purchases[i] = purchaseService.apply(batch.get(i).pending);
+                            connection.releaseSavepoint(savepoint);
+                        } catch (RuntimeException e) {
+                            connection.rollback(savepoint);
+                            errors[i] = e;
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new TransactionSystemException("Could not set or roll back the savepoint of a purchase", e);
+                } finally {
+                    DataSourceUtils.releaseConnection(connection, dataSource);
+                }
+            });
+        } catch (Throwable e) {
+            // Also the errors that are not exceptions, the sequencer thread
+            // goes on with the next batch.
+            failedBatches.increment();
+            for (Ticket ticket : batch) {
+                ticket.result.completeExceptionally(e);
+            }
+            return;
+        } finally {
+            batchTimes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizes.record(purchases.length);
+        }
+
+        for (int i = 0; i < purchases.length; i++) {
+            if (errors[i] == null) {
+                appliedPurchases.increment();
+                batch.get(i).result.complete(purchases[i]);
+            } else {
+                rolledBackPurchases.increment();
+                batch.get(i).result.completeExceptionally(errors[i]);
+            }
+        }
+    }
+
+    // Spins while the purchases are coming, and sleeps a few microseconds at
+    // a time once the ring has been empty for a while.
+    private int idle(int idle) {
+        if (idle < 100) {
+            Thread.onSpinWait();
+        } else if (idle < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000L);
+        }
+        return Math.min(idle + 1, 200);
+    }
+
+    // Written by the request thread that claimed it before the sequence is
+    // published, and read by the sequencer thread after.
+    private static final class Slot {
+        private Ticket ticket;
+    }
+
+    // A purchase put in the ring. It is taken once, by the sequencer to apply
+    // it or by its request thread to drop it when the wait is over.
+    private static final class Ticket {
+        private final PendingPurchaseEntity pending;
+        private final CompletableFuture<PurchaseEntity> result = new CompletableFuture<>();
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        private Ticket(PendingPurchaseEntity pending) {
+            this.pending = pending;
+        }
+    }
+}
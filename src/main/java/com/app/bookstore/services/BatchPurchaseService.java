@@ -0,0 +1,476 @@
+package com.app.bookstore.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.app.bookstore.catalog.CatalogChangedEvent;
+import com.app.bookstore.entities.BatchOrderEntity;
+import com.app.bookstore.entities.BatchPurchaseEntity;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.ClientEntity;
+import com.app.bookstore.entities.NormalizedOrderEntity;
+import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.entities.PurchaseResultEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.inventory.BooksInventory;
+import com.app.bookstore.pricing.PricingRules;
+import com.app.bookstore.pricing.PricingTable;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.repositories.ClientsRepository;
+
+@Service
+public class BatchPurchaseService implements StoreService<BatchOrderEntity> {
+
+    private final PurchaseService purchaseService;
+    private final ClientsRepository clientsRepository;
+    private final BooksRepository booksRepository;
+    private final NormalizeOrderService normalizeOrderService;
+    private final PricingRules pricingRules;
+    private final BooksInventory booksInventory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxOrders;
+
+    public BatchPurchaseService(PurchaseService purchaseService, ClientsRepository clientsRepository,
+            BooksRepository booksRepository, NormalizeOrderService normalizeOrderService,
+            PricingRules pricingRules, BooksInventory booksInventory, ApplicationEventPublisher eventPublisher,
+            @Value("${bookstore.purchase.batch.max-size:500}") int maxOrders) {
+        this.purchaseService = purchaseService;
+        this.clientsRepository = clientsRepository;
+        this.booksRepository = booksRepository;
+        this.normalizeOrderService = normalizeOrderService;
+        this.pricingRules = pricingRules;
+        this.booksInventory = booksInventory;
+        this.eventPublisher = eventPublisher;
+        this.maxOrders = maxOrders;
+    }
+
+    /**
+     * Purchases many orders at once, every order is purchased or fails on its
+     * own with the same rules as a single purchase. The orders are served in
+     * the order of the batch, an order sees the stock and the loyalty points
+     * left by the orders before it.
+     * The clients and the books of all the orders are read with one query
+     * each, the orders are checked and priced in parallel, and the stock and
+     * the loyalty points of all the orders are taken with one batch of
+     * conditional updates each. The updates of an order that fails after its
+     * stock is taken are undone with one more batch. A savepoint per order,
+     * like the purchases of the sequencer, would need the statements of every
+     * order between its own savepoints, and so one round trip per order
+     * instead of one per batch. Those orders only fail when a purchase out of
+     * the batch took the same units or points meanwhile.
+     *
+     * @param batch The orders of the clients.
+     * @return The result of every order, in the order of the batch.
+     */
+    @Override
+    @Transactional
+    public BatchPurchaseEntity run(BatchOrderEntity batch) throws PurchaseException {
+        if (batch == null || batch.getOrders() == null || batch.getOrders().isEmpty()) {
+            throw new PurchaseException("The list of orders cannot be null or empty",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        if (batch.getOrders().size() > maxOrders) {
+            throw new PurchaseException("The list of orders cannot have more than " + maxOrders + " orders",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+
+        List<BatchOrder> orders = prepare(batch.getOrders());
+
+        // The units read with the books and the points read with the clients
+        // are taken in memory first, in the order of the batch, so the
+        // conditional updates only fail for the purchases made meanwhile.
+        takeInMemory(orders);
+
+        try {
+            if (!booksInventory.isEnabled()) {
+                takeStockFromDatabase(orders);
+            }
+            updateLoyaltyPoints(orders);
+        } catch (RuntimeException e) {
+            if (booksInventory.isEnabled()) {
+                for (BatchOrder order : orders) {
+                    if (order.ids != null) {
+                        booksInventory.release(order.ids, order.units);
+                    }
+                }
+            }
+            throw e;
+        }
+        giveBackStock(orders);
+
+        return results(orders);
+    }
+
+    // Reads the clients and the books of all the orders, and checks and prices
+    // every order in parallel. The orders that fail keep their error.
+    private List<BatchOrder> prepare(List<OrderEntity> orderEntities) {
+        List<BatchOrder> orders = new ArrayList<>(orderEntities.size());
+        Set<Long> clientIds = new HashSet<>();
+        Set<String> isbns = new LinkedHashSet<>();
+        for (OrderEntity orderEntity : orderEntities) {
+            BatchOrder order = new BatchOrder(orderEntity);
+            if (orderEntity != null) {
+                order.order = normalizeOrderService.run(orderEntity);
+                if (orderEntity.getClientId() != null) {
+                    clientIds.add(orderEntity.getClientId());
+                }
+                isbns.addAll(order.order.getPurchasedUnits().keySet());
+            }
+            orders.add(order);
+        }
+
+        Map<Long, ClientEntity> clients = new HashMap<>();
+        for (ClientEntity client : clientsRepository.findAllById(clientIds)) {
+            clients.put(client.getId(), client);
+        }
+        Map<String, BookEntity> books = new HashMap<>();
+        if (!isbns.isEmpty()) {
+            for (BookEntity book : booksRepository.findAllByIsbn(new ArrayList<>(isbns))) {
+                books.put(book.getIsbn(), book);
+            }
+        }
+
+        // The same rules price all the orders, even if the rules are reloaded
+        // meanwhile.
+        PricingTable rules = pricingRules.current();
+        IntStream.range(0, orders.size()).parallel().forEach(i -> {
+            BatchOrder order = orders.get(i);
+            try {
+                prepare(order, clients, books, rules);
+            } catch (PurchaseException e) {
+                order.error = e;
+            }
+        });
+        return orders;
+    }
+
+    private void prepare(BatchOrder order, Map<Long, ClientEntity> clients, Map<String, BookEntity> books,
+            PricingTable rules) {
+        if (order.order == null) {
+            throw new PurchaseException("Order cannot be null", BookStoreErrorCodes.INCORRECT_ORDER.getErrorCode());
+        }
+
+        if (order.order.getClientId() == null) {
+            throw new PurchaseException("Client ID cannot be null",
+                    BookStoreErrorCodes.CLIENT_NOT_FOUND.getErrorCode());
+        }
+        order.client = clients.get(order.order.getClientId());
+        if (order.client == null) {
+            throw new PurchaseException("Client with ID " + order.order.getClientId() + " not found",
+                    BookStoreErrorCodes.CLIENT_NOT_FOUND.getErrorCode());
+        }
+
+        purchaseService.checkOrder(order.order);
+        List<BookEntity> orderBooks = new ArrayList<>();
+        for (String isbn : order.order.getPurchasedUnits().keySet()) {
+            BookEntity book = books.get(isbn);
+            if (book != null) {
+                orderBooks.add(book);
+            }
+        }
+        purchaseService.checkBooks(order.order, orderBooks);
+        purchaseService.checkLoyaltyPoints(order.order, order.client);
+        for (BookEntity book : orderBooks) {
+            purchaseService.getRemainingQuantity(book, order.order);
+        }
+
+        order.purchase = purchaseService.calculateOrderDetails(orderBooks, order.order, rules);
+        order.usedLoyaltyPoints = purchaseService.getUsedLoyaltyPoints(orderBooks, order.order, rules);
+
+        // The books are taken in the order of their ISBN, like a single
+        // purchase.
+        order.books = new ArrayList<>(orderBooks);
+        order.books.sort(Comparator.comparing(BookEntity::getIsbn));
+        int size = order.books.size();
+        order.units = new long[size];
+        order.remaining = new long[size];
+        for (int i = 0; i < size; i++) {
+            order.units[i] = order.order.purchased(order.books.get(i).getIsbn());
+        }
+    }
+
+    // Takes the points and then the units of every order, in the order of the
+    // batch, like the purchases of single clients one after the other. An
+    // order that fails takes nothing, so the next orders see the points and
+    // the units it did not take.
+    private void takeInMemory(List<BatchOrder> orders) {
+        Map<Long, Long> points = new HashMap<>();
+        Map<Long, Long> available = new HashMap<>();
+        for (BatchOrder order : orders) {
+            if (order.error != null) {
+                continue;
+            }
+
+            long current = points.getOrDefault(order.client.getId(), order.client.getLoyaltyPoints());
+            if (current < purchaseService.getLoyaltyPointsNeeded(order.order)) {
+                order.error = notEnoughLoyaltyPoints();
+                continue;
+            }
+
+            BookEntity notEnough = booksInventory.isEnabled()
+                    ? reserveStock(order)
+                    : takeStock(order, available);
+            if (notEnough != null) {
+                order.error = notEnoughBooks(notEnough);
+                continue;
+            }
+            points.put(order.client.getId(), current + order.delta());
+        }
+    }
+
+    // Takes the units of the order from the inventory. Returns the first book
+    // without enough units, or null when the units were taken.
+    private BookEntity reserveStock(BatchOrder order) {
+        long[] ids = new long[order.books.size()];
+        long[] quantities = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = order.books.get(i).getId();
+            quantities[i] = order.books.get(i).getQuantity();
+        }
+        int notEnough = booksInventory.reserve(ids, quantities, order.units, order.remaining);
+        if (notEnough >= 0) {
+            return order.books.get(notEnough);
+        }
+        order.ids = ids;
+        return null;
+    }
+
+    // Takes the units of the order from the units read with the books and not
+    // taken by the orders before it. Returns the first book without enough
+    // units, or null when the units were taken.
+    private BookEntity takeStock(BatchOrder order, Map<Long, Long> available) {
+        for (int i = 0; i < order.books.size(); i++) {
+            BookEntity book = order.books.get(i);
+            if (available.getOrDefault(book.getId(), book.getQuantity()) < order.units[i]) {
+                return book;
+            }
+        }
+
+        for (int i = 0; i < order.books.size(); i++) {
+            BookEntity book = order.books.get(i);
+            long left = available.getOrDefault(book.getId(), book.getQuantity()) - order.units[i];
+            available.put(book.getId(), left);
+            order.remaining[i] = left;
+        }
+        return null;
+    }
+
+    // One conditional update for every book of every order, in a single batch.
+    // The rows are locked in the order of their ISBN, the orders of the same
+    // book in the order of the batch.
+    private void takeStockFromDatabase(List<BatchOrder> orders) {
+        List<long[]> statements = new ArrayList<>();
+        for (int index = 0; index < orders.size(); index++) {
+            BatchOrder order = orders.get(index);
+            if (order.error != null) {
+                continue;
+            }
+            order.ids = new long[order.books.size()];
+            order.taken = new boolean[order.books.size()];
+            for (int i = 0; i < order.books.size(); i++) {
+                order.ids[i] = order.books.get(i).getId();
+                order.taken[i] = true;
+                statements.add(new long[] { index, i });
+            }
+        }
+        if (statements.isEmpty()) {
+            return;
+        }
+
+        statements.sort(Comparator.<long[], String>comparing(s -> orders.get((int) s[0]).books.get((int) s[1]).getIsbn())
+                .thenComparingLong(s -> s[0]));
+        long[] ids = new long[statements.size()];
+        long[] units = new long[statements.size()];
+        for (int i = 0; i < ids.length; i++) {
+            BatchOrder order = orders.get((int) statements.get(i)[0]);
+            int book = (int) statements.get(i)[1];
+            ids[i] = order.ids[book];
+            units[i] = order.units[book];
+        }
+
+        int[] updated = booksRepository.decrementStock(ids, units);
+        for (int i = 0; i < ids.length; i++) {
+            BatchOrder order = orders.get((int) statements.get(i)[0]);
+            int book = (int) statements.get(i)[1];
+            if (updated[i] == 0) {
+                order.taken[book] = false;
+                if (order.error == null) {
+                    order.error = notEnoughBooks(order.books.get(book));
+                }
+            }
+        }
+    }
+
+    // One conditional update for every order, in a single batch. The rows are
+    // locked in the order of their id, the orders of the same client in the
+    // order of the batch.
+    private void updateLoyaltyPoints(List<BatchOrder> orders) {
+        List<Integer> statements = new ArrayList<>();
+        for (int index = 0; index < orders.size(); index++) {
+            if (orders.get(index).error == null) {
+                statements.add(index);
+            }
+        }
+        if (statements.isEmpty()) {
+            return;
+        }
+
+        statements.sort(Comparator.<Integer>comparingLong(index -> orders.get(index).client.getId())
+                .thenComparingInt(index -> index));
+        long[] ids = new long[statements.size()];
+        long[] deltas = new long[statements.size()];
+        long[] required = new long[statements.size()];
+        for (int i = 0; i < ids.length; i++) {
+            BatchOrder order = orders.get(statements.get(i));
+            ids[i] = order.client.getId();
+            deltas[i] = order.delta();
+            required[i] = purchaseService.getLoyaltyPointsNeeded(order.order);
+        }
+
+        int[] updated = clientsRepository.updateLoyaltyPoints(ids, deltas, required);
+        for (int i = 0; i < ids.length; i++) {
+            if (updated[i] == 0) {
+                BatchOrder order = orders.get(statements.get(i));
+                order.error = notEnoughLoyaltyPoints();
+            }
+        }
+    }
+
+    // Gives back the units taken by the orders that failed and confirms the
+    // units of the orders purchased. On the database the later orders that
+    // failed for lack of those units are not retried, as the API docs say.
+    private void giveBackStock(List<BatchOrder> orders) {
+        List<Long> ids = new ArrayList<>();
+        List<Long> units = new ArrayList<>();
+        for (BatchOrder order : orders) {
+            if (order.ids == null) {
+                continue;
+            }
+
+            if (booksInventory.isEnabled()) {
+                if (order.error == null) {
+                    booksInventory.confirm(order.ids, order.units);
+                } else {
+                    booksInventory.release(order.ids, order.units);
+                }
+            } else if (order.error != null) {
+                for (int i = 0; i < order.ids.length; i++) {
+                    if (order.taken[i]) {
+                        ids.add(order.ids[i]);
+                        units.add(-order.units[i]);
+                    }
+                }
+            }
+        }
+
+        if (!ids.isEmpty()) {
+            booksRepository.applyStockChanges(ids.stream().mapToLong(Long::longValue).toArray(),
+                    units.stream().mapToLong(Long::longValue).toArray());
+        }
+    }
+
+    // The purchases have copies of their client with the points left after
+    // the purchases of the batch up to them, and copies of their books with
+    // the units left once they took their units.
+    private BatchPurchaseEntity results(List<BatchOrder> orders) {
+        Map<String, Long> soldBooks = new HashMap<>();
+        Map<Long, Long> points = new HashMap<>();
+        List<PurchaseResultEntity> results = new ArrayList<>(orders.size());
+        for (BatchOrder order : orders) {
+            Long clientId = order.orderEntity == null ? null : order.orderEntity.getClientId();
+            if (order.error != null) {
+                results.add(PurchaseResultEntity.builder()
+                        .clientId(clientId)
+                        .errorCode(order.error.getErroCode())
+                        .msg(order.error.getMessage())
+                        .build());
+                continue;
+            }
+
+            long clientPoints = points.getOrDefault(clientId, order.client.getLoyaltyPoints()) + order.delta();
+            points.put(clientId, clientPoints);
+
+            Map<Long, Long> remainingById = new HashMap<>();
+            for (int i = 0; i < order.ids.length; i++) {
+                remainingById.put(order.ids[i], order.remaining[i]);
+                soldBooks.merge(order.books.get(i).getIsbn(), order.units[i], Long::sum);
+            }
+            List<BookEntity> books = new ArrayList<>(order.books.size());
+            for (BookEntity book : order.purchase.getBooks()) {
+                long totalQuantity = remainingById.get(book.getId());
+                books.add(book.toBuilder()
+                        .quantity(totalQuantity)
+                        .sold(totalQuantity == 0l)
+                        .build());
+            }
+
+            PurchaseEntity purchase = order.purchase;
+            purchase.setBooks(books);
+            purchase.setClient(order.client.toBuilder()
+                    .loyaltyPoints(clientPoints)
+                    .build());
+            results.add(PurchaseResultEntity.builder()
+                    .clientId(clientId)
+                    .purchase(purchase)
+                    .build());
+        }
+
+        // The in-memory catalog is updated once the batch is committed.
+        if (!soldBooks.isEmpty()) {
+            eventPublisher.publishEvent(new CatalogChangedEvent(soldBooks));
+        }
+        return BatchPurchaseEntity.builder()
+                .results(results)
+                .build();
+    }
+
+    private PurchaseException notEnoughBooks(BookEntity book) {
+        return new PurchaseException("Not enough quantity for book with ISBN " + book.getIsbn(),
+                BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode());
+    }
+
+    private PurchaseException notEnoughLoyaltyPoints() {
+        return new PurchaseException("Not enough loyalty points to receive the free books",
+                BookStoreErrorCodes.NOT_ENOUGH_LOYALTY_POINTS.getErrorCode());
+    }
+
+    // An order of the batch while it is purchased. The books are in the order
+    // of their ISBN, with the units taken and left of every book. The ids are
+    // set once the units are taken, an order that fails after that gives back
+    // the units it took.
+    private static final class BatchOrder {
+        private final OrderEntity orderEntity;
+        private NormalizedOrderEntity order;
+        private ClientEntity client;
+        private List<BookEntity> books;
+        private PurchaseEntity purchase;
+        private long usedLoyaltyPoints;
+        private long[] ids;
+        private long[] units;
+        private long[] remaining;
+        private boolean[] taken;
+        private PurchaseException error;
+
+        private BatchOrder(OrderEntity orderEntity) {
+            this.orderEntity = orderEntity;
+        }
+
+        private long delta() {
+            return purchase.getLoyaltyPoints() - usedLoyaltyPoints;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.app.bookstore.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogIndexCache;
+import com.app.bookstore.catalog.CatalogSnapshot;
+import com.app.bookstore.catalog.FacetIndex;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.FacetCountEntity;
+import com.app.bookstore.entities.FacetFilterEntity;
+import com.app.bookstore.entities.FacetedBooksEntity;
+import com.app.bookstore.entities.FacetsEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.BooksException;
+
+@Service
+public class FilterBooksService implements StoreService<FacetFilterEntity> {
+
+    private final BooksCatalog booksCatalog;
+    private final CatalogIndexCache<FacetIndex> facetIndex;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public FilterBooksService(BooksCatalog booksCatalog,
+            @Value("${bookstore.books.facets.price-bounds:1000,1500,2000,3000}") long[] priceBounds,
+            @Value("${bookstore.books.facets.default-size:20}") int defaultPageSize,
+            @Value("${bookstore.books.facets.max-size:100}") int maxPageSize) {
+        this.booksCatalog = booksCatalog;
+        this.facetIndex = new CatalogIndexCache<>(snapshot -> FacetIndex.build(snapshot, priceBounds));
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Filters the books of the catalog by type, year of publication, price and
+     * availability, and counts the books of every value of those facets.
+     *
+     * @param filter The filters, null when a facet is not filtered, the number
+     *               of the page (starting at 0) and the page size, capped to the
+     *               maximum page size.
+     * @return The books of the page, the number of books found and the counts of
+     *         the facets.
+     */
+    @Override
+    public FacetedBooksEntity run(FacetFilterEntity filter) {
+        validateRange(filter.getYearFrom(), filter.getYearTo(), "year");
+        validateRange(filter.getPriceFrom(), filter.getPriceTo(), "price");
+        int page = getPage(filter.getPage());
+        int pageSize = getPageSize(filter.getSize());
+
+        CatalogSnapshot snapshot = booksCatalog.current();
+        FacetIndex index = facetIndex.get(snapshot);
+        long offset = (long) page * pageSize;
+        FacetIndex.Results results = index.filter(snapshot, filter.getTypes(),
+                filter.getYearFrom(), filter.getYearTo(),
+                filter.getPriceFrom(), filter.getPriceTo(),
+                filter.getInStock(), (int) Math.min(offset, Integer.MAX_VALUE), pageSize);
+
+        List<BookEntity> books = new ArrayList<>(results.getSlots().length);
+        for (int slot : results.getSlots()) {
+            books.add(snapshot.getBook(slot));
+        }
+        return new FacetedBooksEntity(books, page, pageSize, results.getTotalHits(), getFacets(index, results));
+    }
+
+    private FacetsEntity getFacets(FacetIndex index, FacetIndex.Results results) {
+        List<FacetCountEntity> types = new ArrayList<>();
+        for (int i = 0; i < index.getTypes().length; i++) {
+            types.add(new FacetCountEntity(index.getTypes()[i].name(), results.getTypeCounts()[i]));
+        }
+        List<FacetCountEntity> decades = new ArrayList<>();
+        for (int i = 0; i < index.getDecades().length; i++) {
+            decades.add(new FacetCountEntity(String.valueOf(index.getDecades()[i]), results.getDecadeCounts()[i]));
+        }
+        List<FacetCountEntity> priceBands = new ArrayList<>();
+        for (int i = 0; i < results.getPriceBandCounts().length; i++) {
+            priceBands.add(new FacetCountEntity(index.getPriceBandLabel(i), results.getPriceBandCounts()[i]));
+        }
+        List<FacetCountEntity> availability = List.of(
+                new FacetCountEntity("true", results.getInStockCount()),
+                new FacetCountEntity("false", results.getSoldCount()));
+
+        return new FacetsEntity(types, decades, priceBands, availability);
+    }
+
+    private <T extends Comparable<T>> void validateRange(T from, T to, String name) {
+        if (from != null && to != null && from.compareTo(to) > 0) {
+            throw new BooksException("The first " + name + " cannot be greater than the last one",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+    }
+
+    private int getPage(Integer page) {
+        if (page == null) {
+            return 0;
+        }
+        if (page < 0) {
+            throw new BooksException("The page should be 0 or greater",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        return page;
+    }
+
+    private int getPageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new BooksException("The page size should be greater than 0",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+}
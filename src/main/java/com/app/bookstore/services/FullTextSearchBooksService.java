@@ -0,0 +1,86 @@
+package com.app.bookstore.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogIndexCache;
+import com.app.bookstore.catalog.CatalogSnapshot;
+import com.app.bookstore.catalog.FullTextIndex;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.FullTextSearchEntity;
+import com.app.bookstore.entities.RankedBooksEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.BooksException;
+
+@Service
+public class FullTextSearchBooksService implements StoreService<FullTextSearchEntity> {
+
+    private final BooksCatalog booksCatalog;
+    private final CatalogIndexCache<FullTextIndex> fullTextIndex = new CatalogIndexCache<>(FullTextIndex::build);
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public FullTextSearchBooksService(BooksCatalog booksCatalog,
+            @Value("${bookstore.books.fulltext.default-size:10}") int defaultPageSize,
+            @Value("${bookstore.books.fulltext.max-size:50}") int maxPageSize) {
+        this.booksCatalog = booksCatalog;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Searches the available books with the terms of the query on the title or
+     * the description. The books are ranked with BM25 and returned by pages.
+     *
+     * @param search The text to search, the number of the page (starting at 0)
+     *               and the page size, capped to the maximum page size.
+     * @return The books of the page and the number of books found.
+     */
+    @Override
+    public RankedBooksEntity run(FullTextSearchEntity search) {
+        if (search.getQuery() == null || search.getQuery().isBlank()) {
+            throw new BooksException("The search query cannot be empty",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        int page = getPage(search.getPage());
+        int pageSize = getPageSize(search.getSize());
+
+        CatalogSnapshot snapshot = booksCatalog.current();
+        long offset = (long) page * pageSize;
+        FullTextIndex.Results results = fullTextIndex.get(snapshot)
+                .search(snapshot, search.getQuery(), (int) Math.min(offset, Integer.MAX_VALUE), pageSize);
+
+        List<BookEntity> books = new ArrayList<>(results.getSlots().length);
+        for (int slot : results.getSlots()) {
+            books.add(snapshot.getBook(slot));
+        }
+        return new RankedBooksEntity(books, page, pageSize, results.getTotalHits());
+    }
+
+    private int getPage(Integer page) {
+        if (page == null) {
+            return 0;
+        }
+        if (page < 0) {
+            throw new BooksException("The page should be 0 or greater",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        return page;
+    }
+
+    private int getPageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new BooksException("The page size should be greater than 0",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+}
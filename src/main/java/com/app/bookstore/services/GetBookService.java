@@ -0,0 +1,33 @@
+package com.app.bookstore.services;
+
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.entities.BookDetailEntity;
+import com.app.bookstore.entities.IsbnEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.BooksException;
+import com.app.bookstore.repositories.BooksRepository;
+
+import lombok.AllArgsConstructor;
+
+@Service
+@AllArgsConstructor
+public class GetBookService implements StoreService<IsbnEntity> {
+
+    private BooksRepository booksRepository;
+
+    /**
+     * Returns the details of a book, including its description. The book is
+     * read as a projection, so it is not loaded as a managed entity.
+     *
+     * @param request The ISBN of the book.
+     * @return The details of the book.
+     */
+    @Override
+    public BookDetailEntity run(IsbnEntity request) {
+        return booksRepository.findBookDetailByIsbn(request.getIsbn())
+                .orElseThrow(() -> new BooksException("Book with ISBN " + request.getIsbn() + " does not exist",
+                        BookStoreErrorCodes.BOOK_NOT_FOUND.getErrorCode()));
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.app.bookstore.services;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogSnapshot;
+import com.app.bookstore.catalog.PackedIsbn;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.BooksEntity;
+import com.app.bookstore.entities.IsbnListEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.BooksException;
+
+@Service
+public class GetBooksByIsbnService implements StoreService<IsbnListEntity> {
+
+    private final BooksCatalog booksCatalog;
+    private final int maxIsbns;
+
+    public GetBooksByIsbnService(BooksCatalog booksCatalog,
+            @Value("${bookstore.books.isbn.max-size:100}") int maxIsbns) {
+        this.booksCatalog = booksCatalog;
+        this.maxIsbns = maxIsbns;
+    }
+
+    /**
+     * Returns the available books with the given ISBNs from the in-memory
+     * catalog, in the order of the request. The ISBNs that are repeated are
+     * returned once, and the ones that are not in the catalog or are sold are
+     * not returned.
+     *
+     * @param request The ISBNs, with or without hyphens.
+     * @return The books found.
+     */
+    @Override
+    public BooksEntity run(IsbnListEntity request) {
+        List<String> isbns = request.getIsbns();
+        if (isbns == null || isbns.isEmpty()) {
+            throw new BooksException("The list of ISBNs cannot be empty",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        if (isbns.size() > maxIsbns) {
+            throw new BooksException("The list of ISBNs cannot have more than " + maxIsbns + " ISBNs",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+
+        CatalogSnapshot snapshot = booksCatalog.current();
+        List<BookEntity> books = new ArrayList<>(isbns.size());
+        BitSet added = new BitSet();
+        for (String isbn : isbns) {
+            if (PackedIsbn.pack(isbn) == PackedIsbn.INVALID) {
+                throw new BooksException("The ISBN " + isbn + " is not valid",
+                        BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+            }
+
+            int slot = snapshot.getSlot(isbn);
+            if (slot >= 0 && snapshot.isAvailable(slot) && !added.get(slot)) {
+                added.set(slot);
+                books.add(snapshot.getBook(slot));
+            }
+        }
+        return new BooksEntity(books, snapshot.getVersion(), snapshot.getETag());
+    }
+
+}
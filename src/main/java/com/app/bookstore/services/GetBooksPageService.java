@@ -0,0 +1,96 @@
+package com.app.bookstore.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.entities.BookSummaryEntity;
+import com.app.bookstore.entities.BooksPageEntity;
+import com.app.bookstore.entities.PageRequestEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.BooksException;
+import com.app.bookstore.repositories.BooksRepository;
+
+@Service
+public class GetBooksPageService implements StoreService<PageRequestEntity> {
+
+    private static final String CURSOR_PREFIX = "id:";
+
+    private final BooksRepository booksRepository;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public GetBooksPageService(BooksRepository booksRepository,
+            @Value("${bookstore.books.page.default-size:20}") int defaultPageSize,
+            @Value("${bookstore.books.page.max-size:100}") int maxPageSize) {
+        this.booksRepository = booksRepository;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Returns one page of available books ordered by id, without their
+     * description.
+     * The page starts right after the book identified by the cursor, and one
+     * extra row is requested to know if there is a next page without running a
+     * count query.
+     *
+     * @param request The cursor of the previous page (null for the first page)
+     *                and the requested page size, capped to the maximum page
+     *                size.
+     * @return The books of the page and the cursor for the next one.
+     */
+    @Override
+    public BooksPageEntity run(PageRequestEntity request) {
+        int pageSize = getPageSize(request.getLimit());
+        long afterId = decodeCursor(request.getCursor());
+
+        List<BookSummaryEntity> books = booksRepository.findAvailableBookSummariesAfter(afterId, Limit.of(pageSize + 1));
+
+        if (books.size() <= pageSize) {
+            return new BooksPageEntity(books, null);
+        }
+
+        List<BookSummaryEntity> page = books.subList(0, pageSize);
+        return new BooksPageEntity(page, encodeCursor(page.get(pageSize - 1).getId()));
+    }
+
+    private int getPageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new BooksException("The page size should be greater than 0",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    static String encodeCursor(long lastId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return Long.MIN_VALUE;
+        }
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Unknown cursor format");
+            }
+            return Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new BooksException("The cursor " + cursor + " is not valid",
+                    BookStoreErrorCodes.INVALID_CURSOR.getErrorCode(), e);
+        }
+    }
+
+}
@@ -2,9 +2,10 @@ package com.app.bookstore.services;
 
 import org.springframework.stereotype.Service;
 
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogSnapshot;
 import com.app.bookstore.entities.BooksEntity;
 import com.app.bookstore.entities.EmptyEnitity;
-import com.app.bookstore.repositories.BooksRepository;
 
 import lombok.AllArgsConstructor;
 
@@ -12,12 +13,14 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 public class GetBooksService implements StoreService<EmptyEnitity> {
     
-    private BooksRepository booksRepository;
+    private BooksCatalog booksCatalog;
 
-    // This method will be used to retrieve a list of books from the database.
+    // This method returns the available books from the in-memory catalog, the
+    // database is only read when the catalog is loaded at startup.
     @Override
     public BooksEntity run(EmptyEnitity entity) {
-        return new BooksEntity(booksRepository.findAllAvailableBooks());
+        CatalogSnapshot snapshot = booksCatalog.current();
+        return new BooksEntity(snapshot.getAvailableBooks(), snapshot.getVersion(), snapshot.getETag());
     }
 
 }
@@ -0,0 +1,49 @@
+package com.app.bookstore.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.entities.NormalizedOrderEntity;
+import com.app.bookstore.entities.OrderEntity;
+
+@Service
+public class NormalizeOrderService implements StoreService<OrderEntity> {
+
+    /**
+     * Counts the purchased and the free units of every ISBN of the order with a
+     * single pass over its lists. The order is not validated, an order without
+     * books has no units and an order without free books has no free units.
+     *
+     * @param order The order of the client.
+     * @return The order with the units of every ISBN.
+     */
+    @Override
+    public NormalizedOrderEntity run(OrderEntity order) {
+        List<String> purchasedBooks = order.getPurchasedBook() == null
+                ? Collections.emptyList()
+                : order.getPurchasedBook();
+        List<String> freeBooks = order.getFreeBooks() == null
+                ? Collections.emptyList()
+                : order.getFreeBooks();
+
+        return NormalizedOrderEntity.builder()
+                .clientId(order.getClientId())
+                .purchasedBooks(purchasedBooks)
+                .freeBooks(freeBooks)
+                .purchasedUnits(units(purchasedBooks))
+                .freeUnits(units(freeBooks))
+                .build();
+    }
+
+    private Map<String, Long> units(List<String> isbnList) {
+        Map<String, Long> units = new LinkedHashMap<>();
+        for (String isbn : isbnList) {
+            units.merge(isbn, 1L, Long::sum);
+        }
+        return units;
+    }
+}
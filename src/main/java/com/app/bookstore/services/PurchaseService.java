@@ -1,36 +1,65 @@
 package com.app.bookstore.services;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogChangedEvent;
+import com.app.bookstore.catalog.CatalogSnapshot;
 import com.app.bookstore.entities.BookEntity;
 import com.app.bookstore.entities.ClientEntity;
+import com.app.bookstore.entities.NormalizedOrderEntity;
 import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.entities.PendingPurchaseEntity;
 import com.app.bookstore.entities.PurchaseEntity;
 import com.app.bookstore.exceptions.BookStoreErrorCodes;
 import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.inventory.BooksInventory;
+import com.app.bookstore.pricing.PricingRules;
+import com.app.bookstore.pricing.PricingTable;
 import com.app.bookstore.repositories.BooksRepository;
 import com.app.bookstore.repositories.ClientsRepository;
-import com.app.bookstore.types.BookType;
 
 @Service
 public class PurchaseService implements StoreService<OrderEntity> {
 
     ClientsRepository clientsRepository;
     BooksRepository booksRepository;
-
-    public PurchaseService(ClientsRepository clientsRepository, BooksRepository booksRepository) {
+    BooksCatalog booksCatalog;
+    NormalizeOrderService normalizeOrderService;
+    PricingRules pricingRules;
+    BooksInventory booksInventory;
+    ApplicationEventPublisher eventPublisher;
+
+    public PurchaseService(ClientsRepository clientsRepository, BooksRepository booksRepository,
+            BooksCatalog booksCatalog, NormalizeOrderService normalizeOrderService,
+            PricingRules pricingRules, BooksInventory booksInventory, ApplicationEventPublisher eventPublisher) {
         this.clientsRepository = clientsRepository;
         this.booksRepository = booksRepository;
+        this.booksCatalog = booksCatalog;
+        this.normalizeOrderService = normalizeOrderService;
+        this.pricingRules = pricingRules;
+        this.booksInventory = booksInventory;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
      * Calculates the total price of the order and the loyalty points earned by the
-     * client.
-     * Pricing rules:
+     * client with the pricing rules in use.
+     * Default pricing rules:
      * - New Releases: Full price (100% of the price).
      * - Regular: Full price, but a 10% discount applies if 3 or more books are
      * purchased.
@@ -40,62 +69,64 @@ public class PurchaseService implements StoreService<OrderEntity> {
      * - The books that are in the list of free books are not included in the
      * calculation. This applies to Regular and Old Editions.
      * 
-     * @param books     The list of books to calculate the price and loyalty points
-     *                  for.
-     * @param freeBooks The list of free book isbn to exclude from the calculation.
+     * @param books The list of books to calculate the price and loyalty points
+     *              for.
+     * @param order The units purchased and free of every ISBN of the order.
+     * @param rules The pricing rules of the order.
      * @return A PurchaseEntity containing the calculated total price and loyalty
      *         points.
      */
-    public PurchaseEntity calculateOrderDetails(List<BookEntity> books, List<String> pruchasedBooks, List<String> freeIsbnBooks) {
-        final long[] totalPrice = { 0L };
-        final long[] loyaltyPoints = { 0L };
+    public PurchaseEntity calculateOrderDetails(List<BookEntity> books, NormalizedOrderEntity order,
+            PricingTable rules) {
+        long totalPrice = 0L;
+        long loyaltyPoints = 0L;
 
+        // The discounts apply on the number of lines of the order, free books
+        // included.
+        int lines = order.getPurchasedBooks().size();
 
         if (books != null) {
-            books.forEach(book -> {
-
-                long bookPrice = book.getPrice();
-                switch (book.getType()) {
-                    case BookType.NEW_RELEASE:
-                        long totalBooks = getTotalBooks(pruchasedBooks, book);
-                        totalPrice[0] += bookPrice * totalBooks;
-                        loyaltyPoints[0]+= totalBooks;
-                        break;
-                    case BookType.REGULAR:
-                        long totalRegularBooks = getTotalBooks(pruchasedBooks, freeIsbnBooks, book);
-                        if (pruchasedBooks.size() >= 3) {
-                            totalPrice[0] += bookPrice * 0.9 * totalRegularBooks; // 10% discount
-                        } else {
-                            totalPrice[0] += bookPrice * totalRegularBooks;
-                        }
-                        loyaltyPoints[0]+= totalRegularBooks;
-                        break;
-                    case BookType.OLD_EDITIONS:
-                        long totalOldBooks = getTotalBooks(pruchasedBooks, freeIsbnBooks, book);
-                        if (pruchasedBooks.size() >= 3) {
-                            totalPrice[0] += bookPrice * 0.75 * totalOldBooks; // 20% + 5% discount
-                        } else {
-                            totalPrice[0] += bookPrice * 0.8 * totalOldBooks; // 20% discount
-                        }
-                        loyaltyPoints[0]+=totalOldBooks;
-                        break;
-                    default:
-                        throw new PurchaseException("Unknown book type: " + book.getType(),
-                                BookStoreErrorCodes.UNKNOWN_BOOK_TYPE.getErrorCode());
+            for (BookEntity book : books) {
+                if (!rules.hasRule(book.getType())) {
+                    throw new PurchaseException("Unknown book type: " + book.getType(),
+                            BookStoreErrorCodes.UNKNOWN_BOOK_TYPE.getErrorCode());
+                }
+
+                long totalBooks = order.purchased(book.getIsbn());
+                if (rules.deductsFreeBooks(book.getType())) {
+                    totalBooks -= order.free(book.getIsbn());
                 }
-            });
+                totalPrice += rules.price(book.getType(), book.getPrice(), totalBooks, lines);
+                loyaltyPoints += totalBooks;
+            }
         }
 
         return PurchaseEntity.builder()
-                .loyaltyPoints(loyaltyPoints[0])
-                .totalPrice(totalPrice[0])
+                .loyaltyPoints(loyaltyPoints)
+                .totalPrice(totalPrice)
                 .books(books)
                 .purchaseDate(LocalDateTime.now())
                 .build();
     }
 
+    // The purchase is a single transaction: a book without enough units or a
+    // client without enough points rolls back the stock and the points
+    // already updated. The books are updated before the client, so all the
+    // purchases lock the rows in the same order.
     @Override
+    @Transactional
     public PurchaseEntity run(OrderEntity order) throws PurchaseException {
+        return applyPurchase(prepare(order));
+    }
+
+    /**
+     * Checks and prices the order without changing the stock or the loyalty
+     * points.
+     *
+     * @param order The order of the client.
+     * @return The purchase to apply.
+     */
+    public PendingPurchaseEntity prepare(OrderEntity order) throws PurchaseException {
 
         if (order == null) {
             throw new PurchaseException("Order cannot be null", BookStoreErrorCodes.INCORRECT_ORDER.getErrorCode());
@@ -103,135 +134,267 @@ public class PurchaseService implements StoreService<OrderEntity> {
 
         ClientEntity client = getClient(order);
 
-        List<BookEntity> books = getBooks(order);
+        // The units of every ISBN are counted once, the following steps read
+        // them from the maps.
+        NormalizedOrderEntity normalizedOrder = normalizeOrderService.run(order);
 
-        checkLoyaltyPoints(order.getFreeBooks(), client);
+        List<BookEntity> books = getBooks(normalizedOrder);
 
-        PurchaseEntity purchase = calculateOrderDetails(books, order.getPurchasedBook() ,order.getFreeBooks());
-        purchase.setClient(client);
+        checkLoyaltyPoints(normalizedOrder, client);
 
-        long usedLoyaltyPoints = getUsedLoyaltyPoints(books, order.getFreeBooks());
-        updateClientLoyaltyPoints(client, purchase.getLoyaltyPoints(), usedLoyaltyPoints);
+        // The same rules price the order and count the loyalty points used,
+        // even if the rules are reloaded meanwhile.
+        PricingTable rules = pricingRules.current();
+        PurchaseEntity purchase = calculateOrderDetails(books, normalizedOrder, rules);
 
-        updateBooksSoldStatus(books , order.getPurchasedBook());
+        return PendingPurchaseEntity.builder()
+                .client(client)
+                .order(normalizedOrder)
+                .books(books)
+                .purchase(purchase)
+                .usedLoyaltyPoints(getUsedLoyaltyPoints(books, normalizedOrder, rules))
+                .build();
+    }
 
-        return purchase;
+    /**
+     * Takes the stock of the books and updates the loyalty points of the
+     * client of a prepared purchase, both or none. The units taken from the
+     * inventory are given back right away when the points fail, so a purchase
+     * rolled back to a savepoint does not keep them until the transaction ends.
+     * It runs in the transaction of the caller, that rolls it back when it
+     * fails: run, or the purchase sequencer that rolls back to a savepoint. A
+     * transaction opened here would mark the one of the sequencer for rollback.
+     *
+     * @param pending The purchase returned by prepare.
+     * @return The purchase with the books and the client updated.
+     */
+    public PurchaseEntity apply(PendingPurchaseEntity pending) throws PurchaseException {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("A purchase must be applied within a transaction");
+        }
+        return applyPurchase(pending);
     }
 
-    private Long getUsedLoyaltyPoints(List<BookEntity> books, List<String> freeBooks) {
-        List<String> freeBooksList = List.copyOf(freeBooks);
+    private PurchaseEntity applyPurchase(PendingPurchaseEntity pending) {
+        PurchaseEntity purchase = pending.getPurchase();
 
-        if (freeBooks == null || freeBooks.isEmpty()) {
-            return 0L;
+        TakenStock stock = updateBooksSoldStatus(pending.getBooks(), pending.getOrder());
+        try {
+            purchase.setClient(updateClientLoyaltyPoints(pending.getClient(), pending.getOrder(),
+                    purchase.getLoyaltyPoints(), pending.getUsedLoyaltyPoints()));
+        } catch (RuntimeException e) {
+            if (booksInventory.isEnabled()) {
+                booksInventory.release(stock.ids, stock.units);
+            }
+            throw e;
+        }
 
+        // The units are given back to the inventory if the transaction is
+        // rolled back, and the in-memory catalog is updated once it is
+        // committed.
+        if (booksInventory.isEnabled()) {
+            booksInventory.confirm(stock.ids, stock.units);
         }
-        // Calculate the number of loyalty points used for the books purchased.
-        // It is multiplied * 10 because it is necessary 10 loyalty point for one free book.
-        return books.stream()
-                .map(book -> {
-                    if (freeBooksList.contains(book.getIsbn()) && book.getType() != BookType.NEW_RELEASE) {
-                        return getTotalBooks(freeBooksList, book);
-                    }
-                    return 0L;
-                })    
-                .reduce(0L, Long::sum) * 10;
-    }
+        eventPublisher.publishEvent(new CatalogChangedEvent(stock.soldBooks));
 
-    private void updateBooksSoldStatus(List<BookEntity> books, List<String> isbnList) {
-        books.forEach(book -> {
+        purchase.setBooks(stock.books);
+        return purchase;
+    }
 
-            long currentQuantity = book.getQuantity();
-            long totalBooks = getTotalBooks(isbnList, book);
+    long getUsedLoyaltyPoints(List<BookEntity> books, NormalizedOrderEntity order, PricingTable rules) {
+        if (order.getFreeUnits().isEmpty()) {
+            return 0L;
+        }
 
-            long totalQuantity = currentQuantity - totalBooks;
+        // Calculate the number of loyalty points used for the books purchased.
+        // It is multiplied * 10 because it is necessary 10 loyalty point for one free book.
+        long freeBooks = 0L;
+        for (BookEntity book : books) {
+            if (rules.deductsFreeBooks(book.getType())) {
+                freeBooks += order.free(book.getIsbn());
+            }
+        }
+        return freeBooks * 10;
+    }
 
-            if (totalQuantity < 0l) {
-                throw new PurchaseException("Not enough quantity for book with ISBN " + book.getIsbn(),
-                        BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode());
+    // The stock is taken from the inventory in memory when it is enabled, and
+    // otherwise with a conditional update of every book, sent to the database in
+    // one batch. The units read with the book are only used to fail early. The
+    // books read are not modified, the changes would be written over the stock
+    // taken by other purchases. Returns copies of the books with the stock left.
+    private TakenStock updateBooksSoldStatus(List<BookEntity> books, NormalizedOrderEntity order) {
+        for (BookEntity book : books) {
+            getRemainingQuantity(book, order);
+        }
 
-            }
+        // The rows are locked in the order of their ISBN, so two purchases with
+        // books in common wait for each other instead of deadlocking.
+        List<BookEntity> lockOrder = new ArrayList<>(books);
+        lockOrder.sort(Comparator.comparing(BookEntity::getIsbn));
+        long[] ids = new long[lockOrder.size()];
+        long[] quantities = new long[lockOrder.size()];
+        long[] units = new long[lockOrder.size()];
+        long[] remaining = new long[lockOrder.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = lockOrder.get(i).getId();
+            quantities[i] = lockOrder.get(i).getQuantity();
+            units[i] = order.purchased(lockOrder.get(i).getIsbn());
+            remaining[i] = quantities[i] - units[i];
+        }
 
-            if (totalQuantity == 0l) {
-                book.setSold(true);
-            }
+        int notEnough = booksInventory.isEnabled()
+                ? booksInventory.reserve(ids, quantities, units, remaining)
+                : takeStockFromDatabase(ids, units);
+        if (notEnough >= 0) {
+            throw new PurchaseException("Not enough quantity for book with ISBN " + lockOrder.get(notEnough).getIsbn(),
+                    BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode());
+        }
 
-            book.setQuantity(totalQuantity);
+        Map<String, Long> soldBooks = new HashMap<>();
+        Map<Long, Long> remainingById = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            soldBooks.put(lockOrder.get(i).getIsbn(), units[i]);
+            remainingById.put(ids[i], remaining[i]);
+        }
 
-        });
+        List<BookEntity> updatedBooks = new ArrayList<>(books.size());
+        for (BookEntity book : books) {
+            long totalQuantity = remainingById.get(book.getId());
+            updatedBooks.add(book.toBuilder()
+                    .quantity(totalQuantity)
+                    .sold(totalQuantity == 0l)
+                    .build());
+        }
 
-        booksRepository.saveAll(books);
+        return new TakenStock(ids, units, soldBooks, updatedBooks);
     }
 
-    private long getTotalBooks(List<String> purchasedBooks, List<String> freeBooks, BookEntity book) {
-        long totalFreeBooks = freeBooks.stream().filter(isbn -> isbn.equals(book.getIsbn())).count();
-        long totalPurchasedBooks = getTotalBooks(purchasedBooks, book);
-        return totalPurchasedBooks - totalFreeBooks;
+    private int takeStockFromDatabase(long[] ids, long[] units) {
+        int[] updated = booksRepository.decrementStock(ids, units);
+        for (int i = 0; i < ids.length; i++) {
+            if (updated[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
     }
 
-    private long getTotalBooks(List<String> purchasedBooks, BookEntity book) {
-        return purchasedBooks.stream().filter(isbn -> isbn.equals(book.getIsbn())).count();
+    // Units of the book that are left once the order is served.
+    long getRemainingQuantity(BookEntity book, NormalizedOrderEntity order) {
+        long totalQuantity = book.getQuantity() - order.purchased(book.getIsbn());
+
+        if (totalQuantity < 0l) {
+            throw new PurchaseException("Not enough quantity for book with ISBN " + book.getIsbn(),
+                    BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode());
+        }
+        return totalQuantity;
     }
 
-    private void updateClientLoyaltyPoints(ClientEntity client, Long loyaltyPoints, Long usedPoints) {
-        client.setLoyaltyPoints(client.getLoyaltyPoints() + loyaltyPoints - usedPoints);
+    // The points are updated and the points required for the free books are
+    // checked again with a single conditional update, the points read with the
+    // client are only used to fail early. The client read is not modified, the
+    // changes would be written over the points of other purchases. Returns a
+    // copy of the client with its points updated.
+    private ClientEntity updateClientLoyaltyPoints(ClientEntity client, NormalizedOrderEntity order,
+            Long loyaltyPoints, Long usedPoints) {
+        long delta = loyaltyPoints - usedPoints;
 
-        clientsRepository.save(client);
+        if (clientsRepository.updateLoyaltyPoints(client.getId(), delta, getLoyaltyPointsNeeded(order)) == 0) {
+            throw new PurchaseException("Not enough loyalty points to receive the free books",
+                    BookStoreErrorCodes.NOT_ENOUGH_LOYALTY_POINTS.getErrorCode());
+        }
+
+        return client.toBuilder()
+                .loyaltyPoints(client.getLoyaltyPoints() + delta)
+                .build();
     }
 
-    private void checkLoyaltyPoints(List<String> isbnFreeList, ClientEntity client) {
+    void checkLoyaltyPoints(NormalizedOrderEntity order, ClientEntity client) {
 
-        int loyaltyPointsNeeded = isbnFreeList == null ? 0 : isbnFreeList.size() * 10;
+        long loyaltyPointsNeeded = getLoyaltyPointsNeeded(order);
         if (loyaltyPointsNeeded != 0 && client.getLoyaltyPoints() < loyaltyPointsNeeded) {
             throw new PurchaseException("Not enough loyalty points to receive the free books",
                     BookStoreErrorCodes.NOT_ENOUGH_LOYALTY_POINTS.getErrorCode());
         }
     }
 
-    private List<BookEntity> getBooks(OrderEntity order) {
-        if (order.getPurchasedBook() == null || order.getPurchasedBook().isEmpty()) {
+    private List<BookEntity> getBooks(NormalizedOrderEntity order) {
+        checkOrder(order);
+
+        // Check if the books in the order exist in the list of available books
+        // If not, throw an exception. Every ISBN is searched once.
+        List<BookEntity> books = findBooks(new ArrayList<>(order.getPurchasedUnits().keySet()));
+        checkBooks(order, books);
+
+        return books;
+    }
+
+    void checkOrder(NormalizedOrderEntity order) {
+        if (order.getPurchasedUnits().isEmpty()) {
             throw new PurchaseException("The list of books cannot be null or empty",
                     BookStoreErrorCodes.INCORRECT_ORDER.getErrorCode());
         }
+    }
 
-        // Check if the books in the order exist in the list of available books
-        // If not, throw an exception
-        List<BookEntity> books = booksRepository.findAllByIsbn(order.getPurchasedBook());
+    // Every free book needs 10 points.
+    long getLoyaltyPointsNeeded(NormalizedOrderEntity order) {
+        return order.getFreeBooks().size() * 10L;
+    }
+
+    // Checks that the books found are all the books of the order.
+    void checkBooks(NormalizedOrderEntity order, List<BookEntity> books) {
         if (books == null || books.isEmpty()) {
             throw new PurchaseException("No books found for the given ISBN list",
                     BookStoreErrorCodes.BOOK_NOT_FOUND.getErrorCode());
         }
 
-        List<String> dbIsbnList = books.stream()
-                .map(BookEntity::getIsbn)
-                .collect(Collectors.toList());
+        Set<String> dbIsbns = new HashSet<>();
+        for (BookEntity book : books) {
+            dbIsbns.add(book.getIsbn());
+        }
 
-        List<String> nonExistingISBNList = order.getPurchasedBook().stream()
-                .filter(isbn -> !dbIsbnList.contains(isbn))
-                .collect(Collectors.toList());
-        if (nonExistingISBNList.size() > 0) {
+        if (!dbIsbns.containsAll(order.getPurchasedUnits().keySet())) {
+            List<String> nonExistingISBNList = order.getPurchasedBooks().stream()
+                    .filter(isbn -> !dbIsbns.contains(isbn))
+                    .collect(Collectors.toList());
             throw new PurchaseException("Book with ISBN " + nonExistingISBNList + " does not exist",
                     BookStoreErrorCodes.BOOK_NOT_FOUND.getErrorCode());
         }
 
-        // Check if the free books in the order exist in the list of available books
+        // Check if the free books in the order exist in the list of purchased books
         // If not, throw an exception
-        if (order.getFreeBooks() != null) {
-            List<String> nonExistIsbnFreeList = order.getFreeBooks()
-                    .stream()
-                    .filter(isbn -> !order.getPurchasedBook().contains(isbn))
+        if (!order.getPurchasedUnits().keySet().containsAll(order.getFreeUnits().keySet())) {
+            List<String> nonExistIsbnFreeList = order.getFreeBooks().stream()
+                    .filter(isbn -> !order.getPurchasedUnits().containsKey(isbn))
                     .collect(Collectors.toList());
-            if (nonExistIsbnFreeList.size() > 0) {
-                throw new PurchaseException(
-                        "To use the loyalty the point the books with ISBN " + nonExistIsbnFreeList
-                                + " should be in the list of purchased books.",
-                        BookStoreErrorCodes.BOOK_NOT_FOUND.getErrorCode());
+            throw new PurchaseException(
+                    "To use the loyalty the point the books with ISBN " + nonExistIsbnFreeList
+                            + " should be in the list of purchased books.",
+                    BookStoreErrorCodes.BOOK_NOT_FOUND.getErrorCode());
+        }
+    }
+
+    // The ISBNs are resolved to the ids of the books with the index of the
+    // catalog and the books are read by primary key. When an ISBN is not in the
+    // catalog (the book was added after the catalog was loaded) the books are
+    // searched by ISBN on the database.
+    private List<BookEntity> findBooks(List<String> isbnList) {
+        CatalogSnapshot snapshot = booksCatalog.current();
+        Set<Long> ids = new LinkedHashSet<>();
+        for (String isbn : isbnList) {
+            int slot = snapshot.getSlot(isbn);
+            if (slot < 0 || !isbn.equals(snapshot.getBook(slot).getIsbn())) {
+                return booksRepository.findAllByIsbn(isbnList);
             }
+            ids.add(snapshot.getBook(slot).getId());
         }
 
-        return books;
+        return booksRepository.findAllById(ids).stream()
+                .filter(book -> !book.isSold())
+                .collect(Collectors.toList());
     }
 
-    private ClientEntity getClient(OrderEntity order) {
+    ClientEntity getClient(OrderEntity order) {
         if (order.getClientId() == null) {
             throw new PurchaseException("Client ID cannot be null",
                     BookStoreErrorCodes.CLIENT_NOT_FOUND.getErrorCode());
@@ -243,4 +406,19 @@ public class PurchaseService implements StoreService<OrderEntity> {
         return client;
     }
 
+    // The units taken of every book, by id in the order of their ISBN and by
+    // ISBN, and the copies of the books with the stock left.
+    private static final class TakenStock {
+        private final long[] ids;
+        private final long[] units;
+        private final Map<String, Long> soldBooks;
+        private final List<BookEntity> books;
+
+        private TakenStock(long[] ids, long[] units, Map<String, Long> soldBooks, List<BookEntity> books) {
+            this.ids = ids;
+            this.units = units;
+            this.soldBooks = soldBooks;
+            this.books = books;
+        }
+    }
 }
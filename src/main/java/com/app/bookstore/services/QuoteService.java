@@ -0,0 +1,124 @@
+package com.app.bookstore.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogSnapshot;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.ClientEntity;
+import com.app.bookstore.entities.NormalizedOrderEntity;
+import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.entities.QuoteEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.pricing.PricingRules;
+import com.app.bookstore.pricing.PricingTable;
+import com.app.bookstore.pricing.QuoteCache;
+import com.app.bookstore.repositories.BooksRepository;
+
+@Service
+public class QuoteService implements StoreService<OrderEntity> {
+
+    PurchaseService purchaseService;
+    NormalizeOrderService normalizeOrderService;
+    BooksCatalog booksCatalog;
+    BooksRepository booksRepository;
+    PricingRules pricingRules;
+    QuoteCache quoteCache;
+
+    public QuoteService(PurchaseService purchaseService, NormalizeOrderService normalizeOrderService,
+            BooksCatalog booksCatalog, BooksRepository booksRepository, PricingRules pricingRules,
+            QuoteCache quoteCache) {
+        this.purchaseService = purchaseService;
+        this.normalizeOrderService = normalizeOrderService;
+        this.booksCatalog = booksCatalog;
+        this.booksRepository = booksRepository;
+        this.pricingRules = pricingRules;
+        this.quoteCache = quoteCache;
+    }
+
+    /**
+     * Calculates what the order would cost to the client now, with the same
+     * checks and pricing as the purchase, without changing the stock or the
+     * loyalty points. The quotes of the same order with the same version of the
+     * catalog are computed once, only the client is checked every time.
+     *
+     * @param order The order of the client.
+     * @return The price of the order and the loyalty points it would earn and
+     *         use.
+     */
+    @Override
+    public QuoteEntity run(OrderEntity order) throws PurchaseException {
+        if (order == null) {
+            throw new PurchaseException("Order cannot be null", BookStoreErrorCodes.INCORRECT_ORDER.getErrorCode());
+        }
+
+        ClientEntity client = purchaseService.getClient(order);
+
+        NormalizedOrderEntity normalizedOrder = normalizeOrderService.run(order);
+        purchaseService.checkOrder(normalizedOrder);
+
+        CatalogSnapshot snapshot = booksCatalog.current();
+        PricingTable rules = pricingRules.current();
+
+        QuoteEntity quote = quoteCache.get(normalizedOrder, snapshot.getVersion(), rules.getVersion());
+        if (quote == null) {
+            quote = calculateQuote(normalizedOrder, snapshot, rules);
+        }
+
+        purchaseService.checkLoyaltyPoints(normalizedOrder, client);
+
+        return quote;
+    }
+
+    private QuoteEntity calculateQuote(NormalizedOrderEntity order, CatalogSnapshot snapshot, PricingTable rules) {
+        List<BookEntity> books = findBooks(order, snapshot);
+        boolean fromCatalog = books != null;
+        if (!fromCatalog) {
+            books = booksRepository.findAllByIsbn(new ArrayList<>(order.getPurchasedUnits().keySet()));
+        }
+
+        purchaseService.checkBooks(order, books);
+        for (BookEntity book : books) {
+            purchaseService.getRemainingQuantity(book, order);
+        }
+
+        PurchaseEntity purchase = purchaseService.calculateOrderDetails(books, order, rules);
+        QuoteEntity quote = QuoteEntity.builder()
+                .books(books)
+                .loyaltyPoints(purchase.getLoyaltyPoints())
+                .usedLoyaltyPoints(purchaseService.getUsedLoyaltyPoints(books, order, rules))
+                .totalPrice(purchase.getTotalPrice())
+                .catalogVersion(snapshot.getVersion())
+                .catalogETag(snapshot.getETag())
+                .build();
+
+        // The books that are not in the catalog are read from the database,
+        // their quote does not belong to a version of the catalog.
+        if (fromCatalog) {
+            quoteCache.put(order, snapshot.getVersion(), rules.getVersion(), quote);
+        }
+        return quote;
+    }
+
+    // Returns the available books of the order from the catalog, or null when
+    // an ISBN is not in the catalog, because the book was added after the
+    // catalog was loaded.
+    private List<BookEntity> findBooks(NormalizedOrderEntity order, CatalogSnapshot snapshot) {
+        List<BookEntity> books = new ArrayList<>(order.getPurchasedUnits().size());
+        for (String isbn : order.getPurchasedUnits().keySet()) {
+            int slot = snapshot.getSlot(isbn);
+            if (slot < 0 || !isbn.equals(snapshot.getBook(slot).getIsbn())) {
+                return null;
+            }
+            if (snapshot.isAvailable(slot)) {
+                books.add(snapshot.getBook(slot));
+            }
+        }
+        return books;
+    }
+}
@@ -0,0 +1,81 @@
+package com.app.bookstore.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.entities.BooksEntity;
+import com.app.bookstore.entities.RenderedBooksEntity;
+import com.app.bookstore.mappers.BookStoreMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@Service
+public class RenderBooksService implements StoreService<BooksEntity> {
+
+    private final BookStoreMapper bookStoreMapper;
+    private final ObjectMapper objectMapper;
+
+    // Only the last version of the catalog is kept, a new version replaces it.
+    private volatile RenderedBooksEntity rendered;
+
+    public RenderBooksService(BookStoreMapper bookStoreMapper, ObjectMapper objectMapper) {
+        this.bookStoreMapper = bookStoreMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the JSON of the books catalog, plain and gzip compressed.
+     * The catalog is mapped and serialized only once per catalog version, the
+     * following requests for the same version reuse the same bytes.
+     *
+     * @param books The books of a catalog version.
+     * @return The serialized catalog.
+     */
+    @Override
+    public RenderedBooksEntity run(BooksEntity books) {
+        RenderedBooksEntity current = rendered;
+        if (isVersion(current, books)) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = rendered;
+            if (!isVersion(current, books)) {
+                current = render(books);
+                rendered = current;
+            }
+            return current;
+        }
+    }
+
+    private boolean isVersion(RenderedBooksEntity current, BooksEntity books) {
+        return current != null
+                && books.getCatalogETag() != null
+                && Objects.equals(current.getCatalogETag(), books.getCatalogETag());
+    }
+
+    private RenderedBooksEntity render(BooksEntity books) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(bookStoreMapper.toDto(books));
+
+            ByteArrayOutputStream gzipJson = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(gzipJson)) {
+                gzip.write(json);
+            }
+
+            return RenderedBooksEntity.builder()
+                    .catalogVersion(books.getCatalogVersion())
+                    .catalogETag(books.getCatalogETag())
+                    .json(json)
+                    .gzipJson(gzipJson.toByteArray())
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
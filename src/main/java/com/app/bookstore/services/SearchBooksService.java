@@ -0,0 +1,73 @@
+package com.app.bookstore.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogIndexCache;
+import com.app.bookstore.catalog.CatalogSnapshot;
+import com.app.bookstore.catalog.FuzzySearchIndex;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.BooksEntity;
+import com.app.bookstore.entities.SearchEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.BooksException;
+
+@Service
+public class SearchBooksService implements StoreService<SearchEntity> {
+
+    private final BooksCatalog booksCatalog;
+    private final CatalogIndexCache<FuzzySearchIndex> searchIndex = new CatalogIndexCache<>(FuzzySearchIndex::build);
+    private final double minScore;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    public SearchBooksService(BooksCatalog booksCatalog,
+            @Value("${bookstore.books.search.min-score:0.8}") double minScore,
+            @Value("${bookstore.books.search.default-limit:10}") int defaultLimit,
+            @Value("${bookstore.books.search.max-limit:50}") int maxLimit) {
+        this.booksCatalog = booksCatalog;
+        this.minScore = minScore;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Searches the available books with a title or an author similar to the
+     * query, so small typos are tolerated. The books are sorted by similarity.
+     *
+     * @param search The text to search and the maximum number of books.
+     * @return The books found.
+     */
+    @Override
+    public BooksEntity run(SearchEntity search) {
+        if (search.getQuery() == null || search.getQuery().isBlank()) {
+            throw new BooksException("The search query cannot be empty",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+
+        CatalogSnapshot snapshot = booksCatalog.current();
+        int[] slots = searchIndex.get(snapshot).search(snapshot, search.getQuery(), minScore, getLimit(search.getLimit()));
+
+        List<BookEntity> books = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            books.add(snapshot.getBook(slot));
+        }
+        return new BooksEntity(books, snapshot.getVersion(), snapshot.getETag());
+    }
+
+    private int getLimit(Integer limit) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        if (limit < 1) {
+            throw new BooksException("The limit should be greater than 0",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.app.bookstore.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.app.bookstore.dtos.BookSummaryDto;
+import com.app.bookstore.entities.BookSummaryEntity;
+import com.app.bookstore.mappers.BookStoreMapper;
+import com.app.bookstore.mappers.SparseFieldsFilter;
+import com.app.bookstore.repositories.BooksRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+
+@Service
+public class StreamBooksService {
+
+    // The first book is flushed right away so the client receives data before
+    // the query finishes, then the output is flushed every FLUSH_EVERY books.
+    private static final int FLUSH_EVERY = 64;
+
+    private final BooksRepository booksRepository;
+    private final BookStoreMapper bookStoreMapper;
+    private final ObjectWriter bookWriter;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public StreamBooksService(BooksRepository booksRepository, BookStoreMapper bookStoreMapper,
+            ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.booksRepository = booksRepository;
+        this.bookStoreMapper = bookStoreMapper;
+        this.objectMapper = objectMapper;
+        this.bookWriter = objectMapper.writerFor(BookSummaryDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Writes the summaries of the available books as newline delimited JSON, one
+     * book per line. The books are read from a database cursor and written one
+     * by one, so the memory used does not depend on the size of the catalog. The
+     * summaries are not managed entities, so nothing is kept on the persistence
+     * context while the books are written.
+     *
+     * @param outputStream The stream where the books are written. It is not
+     *                     closed.
+     * @param fields       Properties of the books that are written, separated
+     *                     by commas. All the properties when it is empty.
+     */
+    public void writeAvailableBooks(OutputStream outputStream, String fields) throws IOException {
+        FilterProvider filters = SparseFieldsFilter.filters(fields, null);
+        ObjectWriter writer = filters == null ? bookWriter : bookWriter.with(filters);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<BookSummaryEntity> books = booksRepository.streamAvailableBookSummaries()) {
+                    long[] written = { 0L };
+                    books.forEach(book -> writeBook(writer, generator, book, written[0]++));
+                }
+            });
+
+            generator.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeBook(ObjectWriter writer, JsonGenerator generator, BookSummaryEntity book, long position) {
+        try {
+            writer.writeValue(generator, bookStoreMapper.toDto(book));
+            generator.writeRaw('\n');
+            if (position % FLUSH_EVERY == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.app.bookstore.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogIndexCache;
+import com.app.bookstore.catalog.CatalogSnapshot;
+import com.app.bookstore.catalog.SuggestionIndex;
+import com.app.bookstore.entities.SuggestEntity;
+import com.app.bookstore.entities.SuggestionEntity;
+import com.app.bookstore.entities.SuggestionsEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.BooksException;
+
+@Service
+public class SuggestBooksService implements StoreService<SuggestEntity> {
+
+    private final BooksCatalog booksCatalog;
+    private final CatalogIndexCache<SuggestionIndex> suggestionIndex = new CatalogIndexCache<>(SuggestionIndex::build);
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    public SuggestBooksService(BooksCatalog booksCatalog,
+            @Value("${bookstore.books.suggest.default-limit:8}") int defaultLimit,
+            @Value("${bookstore.books.suggest.max-limit:20}") int maxLimit) {
+        this.booksCatalog = booksCatalog;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Completes the text typed by the user with the titles, the authors and the
+     * publishers that have a word starting with it. The suggestions with more
+     * units available come first and the ones without stock are not returned.
+     *
+     * @param suggest The text typed by the user and the maximum number of
+     *                suggestions.
+     * @return The suggestions found.
+     */
+    @Override
+    public SuggestionsEntity run(SuggestEntity suggest) {
+        if (suggest.getPrefix() == null || suggest.getPrefix().isBlank()) {
+            throw new BooksException("The prefix cannot be empty",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+
+        CatalogSnapshot snapshot = booksCatalog.current();
+        SuggestionIndex index = suggestionIndex.get(snapshot);
+        int[] ids = index.suggest(snapshot, suggest.getPrefix(), getLimit(suggest.getLimit()));
+
+        List<SuggestionEntity> suggestions = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            suggestions.add(new SuggestionEntity(index.getText(id), index.getType(id), index.getStock(id)));
+        }
+        return new SuggestionsEntity(suggestions);
+    }
+
+    private int getLimit(Integer limit) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        if (limit < 1) {
+            throw new BooksException("The limit should be greater than 0",
+                    BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+}
@@ -0,0 +1,5 @@
+package com.app.bookstore.types;
+
+public enum SuggestionType {
+    TITLE, AUTHOR, PUBLISHER
+}
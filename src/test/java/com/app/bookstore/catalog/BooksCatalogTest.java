@@ -0,0 +1,129 @@
+package com.app.bookstore.catalog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.types.BookType;
+
+@SpringBootTest
+public class BooksCatalogTest {
+
+    @Test
+    @Description("The catalog is loaded once and then it is read from memory")
+    public void testCatalogIsLoadedOnce() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        when(booksRepository.findAllAvailableBooks()).thenReturn(getBooks());
+        BooksCatalog catalog = new BooksCatalog(booksRepository);
+
+        CatalogSnapshot first = catalog.current();
+        CatalogSnapshot second = catalog.current();
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.getVersion()).isEqualTo(1L);
+        assertThat(first.getAvailableBooks()).extracting(BookEntity::getIsbn)
+                .containsExactly("978-1-23456-789-0", "978-1-23456-789-1");
+        verify(booksRepository, times(1)).findAllAvailableBooks();
+    }
+
+    @Test
+    @Description("A stock change publishes a new version and keeps the previous snapshot unchanged")
+    public void testCatalogChangeIsCopyOnWrite() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        when(booksRepository.findAllAvailableBooks()).thenReturn(getBooks());
+        BooksCatalog catalog = new BooksCatalog(booksRepository);
+
+        CatalogSnapshot before = catalog.current();
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of(
+                "978-1-23456-789-0", 1L,
+                "978-1-23456-789-1", 1L)));
+        CatalogSnapshot after = catalog.current();
+
+        assertThat(after.getVersion()).isEqualTo(2L);
+        assertThat(after.getAvailableBooks()).extracting(BookEntity::getIsbn)
+                .containsExactly("978-1-23456-789-0");
+        assertThat(after.getBook(after.getSlot("978-1-23456-789-0")).getQuantity()).isEqualTo(1L);
+
+        assertThat(before.getVersion()).isEqualTo(1L);
+        assertThat(before.getAvailableBooks()).hasSize(2);
+        assertThat(before.getBook(before.getSlot("978-1-23456-789-0")).getQuantity()).isEqualTo(2L);
+    }
+
+    @Test
+    @Description("The units added to the stock are published as a new version, and a sold book is available again")
+    public void testCatalogStockIsAdded() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        when(booksRepository.findAllAvailableBooks()).thenReturn(getBooks());
+        BooksCatalog catalog = new BooksCatalog(booksRepository);
+        catalog.afterSingletonsInstantiated();
+
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of("978-1-23456-789-1", 1L)));
+        CatalogSnapshot sold = catalog.current();
+        assertThat(sold.getAvailableBooks()).hasSize(1);
+
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of("978-1-23456-789-1", -3L)));
+        CatalogSnapshot added = catalog.current();
+
+        assertThat(added.getVersion()).isEqualTo(sold.getVersion() + 1);
+        assertThat(added.getETag()).isNotEqualTo(sold.getETag());
+        assertThat(added.getAvailableBooks()).hasSize(2);
+        assertThat(added.getBook(added.getSlot("978-1-23456-789-1")).getQuantity()).isEqualTo(3L);
+    }
+
+    @Test
+    @Description("The catalog is loaded at startup, so the changes of the first purchases are applied once")
+    public void testCatalogIsLoadedAtStartup() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        when(booksRepository.findAllAvailableBooks()).thenReturn(getBooks());
+        BooksCatalog catalog = new BooksCatalog(booksRepository);
+
+        catalog.afterSingletonsInstantiated();
+        verify(booksRepository, times(1)).findAllAvailableBooks();
+
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of("978-1-23456-789-0", 1L)));
+
+        CatalogSnapshot snapshot = catalog.current();
+        assertThat(snapshot.getVersion()).isEqualTo(2L);
+        assertThat(snapshot.getBook(snapshot.getSlot("978-1-23456-789-0")).getQuantity()).isEqualTo(1L);
+        verify(booksRepository, times(1)).findAllAvailableBooks();
+    }
+
+    private List<BookEntity> getBooks() {
+        return List.of(
+                BookEntity.builder()
+                        .id(1l)
+                        .title("New Release Book")
+                        .quantity(2l)
+                        .type(BookType.NEW_RELEASE)
+                        .price(500L)
+                        .isbn("978-1-23456-789-0")
+                        .author("Author A")
+                        .publisher("Publisher A")
+                        .description("")
+                        .publicationYear(2023)
+                        .build(),
+                BookEntity.builder()
+                        .id(2l)
+                        .title("Regular Book")
+                        .quantity(1l)
+                        .type(BookType.REGULAR)
+                        .price(300L)
+                        .isbn("978-1-23456-789-1")
+                        .author("Author B")
+                        .publisher("Publisher B")
+                        .description("")
+                        .publicationYear(2020)
+                        .build());
+    }
+}
@@ -0,0 +1,96 @@
+package com.app.bookstore.catalog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.types.BookType;
+
+@SpringBootTest
+public class FacetIndexTest {
+
+    private static final long[] PRICE_BOUNDS = { 1000L, 1500L };
+
+    @Test
+    @Description("The ranges that cover part of a decade or a price band only select the books inside the range")
+    public void testFilterByRanges() {
+        CatalogSnapshot snapshot = getCatalog().current();
+        FacetIndex index = FacetIndex.build(snapshot, PRICE_BOUNDS);
+
+        FacetIndex.Results results = index.filter(snapshot, null, 1945, 1960, 900L, null, null, 0, 10);
+
+        assertThat(titles(snapshot, results)).containsExactly("1984", "Fahrenheit 451");
+        assertThat(results.getTotalHits()).isEqualTo(2);
+        assertThat(index.getDecades()).containsExactly(1930, 1940, 1950);
+        assertThat(results.getDecadeCounts()).containsExactly(1, 1, 1);
+        assertThat(index.getPriceBandLabel(0)).isEqualTo("0-999");
+        assertThat(index.getPriceBandLabel(2)).isEqualTo("1500+");
+        assertThat(results.getPriceBandCounts()).containsExactly(2, 1, 0);
+        assertThat(results.getTypeCounts()).containsExactly(0, 1, 1);
+
+        FacetIndex.Results regular = index.filter(snapshot, List.of(BookType.REGULAR), null, null, 900L, 999L,
+                null, 0, 10);
+        assertThat(titles(snapshot, regular)).containsExactly("1984");
+    }
+
+    @Test
+    @Description("The availability follows the changes of the catalog and the results are returned by pages")
+    public void testFilterByAvailabilityAndPages() {
+        BooksCatalog catalog = getCatalog();
+        FacetIndex index = FacetIndex.build(catalog.current(), PRICE_BOUNDS);
+        CatalogSnapshot before = catalog.current();
+
+        assertThat(titles(before, index.filter(before, null, null, null, null, null, true, 1, 2)))
+                .containsExactly("Fahrenheit 451", "Brave New World");
+
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of("9780451524935", 2L)));
+        CatalogSnapshot after = catalog.current();
+
+        FacetIndex.Results sold = index.filter(after, null, null, null, null, null, false, 0, 10);
+        assertThat(titles(after, sold)).containsExactly("1984");
+        assertThat(sold.getInStockCount()).isEqualTo(3);
+        assertThat(sold.getSoldCount()).isEqualTo(1);
+
+        // The previous version keeps its own availability.
+        assertThat(index.filter(before, null, null, null, null, null, false, 0, 10).getTotalHits()).isZero();
+    }
+
+    private List<String> titles(CatalogSnapshot snapshot, FacetIndex.Results results) {
+        return Arrays.stream(results.getSlots()).mapToObj(slot -> snapshot.getBook(slot).getTitle()).toList();
+    }
+
+    private BooksCatalog getCatalog() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        when(booksRepository.findAllAvailableBooks()).thenReturn(List.of(
+                book(1L, "1984", BookType.REGULAR, 1949, 999L, "9780451524935"),
+                book(2L, "Fahrenheit 451", BookType.OLD_EDITIONS, 1953, 1200L, "9781451673319"),
+                book(3L, "Brave New World", BookType.OLD_EDITIONS, 1932, 1500L, "9780060850524"),
+                book(4L, "Animal Farm", BookType.REGULAR, 1945, 800L, "9780451526342")));
+        return new BooksCatalog(booksRepository);
+    }
+
+    private BookEntity book(Long id, String title, BookType type, Integer year, Long price, String isbn) {
+        return BookEntity.builder()
+                .id(id)
+                .title(title)
+                .quantity(2l)
+                .type(type)
+                .price(price)
+                .isbn(isbn)
+                .author("Author")
+                .publisher("Publisher")
+                .description("")
+                .publicationYear(year)
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.app.bookstore.catalog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.types.BookType;
+
+@SpringBootTest
+public class FullTextIndexTest {
+
+    @Test
+    @Description("The search ranks first the books with more occurrences of the rarest terms")
+    public void testSearchRanksByRelevance() {
+        CatalogSnapshot snapshot = getCatalog().current();
+        FullTextIndex index = FullTextIndex.build(snapshot);
+
+        FullTextIndex.Results dragons = index.search(snapshot, "Dragon", 0, 10);
+        assertThat(titles(snapshot, dragons)).containsExactly("The Hobbit", "Dune");
+        assertThat(dragons.getTotalHits()).isEqualTo(2);
+
+        assertThat(titles(snapshot, index.search(snapshot, "dystopian dragon", 0, 10)))
+                .containsExactly("1984", "Brave New World", "The Hobbit", "Dune");
+        assertThat(index.search(snapshot, "unicorn", 0, 10).getTotalHits()).isZero();
+    }
+
+    @Test
+    @Description("The search returns the results by pages and skips the books that are sold")
+    public void testSearchPagesAndSkipsSoldBooks() {
+        BooksCatalog catalog = getCatalog();
+        FullTextIndex index = FullTextIndex.build(catalog.current());
+        CatalogSnapshot snapshot = catalog.current();
+
+        FullTextIndex.Results secondPage = index.search(snapshot, "dystopian dragon", 2, 2);
+        assertThat(titles(snapshot, secondPage)).containsExactly("The Hobbit", "Dune");
+        assertThat(secondPage.getTotalHits()).isEqualTo(4);
+        assertThat(index.search(snapshot, "dystopian dragon", 4, 2).getSlots()).isEmpty();
+
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of("9780547928227", 2L)));
+        snapshot = catalog.current();
+
+        FullTextIndex.Results dragons = index.search(snapshot, "dragon", 0, 10);
+        assertThat(titles(snapshot, dragons)).containsExactly("Dune");
+        assertThat(dragons.getTotalHits()).isEqualTo(1);
+    }
+
+    private List<String> titles(CatalogSnapshot snapshot, FullTextIndex.Results results) {
+        return Arrays.stream(results.getSlots()).mapToObj(slot -> snapshot.getBook(slot).getTitle()).toList();
+    }
+
+    private BooksCatalog getCatalog() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        when(booksRepository.findAllAvailableBooks()).thenReturn(List.of(
+                book(1L, "1984", "9780451524935", "A dystopian novel about a dystopian surveillance state."),
+                book(2L, "Brave New World", "9780060850524", "A dystopian society shaped by technology and conditioning."),
+                book(3L, "The Hobbit", "9780547928227", "A hobbit, a wizard and a dragon guarding a treasure."),
+                book(4L, "Dune", "9780441013593", "Politics, religion and giant worms on a desert planet, "
+                        + "where a young heir rides the sands like a dragon rider in an epic saga.")));
+        return new BooksCatalog(booksRepository);
+    }
+
+    private BookEntity book(Long id, String title, String isbn, String description) {
+        return BookEntity.builder()
+                .id(id)
+                .title(title)
+                .quantity(2l)
+                .type(BookType.REGULAR)
+                .price(1000L)
+                .isbn(isbn)
+                .author("Author")
+                .publisher("Publisher")
+                .description(description)
+                .publicationYear(2000)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.app.bookstore.catalog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.types.BookType;
+
+@SpringBootTest
+public class FuzzySearchIndexTest {
+
+    @Test
+    @Description("The search finds the books with typos on the title and the author")
+    public void testSearchWithTypos() {
+        CatalogSnapshot snapshot = getCatalog().current();
+        FuzzySearchIndex index = FuzzySearchIndex.build(snapshot);
+
+        assertThat(titles(snapshot, index.search(snapshot, "hobit", 0.8, 10)))
+                .containsExactly("The Hobbit");
+        assertThat(titles(snapshot, index.search(snapshot, "Orwel", 0.8, 10)))
+                .containsExactly("1984");
+        assertThat(titles(snapshot, index.search(snapshot, "brave new wrld", 0.8, 10)))
+                .first().isEqualTo("Brave New World");
+        assertThat(index.search(snapshot, "zzzz", 0.8, 10)).isEmpty();
+    }
+
+    @Test
+    @Description("The search does not return the books that are sold")
+    public void testSearchSkipsSoldBooks() {
+        BooksCatalog catalog = getCatalog();
+        FuzzySearchIndex index = FuzzySearchIndex.build(catalog.current());
+
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of("9780547928227", 2L)));
+        CatalogSnapshot snapshot = catalog.current();
+
+        assertThat(index.search(snapshot, "hobbit", 0.8, 10)).isEmpty();
+    }
+
+    @Test
+    @Description("The sold books do not take the place of the available ones in the candidates of the search")
+    public void testSearchSkipsSoldCandidates() {
+        List<BookEntity> books = new ArrayList<>();
+        Map<String, Long> sold = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            String isbn = String.format("9780000000%03d", i);
+            books.add(book((long) i, "The Hobbit", "J.R.R. Tolkien", isbn));
+            sold.put(isbn, 2L);
+        }
+        books.add(book(200L, "The Hobbit", "J.R.R. Tolkien", "9780547928227"));
+
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        when(booksRepository.findAllAvailableBooks()).thenReturn(books);
+        BooksCatalog catalog = new BooksCatalog(booksRepository);
+        FuzzySearchIndex index = FuzzySearchIndex.build(catalog.current());
+
+        catalog.onCatalogChanged(new CatalogChangedEvent(sold));
+        CatalogSnapshot snapshot = catalog.current();
+
+        int[] slots = index.search(snapshot, "hobbit", 0.8, 10);
+        assertThat(slots).hasSize(1);
+        assertThat(snapshot.getBook(slots[0]).getIsbn()).isEqualTo("9780547928227");
+    }
+
+    private List<String> titles(CatalogSnapshot snapshot, int[] slots) {
+        return java.util.Arrays.stream(slots).mapToObj(slot -> snapshot.getBook(slot).getTitle()).toList();
+    }
+
+    private BooksCatalog getCatalog() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        when(booksRepository.findAllAvailableBooks()).thenReturn(List.of(
+                book(1L, "1984", "George Orwell", "9780451524935"),
+                book(2L, "Brave New World", "Aldous Huxley", "9780060850524"),
+                book(3L, "The Hobbit", "J.R.R. Tolkien", "9780547928227"),
+                book(4L, "Dune", "Frank Herbert", "9780441013593")));
+        return new BooksCatalog(booksRepository);
+    }
+
+    private BookEntity book(Long id, String title, String author, String isbn) {
+        return BookEntity.builder()
+                .id(id)
+                .title(title)
+                .quantity(2l)
+                .type(BookType.REGULAR)
+                .price(1000L)
+                .isbn(isbn)
+                .author(author)
+                .publisher("Publisher")
+                .description("")
+                .publicationYear(2000)
+                .build();
+    }
+}
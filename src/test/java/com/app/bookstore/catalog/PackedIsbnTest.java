@@ -0,0 +1,31 @@
+package com.app.bookstore.catalog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+@SpringBootTest
+public class PackedIsbnTest {
+
+    @Test
+    @Description("The ISBN-13 and the ISBN-10 are packed as the same number, with or without hyphens")
+    public void testPackIsbn() {
+        assertThat(PackedIsbn.pack("9780306406157")).isEqualTo(9780306406157L);
+        assertThat(PackedIsbn.pack("978-0-306-40615-7")).isEqualTo(9780306406157L);
+        assertThat(PackedIsbn.pack("0-306-40615-2")).isEqualTo(9780306406157L);
+        assertThat(PackedIsbn.pack("080442957X")).isEqualTo(9780804429573L);
+    }
+
+    @Test
+    @Description("The texts that are not an ISBN-10 or an ISBN-13 are not packed")
+    public void testPackInvalidIsbn() {
+        assertThat(PackedIsbn.pack(null)).isEqualTo(PackedIsbn.INVALID);
+        assertThat(PackedIsbn.pack("")).isEqualTo(PackedIsbn.INVALID);
+        assertThat(PackedIsbn.pack("978030640615")).isEqualTo(PackedIsbn.INVALID);
+        assertThat(PackedIsbn.pack("97803064061570")).isEqualTo(PackedIsbn.INVALID);
+        assertThat(PackedIsbn.pack("97803064O6157")).isEqualTo(PackedIsbn.INVALID);
+        assertThat(PackedIsbn.pack("X804429570")).isEqualTo(PackedIsbn.INVALID);
+    }
+}
@@ -0,0 +1,90 @@
+package com.app.bookstore.catalog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.types.BookType;
+
+@SpringBootTest
+public class SuggestionIndexTest {
+
+    @Test
+    @Description("The suggestions start with the prefix on any word and the ones with more stock go first")
+    public void testSuggestRanksByStock() {
+        CatalogSnapshot snapshot = getCatalog().current();
+        SuggestionIndex index = SuggestionIndex.build(snapshot);
+
+        assertThat(texts(index, index.suggest(snapshot, "The", 10)))
+                .containsExactly("The Hobbit", "The Two Towers", "The Silmarillion");
+        assertThat(texts(index, index.suggest(snapshot, "tol", 10)))
+                .containsExactly("J.R.R. Tolkien");
+        assertThat(index.getStock(index.suggest(snapshot, "tol", 10)[0])).isEqualTo(9L);
+        assertThat(texts(index, index.suggest(snapshot, "hobbit", 10)))
+                .containsExactly("The Hobbit");
+        assertThat(texts(index, index.suggest(snapshot, "allen", 2)))
+                .containsExactly("Allen & Unwin", "Allen Lane");
+        assertThat(index.suggest(snapshot, "xyz", 10)).isEmpty();
+    }
+
+    @Test
+    @Description("The stock of the suggestions follows the changes of the catalog")
+    public void testSuggestFollowsStockChanges() {
+        BooksCatalog catalog = getCatalog();
+        SuggestionIndex index = SuggestionIndex.build(catalog.current());
+
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of("9780261102217", 3L)));
+        CatalogSnapshot snapshot = catalog.current();
+
+        assertThat(texts(index, index.suggest(snapshot, "the", 10)))
+                .containsExactly("The Hobbit", "The Silmarillion");
+        assertThat(index.getStock(index.suggest(snapshot, "tolkien", 1)[0])).isEqualTo(6L);
+
+        // Two versions at once are applied comparing all the slots.
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of("9780547928227", 1L)));
+        catalog.onCatalogChanged(new CatalogChangedEvent(Map.of("9780261102736", 1L)));
+        snapshot = catalog.current();
+
+        assertThat(texts(index, index.suggest(snapshot, "the", 10)))
+                .containsExactly("The Hobbit");
+        assertThat(index.getStock(index.suggest(snapshot, "tolkien", 1)[0])).isEqualTo(4L);
+    }
+
+    private List<String> texts(SuggestionIndex index, int[] suggestions) {
+        return Arrays.stream(suggestions).mapToObj(index::getText).toList();
+    }
+
+    private BooksCatalog getCatalog() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        when(booksRepository.findAllAvailableBooks()).thenReturn(List.of(
+                book(1L, "The Hobbit", "Allen & Unwin", "9780547928227", 5L),
+                book(2L, "The Two Towers", "Allen & Unwin", "9780261102217", 3L),
+                book(3L, "The Silmarillion", "Allen Lane", "9780261102736", 1L)));
+        return new BooksCatalog(booksRepository);
+    }
+
+    private BookEntity book(Long id, String title, String publisher, String isbn, Long quantity) {
+        return BookEntity.builder()
+                .id(id)
+                .title(title)
+                .quantity(quantity)
+                .type(BookType.REGULAR)
+                .price(1000L)
+                .isbn(isbn)
+                .author("J.R.R. Tolkien")
+                .publisher(publisher)
+                .description("")
+                .publicationYear(2000)
+                .build();
+    }
+}
@@ -1,25 +1,53 @@
 
 package com.app.bookstore.controllers;
 
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Description;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogChangedEvent;
 import com.app.bookstore.dtos.BookDto;
+import com.app.bookstore.dtos.BookSummaryDto;
 import com.app.bookstore.dtos.BooksDto;
+import com.app.bookstore.dtos.BooksPageDto;
+import com.app.bookstore.dtos.FacetCountDto;
+import com.app.bookstore.dtos.FacetedBooksDto;
+import com.app.bookstore.dtos.RankedBooksDto;
+import com.app.bookstore.dtos.SuggestionDto;
+import com.app.bookstore.dtos.SuggestionsDto;
+import com.app.bookstore.entities.BookDetailEntity;
 import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.BookSummaryEntity;
+import com.app.bookstore.exceptions.BookStoreError;
 import com.app.bookstore.repositories.BooksRepository;
 import com.app.bookstore.repositories.ClientsRepository;
 import com.app.bookstore.types.BookType;
+import com.app.bookstore.types.SuggestionType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -38,11 +66,18 @@ class BooksBookStoreControllerTests {
         @MockitoBean
         private BooksRepository booksRepository;
 
+        @Autowired
+        private BooksCatalog booksCatalog;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
         @Test
         void testGetBooksEndpoint() {
 
                 given(booksRepository.findAllAvailableBooks())
                                 .willReturn(getBooks());
+                booksCatalog.reload();
 
                 ResponseEntity<BooksDto> response = restTemplate.exchange(
                                 "http://localhost:" + port + "/bookstore/books/",
@@ -51,12 +86,589 @@ class BooksBookStoreControllerTests {
                                 BooksDto.class);
 
                 assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getHeaders().getFirst(BooksBookStoreController.CATALOG_VERSION_HEADER))
+                                .isEqualTo(String.valueOf(booksCatalog.current().getVersion()));
                 assertThat(response.getBody()).isNotNull();
                 assertThat(response.getBody())
                                 .usingRecursiveComparison()
                                 .isEqualTo(getBooksDto());
         }
 
+        @Test
+        @Description("Test the books endpoint returns 304 while the catalog version does not change")
+        void testGetBooksEndpointNotModified() {
+                given(booksRepository.findAllAvailableBooks())
+                                .willReturn(getBooks());
+                booksCatalog.reload();
+
+                ResponseEntity<BooksDto> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                null,
+                                BooksDto.class);
+
+                String eTag = response.getHeaders().getETag();
+                assertThat(eTag).isEqualTo(booksCatalog.current().getETag());
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.setIfNoneMatch(eTag);
+                ResponseEntity<BooksDto> notModified = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                BooksDto.class);
+
+                assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+                assertThat(notModified.getBody()).isNull();
+                verify(booksRepository, times(1)).findAllAvailableBooks();
+
+                booksCatalog.onCatalogChanged(new CatalogChangedEvent(Map.of("9781786892737", 1L)));
+
+                ResponseEntity<BooksDto> modified = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                BooksDto.class);
+
+                assertThat(modified.getStatusCode()).isEqualTo(HttpStatus.OK);
+                assertThat(modified.getHeaders().getETag()).isNotEqualTo(eTag);
+                assertThat(modified.getBody()).isNotNull();
+                assertThat(modified.getBody().getBooks().get(0).getQuantity()).isEqualTo(1);
+        }
+
+        @Test
+        @Description("Test the books endpoint returns the catalog gzip compressed when the client accepts it")
+        void testGetBooksEndpointGzip() throws Exception {
+                given(booksRepository.findAllAvailableBooks())
+                                .willReturn(getBooks());
+                booksCatalog.reload();
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.set(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8");
+                ResponseEntity<byte[]> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                byte[].class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+                assertThat(response.getHeaders().getVary()).contains(HttpHeaders.ACCEPT_ENCODING);
+
+                try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(response.getBody()))) {
+                        assertThat(objectMapper.readValue(gzip, BooksDto.class))
+                                        .usingRecursiveComparison()
+                                        .isEqualTo(getBooksDto());
+                }
+
+                headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0");
+                ResponseEntity<BooksDto> plain = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                BooksDto.class);
+
+                assertThat(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+                assertThat(plain.getBody())
+                                .usingRecursiveComparison()
+                                .isEqualTo(getBooksDto());
+
+                // The gzip body has its own ETag, a client only gets a 304 for
+                // the ETag of the encoding it accepts.
+                String gzipETag = response.getHeaders().getETag();
+                String catalogETag = booksCatalog.current().getETag();
+                assertThat(plain.getHeaders().getETag()).isEqualTo(catalogETag);
+                assertThat(gzipETag).isNotEqualTo(catalogETag).endsWith("-gzip\"");
+
+                headers.setIfNoneMatch(gzipETag);
+                ResponseEntity<byte[]> modified = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                byte[].class);
+
+                assertThat(modified.getStatusCode()).isEqualTo(HttpStatus.OK);
+                assertThat(modified.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+                assertThat(modified.getHeaders().getETag()).isEqualTo(catalogETag);
+
+                headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+                ResponseEntity<byte[]> notModified = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                byte[].class);
+
+                assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+                assertThat(notModified.getHeaders().getETag()).isEqualTo(gzipETag);
+
+                headers.setIfNoneMatch(catalogETag);
+                modified = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                byte[].class);
+
+                assertThat(modified.getStatusCode()).isEqualTo(HttpStatus.OK);
+                assertThat(modified.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+                assertThat(modified.getHeaders().getETag()).isEqualTo(gzipETag);
+        }
+
+        @Test
+        @Description("Test the books endpoint returns the catalog as CBOR when the Accept header asks for it")
+        void testGetBooksEndpointCbor() throws Exception {
+                given(booksRepository.findAllAvailableBooks())
+                                .willReturn(getBooks());
+                booksCatalog.reload();
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.set(HttpHeaders.ACCEPT, "application/json;q=0.5, application/cbor");
+                ResponseEntity<byte[]> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                byte[].class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+                assertThat(response.getHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+                assertThat(new ObjectMapper(new CBORFactory()).readValue(response.getBody(), BooksDto.class))
+                                .usingRecursiveComparison()
+                                .isEqualTo(getBooksDto());
+
+                // Every format has its own ETag.
+                String eTag = response.getHeaders().getETag();
+                assertThat(eTag).isNotEqualTo(booksCatalog.current().getETag());
+
+                headers.setIfNoneMatch(eTag);
+                ResponseEntity<byte[]> notModified = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                byte[].class);
+
+                assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+                // JSON stays the default format.
+                HttpHeaders anyHeaders = new HttpHeaders();
+                anyHeaders.set(HttpHeaders.ACCEPT, "*/*");
+                anyHeaders.setIfNoneMatch(eTag);
+                ResponseEntity<BooksDto> json = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(anyHeaders),
+                                BooksDto.class);
+
+                assertThat(json.getStatusCode()).isEqualTo(HttpStatus.OK);
+                assertThat(json.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+                assertThat(json.getBody())
+                                .usingRecursiveComparison()
+                                .isEqualTo(getBooksDto());
+        }
+
+        @Test
+        @Description("Test the books endpoint returns only the properties of the fields parameter")
+        void testGetBooksEndpointWithFields() throws Exception {
+                given(booksRepository.findAllAvailableBooks())
+                                .willReturn(getBooks());
+                booksCatalog.reload();
+
+                ResponseEntity<String> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/?fields=isbn, price,quantity",
+                                HttpMethod.GET,
+                                null,
+                                String.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                JsonNode books = objectMapper.readTree(response.getBody()).get("books");
+                assertThat(books).hasSize(getBooks().size());
+                for (int i = 0; i < books.size(); i++) {
+                        assertThat(books.get(i).properties())
+                                        .extracting(Map.Entry::getKey)
+                                        .containsExactly("quantity", "price", "isbn");
+                        assertThat(books.get(i).get("isbn").asText()).isEqualTo(getBooks().get(i).getIsbn());
+                }
+
+                // The selection has its own ETag, the same for the same fields in any order.
+                String eTag = response.getHeaders().getETag();
+                assertThat(eTag).isNotNull().isNotEqualTo(booksCatalog.current().getETag());
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.setIfNoneMatch(eTag);
+                ResponseEntity<String> notModified = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/?fields=quantity,isbn,price",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                String.class);
+
+                assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+                // Aa and BB have the same hash code, the selections still have different ETags.
+                HttpHeaders collidingHeaders = new HttpHeaders();
+                collidingHeaders.setIfNoneMatch(restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/?fields=isbn,Aa",
+                                HttpMethod.GET,
+                                null,
+                                String.class).getHeaders().getETag());
+                ResponseEntity<String> colliding = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/?fields=isbn,BB",
+                                HttpMethod.GET,
+                                new HttpEntity<>(collidingHeaders),
+                                String.class);
+
+                assertThat(colliding.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+                ResponseEntity<BooksDto> all = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/",
+                                HttpMethod.GET,
+                                new HttpEntity<>(headers),
+                                BooksDto.class);
+
+                assertThat(all.getStatusCode()).isEqualTo(HttpStatus.OK);
+                assertThat(all.getBody())
+                                .usingRecursiveComparison()
+                                .isEqualTo(getBooksDto());
+        }
+
+        @Test
+        @Description("Test the search endpoint finds books with typos on the title or the author")
+        void testSearchBooksEndpoint() {
+                given(booksRepository.findAllAvailableBooks())
+                                .willReturn(getBooks());
+                booksCatalog.reload();
+
+                ResponseEntity<BooksDto> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/search?q=midnite librery",
+                                HttpMethod.GET,
+                                null,
+                                BooksDto.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getBody()).isNotNull();
+                assertThat(response.getBody().getBooks())
+                                .usingRecursiveFieldByFieldElementComparator()
+                                .containsExactly(getBooksDto().getBooks().get(0));
+
+                ResponseEntity<BooksDto> byAuthor = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/search?q=austin",
+                                HttpMethod.GET,
+                                null,
+                                BooksDto.class);
+
+                assertThat(byAuthor.getBody().getBooks())
+                                .extracting(BookDto::getTitle)
+                                .containsExactly("Pride and Prejudice");
+        }
+
+        @Test
+        @Description("Test the full text search endpoint ranks the books and returns them by pages")
+        void testFullTextSearchEndpoint() {
+                given(booksRepository.findAllAvailableBooks())
+                                .willReturn(getBooks());
+                booksCatalog.reload();
+
+                ResponseEntity<RankedBooksDto> firstPage = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/fulltext?q=library novel&size=1",
+                                HttpMethod.GET,
+                                null,
+                                RankedBooksDto.class);
+
+                assertThat(firstPage.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(firstPage.getBody()).isNotNull();
+                assertThat(firstPage.getBody().getTotalHits()).isEqualTo(2);
+                assertThat(firstPage.getBody().getBooks())
+                                .usingRecursiveFieldByFieldElementComparator()
+                                .containsExactly(getBooksDto().getBooks().get(0));
+
+                ResponseEntity<RankedBooksDto> secondPage = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/fulltext?q=library novel&page=1&size=1",
+                                HttpMethod.GET,
+                                null,
+                                RankedBooksDto.class);
+
+                assertThat(secondPage.getBody().getPage()).isEqualTo(1);
+                assertThat(secondPage.getBody().getBooks())
+                                .extracting(BookDto::getTitle)
+                                .containsExactly("Pride and Prejudice");
+
+                ResponseEntity<BookStoreError> invalidPage = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/fulltext?q=library&page=-1",
+                                HttpMethod.GET,
+                                null,
+                                BookStoreError.class);
+
+                assertThat(invalidPage.getStatusCode().is4xxClientError()).isTrue();
+                assertThat(invalidPage.getBody())
+                                .isEqualTo(new BookStoreError(105,
+                                                "Book Store exception thrown: The page should be 0 or greater"));
+        }
+
+        @Test
+        @Description("Test the suggest endpoint completes titles, authors and publishers ranked by stock")
+        void testSuggestEndpoint() {
+                given(booksRepository.findAllAvailableBooks())
+                                .willReturn(getBooks());
+                booksCatalog.reload();
+
+                ResponseEntity<SuggestionsDto> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/suggest?prefix=P",
+                                HttpMethod.GET,
+                                null,
+                                SuggestionsDto.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getBody()).isNotNull();
+                assertThat(response.getBody().getSuggestions()).containsExactly(
+                                new SuggestionDto("Pride and Prejudice", SuggestionType.TITLE, 4L),
+                                new SuggestionDto("G.P. Putnam's Sons", SuggestionType.PUBLISHER, 1L));
+        }
+
+        @Test
+        @Description("Test the filter endpoint filters the books by facets and counts every facet value")
+        void testFilterBooksEndpoint() {
+                given(booksRepository.findAllAvailableBooks())
+                                .willReturn(getBooks());
+                booksCatalog.reload();
+
+                ResponseEntity<FacetedBooksDto> response = restTemplate.exchange(
+                                "http://localhost:" + port
+                                                + "/bookstore/books/filter?type=REGULAR&type=NEW_RELEASE&yearFrom=2000",
+                                HttpMethod.GET,
+                                null,
+                                FacetedBooksDto.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getBody()).isNotNull();
+                assertThat(response.getBody().getTotalHits()).isEqualTo(1);
+                assertThat(response.getBody().getBooks())
+                                .usingRecursiveFieldByFieldElementComparator()
+                                .containsExactly(getBooksDto().getBooks().get(0));
+                assertThat(response.getBody().getFacets().getTypes()).containsExactly(
+                                new FacetCountDto("NEW_RELEASE", 1),
+                                new FacetCountDto("REGULAR", 0),
+                                new FacetCountDto("OLD_EDITIONS", 1));
+                assertThat(response.getBody().getFacets().getDecades()).containsExactly(
+                                new FacetCountDto("1990", 1),
+                                new FacetCountDto("2000", 1),
+                                new FacetCountDto("2010", 0));
+                assertThat(response.getBody().getFacets().getAvailability()).containsExactly(
+                                new FacetCountDto("true", 1),
+                                new FacetCountDto("false", 0));
+
+                ResponseEntity<BookStoreError> invalidRange = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/filter?yearFrom=2000&yearTo=1990",
+                                HttpMethod.GET,
+                                null,
+                                BookStoreError.class);
+
+                assertThat(invalidRange.getStatusCode().is4xxClientError()).isTrue();
+                assertThat(invalidRange.getBody())
+                                .isEqualTo(new BookStoreError(105,
+                                                "Book Store exception thrown: The first year cannot be greater than the last one"));
+        }
+
+        @Test
+        @Description("Test the books are returned by ISBN in the order of the request")
+        void testGetBooksByIsbnEndpoint() {
+                given(booksRepository.findAllAvailableBooks())
+                                .willReturn(getBooks());
+                booksCatalog.reload();
+
+                ResponseEntity<BooksDto> response = restTemplate.exchange(
+                                "http://localhost:" + port
+                                                + "/bookstore/books?isbn=978-0-14-143951-8,9781786892737,9780000000002,9780141439518",
+                                HttpMethod.GET,
+                                null,
+                                BooksDto.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getBody()).isNotNull();
+                assertThat(response.getBody().getBooks())
+                                .usingRecursiveFieldByFieldElementComparator()
+                                .containsExactly(getBooksDto().getBooks().get(2), getBooksDto().getBooks().get(0));
+
+                ResponseEntity<BookStoreError> invalidIsbn = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books?isbn=9781786892737,not-an-isbn",
+                                HttpMethod.GET,
+                                null,
+                                BookStoreError.class);
+
+                assertThat(invalidIsbn.getStatusCode().is4xxClientError()).isTrue();
+                assertThat(invalidIsbn.getBody())
+                                .isEqualTo(new BookStoreError(105,
+                                                "Book Store exception thrown: The ISBN not-an-isbn is not valid"));
+        }
+
+        @Test
+        @Description("Test the books are returned by pages following the cursor")
+        void testGetBooksPageEndpoint() {
+                List<BookSummaryEntity> books = getBookSummaries();
+
+                given(booksRepository.findAvailableBookSummariesAfter(Long.MIN_VALUE, Limit.of(3)))
+                                .willReturn(books);
+                given(booksRepository.findAvailableBookSummariesAfter(2L, Limit.of(3)))
+                                .willReturn(books.subList(2, 3));
+
+                ResponseEntity<BooksPageDto> firstPage = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/page?limit=2",
+                                HttpMethod.GET,
+                                null,
+                                BooksPageDto.class);
+
+                assertThat(firstPage.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(firstPage.getBody()).isNotNull();
+                assertThat(firstPage.getBody().getBooks())
+                                .usingRecursiveFieldByFieldElementComparator()
+                                .isEqualTo(getBookSummariesDto().subList(0, 2));
+                assertThat(firstPage.getBody().getNextCursor()).isNotNull();
+
+                ResponseEntity<BooksPageDto> lastPage = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/page?limit=2&cursor="
+                                                + firstPage.getBody().getNextCursor(),
+                                HttpMethod.GET,
+                                null,
+                                BooksPageDto.class);
+
+                assertThat(lastPage.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(lastPage.getBody()).isNotNull();
+                assertThat(lastPage.getBody().getBooks())
+                                .usingRecursiveFieldByFieldElementComparator()
+                                .isEqualTo(getBookSummariesDto().subList(2, 3));
+                assertThat(lastPage.getBody().getNextCursor()).isNull();
+        }
+
+        @Test
+        @Description("Test the books page endpoint with a cursor that was not generated by the book store")
+        void testGetBooksPageEndpointWithInvalidCursor() {
+                ResponseEntity<BookStoreError> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/page?cursor=not-a-cursor",
+                                HttpMethod.GET,
+                                null,
+                                BookStoreError.class);
+
+                assertThat(response.getStatusCode().is4xxClientError()).isTrue();
+                assertThat(response.getBody())
+                                .isEqualTo(new BookStoreError(107,
+                                                "Book Store exception thrown: The cursor not-a-cursor is not valid"));
+        }
+
+        @Test
+        @Description("Test the books are streamed as newline delimited JSON")
+        void testGetBooksStreamEndpoint() throws Exception {
+                given(booksRepository.streamAvailableBookSummaries())
+                                .willReturn(getBookSummaries().stream());
+
+                ResponseEntity<String> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/stream",
+                                HttpMethod.GET,
+                                null,
+                                String.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+                assertThat(response.getBody()).endsWith("\n");
+
+                List<BookSummaryDto> books = new ArrayList<>();
+                for (String line : response.getBody().split("\n")) {
+                        books.add(objectMapper.readValue(line, BookSummaryDto.class));
+                }
+                assertThat(books)
+                                .usingRecursiveFieldByFieldElementComparator()
+                                .isEqualTo(getBookSummariesDto());
+                assertThat(response.getBody()).doesNotContain("description");
+        }
+
+        @Test
+        @Description("Test the details of a book are returned by ISBN")
+        void testGetBookEndpoint() {
+                BookEntity book = getBooks().get(0);
+                given(booksRepository.findBookDetailByIsbn("9781786892737"))
+                                .willReturn(Optional.of(new BookDetailEntity(book.getTitle(), book.getQuantity(),
+                                                book.getType(), book.getPrice(), book.getAuthor(), book.getPublisher(),
+                                                book.getIsbn(), book.getDescription(), book.getPublicationYear())));
+
+                ResponseEntity<BookDto> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/9781786892737",
+                                HttpMethod.GET,
+                                null,
+                                BookDto.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getBody())
+                                .usingRecursiveComparison()
+                                .isEqualTo(getBooksDto().getBooks().get(0));
+
+                ResponseEntity<BookStoreError> notFound = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/9780000000002",
+                                HttpMethod.GET,
+                                null,
+                                BookStoreError.class);
+
+                assertThat(notFound.getStatusCode().is4xxClientError()).isTrue();
+                assertThat(notFound.getBody())
+                                .isEqualTo(new BookStoreError(104,
+                                                "Book Store exception thrown: Book with ISBN 9780000000002 does not exist"));
+        }
+
+        @Test
+        @Description("Test the book details and the pages of books return only the properties of the fields parameter")
+        void testGetBookAndBooksPageEndpointsWithFields() throws Exception {
+                BookEntity book = getBooks().get(0);
+                given(booksRepository.findBookDetailByIsbn("9781786892737"))
+                                .willReturn(Optional.of(new BookDetailEntity(book.getTitle(), book.getQuantity(),
+                                                book.getType(), book.getPrice(), book.getAuthor(), book.getPublisher(),
+                                                book.getIsbn(), book.getDescription(), book.getPublicationYear())));
+                given(booksRepository.findAvailableBookSummariesAfter(Long.MIN_VALUE, Limit.of(3)))
+                                .willReturn(getBookSummaries());
+
+                ResponseEntity<String> detail = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/9781786892737?fields=title,price",
+                                HttpMethod.GET,
+                                null,
+                                String.class);
+
+                assertThat(detail.getStatusCode().is2xxSuccessful()).isTrue();
+                JsonNode bookDetail = objectMapper.readTree(detail.getBody());
+                assertThat(bookDetail.properties())
+                                .extracting(Map.Entry::getKey)
+                                .containsExactly("title", "price");
+                assertThat(bookDetail.get("title").asText()).isEqualTo(book.getTitle());
+                assertThat(bookDetail.get("price").asLong()).isEqualTo(book.getPrice());
+
+                // The properties of the page that are not books are always returned.
+                ResponseEntity<String> page = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/books/page?limit=2&fields=isbn",
+                                HttpMethod.GET,
+                                null,
+                                String.class);
+
+                assertThat(page.getStatusCode().is2xxSuccessful()).isTrue();
+                JsonNode body = objectMapper.readTree(page.getBody());
+                assertThat(body.get("nextCursor").isTextual()).isTrue();
+                assertThat(body.get("books")).hasSize(2);
+                assertThat(body.get("books").get(1))
+                                .isEqualTo(objectMapper.createObjectNode().put("isbn", getBooks().get(1).getIsbn()));
+        }
+
+        private List<BookSummaryEntity> getBookSummaries() {
+                List<BookEntity> books = getBooks();
+                List<BookSummaryEntity> summaries = new ArrayList<>();
+                for (int i = 0; i < books.size(); i++) {
+                        BookEntity book = books.get(i);
+                        summaries.add(new BookSummaryEntity(i + 1L, book.getTitle(), book.getQuantity(), book.getType(),
+                                        book.getPrice(), book.getAuthor(), book.getPublisher(), book.getIsbn(),
+                                        book.getPublicationYear()));
+                }
+                return summaries;
+        }
+
+        private List<BookSummaryDto> getBookSummariesDto() {
+                return getBooksDto().getBooks().stream()
+                                .map(book -> new BookSummaryDto(book.getTitle(), book.getQuantity(), book.getType(),
+                                                book.getPrice(), book.getAuthor(), book.getPublisher(), book.getIsbn(),
+                                                book.getPublicationYear()))
+                                .toList();
+        }
+
         private BooksDto getBooksDto() {
                 final List<BookDto> books = new ArrayList<>();
 
@@ -1,6 +1,7 @@
 package com.app.bookstore.controllers;
 
 import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -9,28 +10,48 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.context.annotation.Description;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import com.app.bookstore.dtos.BatchOrderDto;
 import com.app.bookstore.dtos.BookDto;
+import com.app.bookstore.dtos.ClientOrderDto;
 import com.app.bookstore.dtos.ClientDto;
 import com.app.bookstore.dtos.OrderDto;
 import com.app.bookstore.dtos.PurchaseDto;
+import com.app.bookstore.dtos.QuoteDto;
 import com.app.bookstore.entities.BookEntity;
 import com.app.bookstore.entities.ClientEntity;
 import com.app.bookstore.exceptions.BookStoreError;
 import com.app.bookstore.repositories.BooksRepository;
 import com.app.bookstore.repositories.ClientsRepository;
 import com.app.bookstore.types.BookType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
-@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+// The repositories are mocked, so the purchases take the stock on the mocked
+// database and not from the inventory in memory, that would keep the stock
+// between the tests.
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "bookstore.inventory.enabled=false")
 public class ClientsBookStoreControllerTests {
 
         @LocalServerPort
@@ -39,12 +60,27 @@ public class ClientsBookStoreControllerTests {
         @Autowired
         private TestRestTemplate restTemplate;
 
+        @Autowired
+        private ObjectMapper objectMapper;
+
         @MockitoBean
         private ClientsRepository clientsRepository;
 
         @MockitoBean
         private BooksRepository booksRepository;
 
+        @BeforeEach
+        void setUp() {
+                // The stock of the books and the points of the clients are always
+                // enough on the database.
+                given(booksRepository.decrementStock(any(), any())).willAnswer(invocation -> {
+                        int[] updated = new int[invocation.<long[]>getArgument(0).length];
+                        Arrays.fill(updated, 1);
+                        return updated;
+                });
+                given(clientsRepository.updateLoyaltyPoints(anyLong(), anyLong(), anyLong())).willReturn(1);
+        }
+
         @Test
         @Description("Test to get client loyalty points endpoint")
         void testGetLoyaltyPoints() {
@@ -123,6 +159,91 @@ public class ClientsBookStoreControllerTests {
                                 .isEqualTo(getExpetedPurchase());
         }
 
+        @Test
+        @Description("Test the purchase endpoint returns only the properties of the fields parameter")
+        void testPurchaseBooksWithFields() throws Exception {
+                List<String> isbnList = Arrays.asList("978-1-23456-789-0", "978-1-23456-789-1", "978-1-23456-789-2",
+                                "978-1-23456-789-3", "978-1-23456-789-4", "978-1-23456-789-5", "978-1-23456-789-6",
+                                "978-1-23456-789-7", "978-1-23456-789-8", "978-1-23456-789-9");
+
+                given(clientsRepository.findById(1L))
+                                .willReturn(java.util.Optional.of(ClientEntity.builder()
+                                                .id(1l)
+                                                .name("Mocked Client Name")
+                                                .email("mocked.email@example.com")
+                                                .phone("1234455678")
+                                                .address("street 123")
+                                                .loyaltyPoints(100L)
+                                                .build()));
+
+                given(booksRepository.findAllByIsbn(isbnList))
+                                .willReturn(getExistingBooks());
+
+                HttpEntity<OrderDto> entity = new HttpEntity<>(new OrderDto(isbnList, Collections.emptyList()));
+                ResponseEntity<String> response = restTemplate.exchange(
+                                "http://localhost:" + port
+                                                + "/bookstore/clients/1/purchase?fields=totalPrice,loyaltyPoints,client.name,books.isbn",
+                                HttpMethod.POST,
+                                entity,
+                                String.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                PurchaseDto expected = getExpetedPurchase();
+                JsonNode purchase = objectMapper.readTree(response.getBody());
+                assertThat(purchase.properties())
+                                .extracting(Map.Entry::getKey)
+                                .containsExactly("client", "books", "loyaltyPoints", "totalPrice");
+                assertThat(purchase.get("totalPrice").asLong()).isEqualTo(expected.getTotalPrice());
+                assertThat(purchase.get("loyaltyPoints").asLong()).isEqualTo(expected.getLoyaltyPoints());
+                assertThat(purchase.get("client"))
+                                .isEqualTo(objectMapper.createObjectNode().put("name", "Mocked Client Name"));
+                assertThat(purchase.get("books")).hasSize(expected.getBooks().size());
+                assertThat(purchase.get("books").get(0))
+                                .isEqualTo(objectMapper.createObjectNode().put("isbn", expected.getBooks().get(0).getIsbn()));
+        }
+
+        @Test
+        @Description("Test the purchase endpoint reads the order as CBOR and returns the purchase as Smile")
+        void testPurchaseBooksWithBinaryFormats() throws Exception {
+                List<String> isbnList = Arrays.asList("978-1-23456-789-0", "978-1-23456-789-1", "978-1-23456-789-2",
+                                "978-1-23456-789-3", "978-1-23456-789-4", "978-1-23456-789-5", "978-1-23456-789-6",
+                                "978-1-23456-789-7", "978-1-23456-789-8", "978-1-23456-789-9");
+
+                given(clientsRepository.findById(1L))
+                                .willReturn(java.util.Optional.of(ClientEntity.builder()
+                                                .id(1l)
+                                                .name("Mocked Client Name")
+                                                .email("mocked.email@example.com")
+                                                .phone("1234455678")
+                                                .address("street 123")
+                                                .loyaltyPoints(100L)
+                                                .build()));
+
+                given(booksRepository.findAllByIsbn(isbnList))
+                                .willReturn(getExistingBooks());
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.setContentType(MediaType.APPLICATION_CBOR);
+                headers.set(HttpHeaders.ACCEPT, "application/x-jackson-smile");
+                HttpEntity<byte[]> entity = new HttpEntity<>(
+                                new ObjectMapper(new CBORFactory())
+                                                .writeValueAsBytes(new OrderDto(isbnList, Collections.emptyList())),
+                                headers);
+                ResponseEntity<byte[]> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/clients/1/purchase",
+                                HttpMethod.POST,
+                                entity,
+                                byte[].class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getHeaders().getContentType())
+                                .isEqualTo(MediaType.valueOf("application/x-jackson-smile"));
+                assertThat(new ObjectMapper(new SmileFactory()).readValue(response.getBody(), PurchaseDto.class))
+                                .usingRecursiveComparison()
+                                .ignoringFields("purchaseDate")
+                                .isEqualTo(getExpetedPurchase());
+        }
+
         @Test
         @Description("Test a purchase where the client try to use the loyalty points on a NEW RELEASE book type. Expected result, the purchase don't use the loyalty points")
         void testPurchaseBooksLoyaltyPointsCannotBeUsedOnNewRelease() {
@@ -583,4 +704,179 @@ public class ClientsBookStoreControllerTests {
                                                 "Book Store exception thrown: Client with ID 1000 not found"));
         }
 
+        @Test
+        @Description("Test the quote endpoint prices the order as the purchase without changing the stock or the loyalty points")
+        public void testQuoteBooks() {
+                List<String> isbnList = Arrays.asList("978-1-23456-789-0", "978-1-23456-789-1", "978-1-23456-789-2",
+                                "978-1-23456-789-3", "978-1-23456-789-4", "978-1-23456-789-5", "978-1-23456-789-6",
+                                "978-1-23456-789-7", "978-1-23456-789-8", "978-1-23456-789-9");
+
+                given(clientsRepository.findById(1L))
+                                .willReturn(java.util.Optional.of(ClientEntity.builder()
+                                                .id(1l)
+                                                .name("Mocked Client Name")
+                                                .loyaltyPoints(100L)
+                                                .build()));
+
+                given(booksRepository.findAllByIsbn(isbnList))
+                                .willReturn(getExistingBooks());
+
+                HttpEntity<OrderDto> entity = new HttpEntity<>(new OrderDto(isbnList, Collections.emptyList()));
+                ResponseEntity<QuoteDto> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/clients/1/quote",
+                                HttpMethod.POST,
+                                entity,
+                                QuoteDto.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(response.getBody()).isNotNull();
+                assertThat(response.getBody().getTotalPrice()).isEqualTo(getExpetedPurchase().getTotalPrice());
+                assertThat(response.getBody().getLoyaltyPoints()).isEqualTo(getExpetedPurchase().getLoyaltyPoints());
+                assertThat(response.getBody().getUsedLoyaltyPoints()).isZero();
+                assertThat(response.getBody().getBooks()).extracting(BookDto::getIsbn).containsExactlyElementsOf(isbnList);
+                verify(booksRepository, never()).saveAll(anyList());
+                verify(clientsRepository, never()).save(any());
+        }
+
+        @Test
+        @Description("Test the quote endpoint with free books and not enough loyalty points")
+        public void testQuoteBooksWithNotEnoughLoyaltyPoints() {
+                List<String> isbnList = Arrays.asList("978-1-23456-789-0", "978-1-23456-789-1", "978-1-23456-789-2");
+
+                given(clientsRepository.findById(1L))
+                                .willReturn(java.util.Optional.of(ClientEntity.builder()
+                                                .id(1l)
+                                                .name("Mocked Client Name")
+                                                .loyaltyPoints(5L)
+                                                .build()));
+
+                given(booksRepository.findAllByIsbn(isbnList))
+                                .willReturn(getExistingBooks().subList(0, 3));
+
+                HttpEntity<OrderDto> entity = new HttpEntity<>(new OrderDto(isbnList, List.of("978-1-23456-789-2")));
+                ResponseEntity<BookStoreError> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/clients/1/quote",
+                                HttpMethod.POST,
+                                entity,
+                                BookStoreError.class);
+
+                assertThat(response.getStatusCode().is4xxClientError()).isTrue();
+                assertThat(response.getBody())
+                                .isEqualTo(new BookStoreError(103,
+                                                "Book Store exception thrown: Not enough loyalty points to receive the free books"));
+        }
+
+        @Test
+        @Description("Test the batch purchase endpoint returns the result of every order, with the properties of the fields parameter")
+        public void testPurchaseBatch() throws Exception {
+                List<String> isbnList = Arrays.asList("978-1-23456-789-0", "978-1-23456-789-1");
+
+                given(clientsRepository.findAllById(any()))
+                                .willReturn(List.of(ClientEntity.builder()
+                                                .id(1l)
+                                                .name("Mocked Client Name")
+                                                .loyaltyPoints(100L)
+                                                .build()));
+
+                given(booksRepository.findAllByIsbn(isbnList))
+                                .willReturn(getExistingBooks().subList(0, 2));
+                given(clientsRepository.updateLoyaltyPoints(any(long[].class), any(), any()))
+                                .willReturn(new int[] { 1 });
+
+                HttpEntity<BatchOrderDto> entity = new HttpEntity<>(new BatchOrderDto(List.of(
+                                new ClientOrderDto(1L, new OrderDto(isbnList, Collections.emptyList())),
+                                new ClientOrderDto(1000L, new OrderDto(isbnList, Collections.emptyList())))));
+                ResponseEntity<String> response = restTemplate.exchange(
+                                "http://localhost:" + port
+                                                + "/bookstore/clients/purchases?fields=loyaltyPoints,client.loyaltyPoints",
+                                HttpMethod.POST,
+                                entity,
+                                String.class);
+
+                assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+                JsonNode results = objectMapper.readTree(response.getBody()).get("results");
+                assertThat(results).hasSize(2);
+                assertThat(results.get(0).get("clientId").asLong()).isEqualTo(1L);
+                JsonNode purchase = results.get(0).get("purchase");
+                assertThat(purchase.properties())
+                                .extracting(Map.Entry::getKey)
+                                .containsExactly("client", "loyaltyPoints");
+                assertThat(purchase.get("loyaltyPoints").asLong()).isEqualTo(2L);
+                assertThat(purchase.get("client"))
+                                .isEqualTo(objectMapper.createObjectNode().put("loyaltyPoints", 102));
+                assertThat(results.get(1).get("errorCode").asInt()).isEqualTo(100);
+                assertThat(results.get(1).get("msg").asText()).isEqualTo("Client with ID 1000 not found");
+                verify(booksRepository).decrementStock(new long[] { 1L, 2L }, new long[] { 1L, 1L });
+                verify(clientsRepository).updateLoyaltyPoints(new long[] { 1L }, new long[] { 2L }, new long[] { 0L });
+        }
+
+        @Test
+        @Description("Test the batch purchase endpoint without orders")
+        public void testPurchaseBatchWithoutOrders() {
+                HttpEntity<BatchOrderDto> entity = new HttpEntity<>(new BatchOrderDto(Collections.emptyList()));
+                ResponseEntity<BookStoreError> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/clients/purchases",
+                                HttpMethod.POST,
+                                entity,
+                                BookStoreError.class);
+
+                assertThat(response.getStatusCode().is4xxClientError()).isTrue();
+                assertThat(response.getBody()).isEqualTo(new BookStoreError(105,
+                                "Book Store exception thrown: {orders=must not be empty}"));
+        }
+
+        @Test
+        @Description("Test a purchase sent again with the same idempotency key returns the first purchase without buying again")
+        public void testPurchaseBooksWithIdempotencyKey() {
+                List<String> isbnList = Arrays.asList("978-1-23456-789-0", "978-1-23456-789-1", "978-1-23456-789-2",
+                                "978-1-23456-789-3", "978-1-23456-789-4", "978-1-23456-789-5", "978-1-23456-789-6",
+                                "978-1-23456-789-7", "978-1-23456-789-8", "978-1-23456-789-9");
+
+                given(clientsRepository.findById(1L))
+                                .willReturn(java.util.Optional.of(ClientEntity.builder()
+                                                .id(1l)
+                                                .name("Mocked Client Name")
+                                                .email("mocked.email@example.com")
+                                                .phone("1234455678")
+                                                .address("street 123")
+                                                .loyaltyPoints(100L)
+                                                .build()));
+
+                given(booksRepository.findAllByIsbn(isbnList))
+                                .willReturn(getExistingBooks());
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.set("Idempotency-Key", UUID.randomUUID().toString());
+                HttpEntity<OrderDto> entity = new HttpEntity<>(new OrderDto(isbnList, Collections.emptyList()), headers);
+                ResponseEntity<PurchaseDto> first = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/clients/1/purchase",
+                                HttpMethod.POST,
+                                entity,
+                                PurchaseDto.class);
+                ResponseEntity<PurchaseDto> retry = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/clients/1/purchase",
+                                HttpMethod.POST,
+                                entity,
+                                PurchaseDto.class);
+
+                assertThat(first.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(retry.getStatusCode().is2xxSuccessful()).isTrue();
+                assertThat(retry.getBody()).isEqualTo(first.getBody());
+                verify(booksRepository, times(1)).decrementStock(any(), any());
+                verify(clientsRepository, times(1)).updateLoyaltyPoints(anyLong(), anyLong(), anyLong());
+
+                HttpEntity<OrderDto> otherOrder = new HttpEntity<>(
+                                new OrderDto(isbnList.subList(0, 2), Collections.emptyList()), headers);
+                ResponseEntity<BookStoreError> response = restTemplate.exchange(
+                                "http://localhost:" + port + "/bookstore/clients/1/purchase",
+                                HttpMethod.POST,
+                                otherOrder,
+                                BookStoreError.class);
+
+                assertThat(response.getStatusCode().is4xxClientError()).isTrue();
+                assertThat(response.getBody()).isEqualTo(new BookStoreError(108,
+                                "Book Store exception thrown: The idempotency key " + headers.getFirst("Idempotency-Key")
+                                                + " was used with a different order"));
+        }
+
 }
@@ -0,0 +1,276 @@
+package com.app.bookstore.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.dtos.OrderDto;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.exceptions.UnconfirmedPurchaseException;
+
+@SpringBootTest
+public class IdempotentPurchasesTest {
+
+    private static final OrderDto ORDER = new OrderDto(List.of("9780061120084"), Collections.emptyList());
+
+    @Test
+    @Description("A purchase sent again with the same key returns the outcome of the first one")
+    public void testRunOnce() {
+        IdempotentPurchases purchases = new IdempotentPurchases(16, 60000L, 10000L);
+        AtomicInteger runs = new AtomicInteger();
+
+        PurchaseEntity first = purchases.run(1L, "key", ORDER, () -> purchase(runs));
+        assertThat(purchases.run(1L, "key", ORDER, () -> purchase(runs))).isSameAs(first);
+        assertThat(runs).hasValue(1);
+
+        // The keys of different clients do not clash.
+        assertThat(purchases.run(2L, "key", ORDER, () -> purchase(runs))).isNotSameAs(first);
+        assertThat(runs).hasValue(2);
+
+        assertThatThrownBy(() -> purchases.run(1L, "key",
+                new OrderDto(List.of("9780743273565"), Collections.emptyList()), () -> purchase(runs)))
+                .isInstanceOf(PurchaseException.class)
+                .hasMessage("The idempotency key key was used with a different order")
+                .extracting("erroCode").isEqualTo(BookStoreErrorCodes.IDEMPOTENCY_KEY_REUSED.getErrorCode());
+        assertThatThrownBy(() -> purchases.run(1L, " ", ORDER, () -> purchase(runs)))
+                .isInstanceOf(PurchaseException.class)
+                .extracting("erroCode").isEqualTo(BookStoreErrorCodes.VALIDATION_ERROR.getErrorCode());
+    }
+
+    @Test
+    @Description("The errors of the store are kept, the other errors are forgotten so a retry runs the purchase again")
+    public void testRunFailed() {
+        IdempotentPurchases purchases = new IdempotentPurchases(16, 60000L, 10000L);
+        AtomicInteger runs = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> purchases.run(1L, "not-enough", ORDER, () -> {
+                runs.incrementAndGet();
+                throw new PurchaseException("Not enough quantity", BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode());
+            })).isInstanceOf(PurchaseException.class).hasMessage("Not enough quantity");
+        }
+        assertThat(runs).hasValue(1);
+
+        assertThatThrownBy(() -> purchases.run(1L, "down", ORDER, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("Database down");
+        })).isInstanceOf(IllegalStateException.class);
+        purchases.run(1L, "down", ORDER, () -> purchase(runs));
+        assertThat(runs).hasValue(3);
+
+        assertThatThrownBy(() -> purchases.run(1L, "error", ORDER, () -> {
+            runs.incrementAndGet();
+            throw new StackOverflowError();
+        })).isInstanceOf(StackOverflowError.class);
+        purchases.run(1L, "error", ORDER, () -> purchase(runs));
+        assertThat(runs).hasValue(5);
+    }
+
+    @Test
+    @Description("Concurrent duplicates wait for the purchase that is running instead of running it again")
+    public void testRunConcurrently() throws Exception {
+        IdempotentPurchases purchases = new IdempotentPurchases(16, 60000L, 10000L);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        int duplicates = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(duplicates + 1);
+        try {
+            Future<PurchaseEntity> first = executor.submit(() -> purchases.run(1L, "key", ORDER, () -> {
+                running.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return purchase(runs);
+            }));
+            running.await();
+
+            List<Future<PurchaseEntity>> results = new ArrayList<>();
+            for (int i = 0; i < duplicates; i++) {
+                results.add(executor.submit(() -> purchases.run(1L, "key", ORDER, () -> purchase(runs))));
+            }
+            finish.countDown();
+
+            for (Future<PurchaseEntity> result : results) {
+                assertThat(result.get()).isSameAs(first.get());
+            }
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Description("The outcomes are evicted once their time to live is over, and the oldest ones when there are too many")
+    public void testEviction() {
+        AtomicInteger runs = new AtomicInteger();
+        IdempotentPurchases expiring = new IdempotentPurchases(16, 0L, 10000L);
+        expiring.run(1L, "key", ORDER, () -> purchase(runs));
+        expiring.run(1L, "key", ORDER, () -> purchase(runs));
+        assertThat(runs).hasValue(2);
+        assertThat(expiring.evictExpired()).isEqualTo(1);
+        assertThat(expiring.size()).isZero();
+
+        IdempotentPurchases bounded = new IdempotentPurchases(2, 60000L, 10000L);
+        for (String key : List.of("a", "b", "c")) {
+            bounded.run(1L, key, ORDER, () -> purchase(runs));
+        }
+        assertThat(bounded.size()).isEqualTo(2);
+        assertThat(bounded.evictExpired()).isZero();
+
+        runs.set(0);
+        bounded.run(1L, "c", ORDER, () -> purchase(runs));
+        assertThat(runs).hasValue(0);
+        bounded.run(1L, "a", ORDER, () -> purchase(runs));
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    @Description("A duplicate waits for the purchase that is running for a limited time")
+    public void testRunConcurrentlyTimeout() throws Exception {
+        IdempotentPurchases purchases = new IdempotentPurchases(16, 60000L, 100L);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PurchaseEntity> first = executor.submit(() -> purchases.run(1L, "key", ORDER, () -> {
+                running.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return purchase(runs);
+            }));
+            running.await();
+
+            assertThatThrownBy(() -> purchases.run(1L, "key", ORDER, () -> purchase(runs)))
+                    .isInstanceOf(PurchaseException.class)
+                    .hasMessage("The purchase with the idempotency key key is still running")
+                    .extracting("erroCode").isEqualTo(BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode());
+            finish.countDown();
+
+            assertThat(purchases.run(1L, "key", ORDER, () -> purchase(runs))).isSameAs(first.get());
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Description("When there are too many outcomes, the oldest finished one is evicted even if an older purchase is running")
+    public void testEvictionWhileRunning() throws Exception {
+        IdempotentPurchases purchases = new IdempotentPurchases(2, 60000L, 10000L);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PurchaseEntity> first = executor.submit(() -> purchases.run(1L, "running", ORDER, () -> {
+                running.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return purchase(runs);
+            }));
+            running.await();
+
+            for (String key : List.of("a", "b", "c")) {
+                purchases.run(1L, key, ORDER, () -> purchase(runs));
+            }
+            assertThat(purchases.size()).isEqualTo(2);
+            finish.countDown();
+            first.get();
+
+            runs.set(0);
+            purchases.run(1L, "c", ORDER, () -> purchase(runs));
+            assertThat(runs).hasValue(0);
+            purchases.run(1L, "b", ORDER, () -> purchase(runs));
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Description("A purchase that was not applied in time is forgotten, so a retry runs it again")
+    public void testRunNotAppliedInTime() {
+        IdempotentPurchases purchases = new IdempotentPurchases(16, 60000L, 10000L);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThatThrownBy(() -> purchases.run(1L, "key", ORDER, () -> {
+            runs.incrementAndGet();
+            throw new PurchaseException("The purchase was not applied in time, nothing was bought",
+                    BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode());
+        })).isInstanceOf(PurchaseException.class);
+        assertThat(purchases.size()).isZero();
+
+        purchases.run(1L, "key", ORDER, () -> purchase(runs));
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    @Description("A purchase that was not confirmed in time gets the outcome the sequencer gives it later")
+    public void testRunUnconfirmed() {
+        IdempotentPurchases purchases = new IdempotentPurchases(16, 60000L, 100L);
+        AtomicInteger runs = new AtomicInteger();
+        CompletableFuture<PurchaseEntity> applied = new CompletableFuture<>();
+
+        assertThatThrownBy(() -> purchases.run(1L, "applied", ORDER, () -> unconfirmed(runs, applied)))
+                .isInstanceOf(UnconfirmedPurchaseException.class);
+        // The retry waits for the sequencer, it does not buy again.
+        assertThatThrownBy(() -> purchases.run(1L, "applied", ORDER, () -> purchase(runs)))
+                .isInstanceOf(PurchaseException.class)
+                .hasMessage("The purchase with the idempotency key applied is still running");
+        PurchaseEntity purchase = PurchaseEntity.builder().totalPrice(1000L).build();
+        applied.complete(purchase);
+        assertThat(purchases.run(1L, "applied", ORDER, () -> purchase(runs))).isSameAs(purchase);
+        assertThat(runs).hasValue(1);
+
+        CompletableFuture<PurchaseEntity> notEnough = new CompletableFuture<>();
+        assertThatThrownBy(() -> purchases.run(1L, "not-enough", ORDER, () -> unconfirmed(runs, notEnough)))
+                .isInstanceOf(UnconfirmedPurchaseException.class);
+        notEnough.completeExceptionally(
+                new PurchaseException("Not enough quantity", BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode()));
+        assertThatThrownBy(() -> purchases.run(1L, "not-enough", ORDER, () -> purchase(runs)))
+                .isInstanceOf(PurchaseException.class).hasMessage("Not enough quantity");
+        assertThat(runs).hasValue(2);
+
+        CompletableFuture<PurchaseEntity> failed = new CompletableFuture<>();
+        assertThatThrownBy(() -> purchases.run(1L, "failed", ORDER, () -> unconfirmed(runs, failed)))
+                .isInstanceOf(UnconfirmedPurchaseException.class);
+        failed.completeExceptionally(new IllegalStateException("The purchase sequencer is not running"));
+        purchases.run(1L, "failed", ORDER, () -> purchase(runs));
+        assertThat(runs).hasValue(4);
+    }
+
+    private PurchaseEntity unconfirmed(AtomicInteger runs, CompletableFuture<PurchaseEntity> purchase) {
+        runs.incrementAndGet();
+        throw new UnconfirmedPurchaseException("The purchase was not confirmed in time, it may have been applied",
+                BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode(), purchase);
+    }
+
+    private PurchaseEntity purchase(AtomicInteger runs) {
+        return PurchaseEntity.builder().totalPrice(1000L * runs.incrementAndGet()).build();
+    }
+}
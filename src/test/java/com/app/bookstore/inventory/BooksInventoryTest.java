@@ -0,0 +1,163 @@
+package com.app.bookstore.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.catalog.CatalogChangedEvent;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.repositories.BooksRepository;
+
+@SpringBootTest
+public class BooksInventoryTest {
+
+    @Test
+    @Description("The units of every book are taken, all of them or none")
+    public void testReserve() {
+        BooksInventory inventory = new BooksInventory(Mockito.mock(BooksRepository.class),
+                Mockito.mock(ApplicationEventPublisher.class), true);
+        long[] remaining = new long[2];
+
+        assertThat(inventory.available(1L)).isEqualTo(-1L);
+        assertThat(inventory.reserve(new long[] { 1L, 2L }, new long[] { 5L, 3L }, new long[] { 2L, 3L }, remaining))
+                .isEqualTo(-1);
+        assertThat(remaining).containsExactly(3L, 0L);
+
+        // The second book has no units left, the units of the first are given back.
+        assertThat(inventory.reserve(new long[] { 1L, 2L }, new long[] { 5L, 3L }, new long[] { 1L, 1L }, remaining))
+                .isEqualTo(1);
+        assertThat(inventory.available(1L)).isEqualTo(3L);
+        assertThat(inventory.available(2L)).isZero();
+
+        inventory.release(new long[] { 1L, 2L }, new long[] { 2L, 3L });
+        assertThat(inventory.available(1L)).isEqualTo(5L);
+        assertThat(inventory.available(2L)).isEqualTo(3L);
+    }
+
+    @Test
+    @Description("Concurrent purchases of the same book never take more units than the book has")
+    public void testReserveConcurrently() throws Exception {
+        BooksInventory inventory = new BooksInventory(Mockito.mock(BooksRepository.class),
+                Mockito.mock(ApplicationEventPublisher.class), true);
+        int purchases = 16;
+        int attempts = 1000;
+        long quantity = 5000L;
+        ExecutorService executor = Executors.newFixedThreadPool(purchases);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < purchases; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long taken = 0L;
+                    for (int attempt = 0; attempt < attempts; attempt++) {
+                        if (inventory.reserve(new long[] { 1L }, new long[] { quantity }, new long[] { 1L },
+                                new long[1]) < 0) {
+                            taken++;
+                        }
+                    }
+                    return taken;
+                }));
+            }
+            start.countDown();
+
+            long taken = 0L;
+            for (Future<Long> result : results) {
+                taken += result.get();
+            }
+
+            assertThat(taken).isEqualTo(quantity);
+            assertThat(inventory.available(1L)).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Description("The units sold are written to the database in a single batch, and again when it fails")
+    public void testFlush() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        BooksInventory inventory = new BooksInventory(booksRepository,
+                Mockito.mock(ApplicationEventPublisher.class), true);
+
+        inventory.flush();
+        verify(booksRepository, never()).applyStockChanges(Mockito.any(), Mockito.any());
+
+        inventory.reserve(new long[] { 1L, 2L }, new long[] { 5L, 3L }, new long[] { 2L, 1L }, new long[2]);
+        inventory.confirm(new long[] { 1L, 2L }, new long[] { 2L, 1L });
+        inventory.reserve(new long[] { 1L }, new long[] { 5L }, new long[] { 1L }, new long[1]);
+        inventory.confirm(new long[] { 1L }, new long[] { 1L });
+
+        doThrow(new IllegalStateException("Database down"))
+                .when(booksRepository).applyStockChanges(Mockito.any(), Mockito.any());
+        assertThatThrownBy(inventory::flush).isInstanceOf(IllegalStateException.class);
+
+        Mockito.reset(booksRepository);
+        inventory.flush();
+        verify(booksRepository).applyStockChanges(new long[] { 1L, 2L }, new long[] { 3L, 1L });
+
+        Mockito.reset(booksRepository);
+        inventory.flush();
+        verify(booksRepository, never()).applyStockChanges(Mockito.any(), Mockito.any());
+        assertThat(inventory.available(1L)).isEqualTo(2L);
+    }
+
+    @Test
+    @Description("The stock of a book is corrected only when the same difference with the database is found twice, "
+            + "and the correction is published to the catalog")
+    public void testReconcile() {
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        BooksInventory inventory = new BooksInventory(booksRepository, eventPublisher, true);
+
+        assertThat(inventory.reconcile()).isEmpty();
+
+        inventory.reserve(new long[] { 1L, 2L }, new long[] { 5L, 3L }, new long[] { 2L, 1L }, new long[2]);
+        inventory.confirm(new long[] { 1L, 2L }, new long[] { 2L, 1L });
+
+        // The units sold are not written yet, so the stock of the second book
+        // matches, and 4 units of the first book were added on the database.
+        when(booksRepository.findAllById(Mockito.anyIterable()))
+                .thenReturn(List.of(book(1L, 9L), book(2L, 3L)));
+        assertThat(inventory.reconcile()).isEmpty();
+        assertThat(inventory.available(1L)).isEqualTo(3L);
+
+        verify(eventPublisher, never()).publishEvent(Mockito.any(Object.class));
+
+        assertThat(inventory.reconcile()).containsExactly(Map.entry(1L, 4L));
+        assertThat(inventory.available(1L)).isEqualTo(7L);
+        assertThat(inventory.available(2L)).isEqualTo(2L);
+        ArgumentCaptor<CatalogChangedEvent> event = ArgumentCaptor.forClass(CatalogChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getSoldBooks()).containsExactly(Map.entry("isbn-1", -4L));
+
+        assertThat(inventory.reconcile()).isEmpty();
+        assertThat(inventory.available(1L)).isEqualTo(7L);
+    }
+
+    private BookEntity book(long id, long quantity) {
+        return BookEntity.builder()
+                .id(id)
+                .isbn("isbn-" + id)
+                .quantity(quantity)
+                .build();
+    }
+}
@@ -0,0 +1,179 @@
+package com.app.bookstore.mappers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.dtos.BookDto;
+import com.app.bookstore.dtos.BookSummaryDto;
+import com.app.bookstore.dtos.BooksDto;
+import com.app.bookstore.dtos.BooksPageDto;
+import com.app.bookstore.dtos.FacetedBooksDto;
+import com.app.bookstore.dtos.PurchaseDto;
+import com.app.bookstore.dtos.RankedBooksDto;
+import com.app.bookstore.dtos.SuggestionsDto;
+import com.app.bookstore.entities.BookDetailEntity;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.BookSummaryEntity;
+import com.app.bookstore.entities.BooksEntity;
+import com.app.bookstore.entities.BooksPageEntity;
+import com.app.bookstore.entities.ClientEntity;
+import com.app.bookstore.entities.FacetCountEntity;
+import com.app.bookstore.entities.FacetedBooksEntity;
+import com.app.bookstore.entities.FacetsEntity;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.entities.RankedBooksEntity;
+import com.app.bookstore.entities.SuggestionEntity;
+import com.app.bookstore.entities.SuggestionsEntity;
+import com.app.bookstore.types.BookType;
+import com.app.bookstore.types.SuggestionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The generated mapper replaced a ModelMapper without configuration. Every
+ * mapping is written to JSON with both of them and the JSON must be the same.
+ */
+@SpringBootTest
+public class BookStoreMapperTest {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+
+    @Autowired
+    private BookStoreMapper bookStoreMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @Description("The books of the catalog, the search and the details are mapped as ModelMapper did")
+    public void testBooksParity() throws Exception {
+        BooksEntity books = BooksEntity.builder()
+                .books(getBooks())
+                .catalogVersion(3L)
+                .catalogETag("\"1-3\"")
+                .build();
+
+        assertSameJson(bookStoreMapper.toDto(books), modelMapper.map(books, BooksDto.class));
+        assertSameJson(bookStoreMapper.toDto(new BooksEntity()), modelMapper.map(new BooksEntity(), BooksDto.class));
+        assertSameJson(bookStoreMapper.toDto(BooksEntity.builder().books(List.of()).build()),
+                modelMapper.map(BooksEntity.builder().books(List.of()).build(), BooksDto.class));
+
+        for (BookEntity book : getBooks()) {
+            BookDetailEntity detail = new BookDetailEntity(book.getTitle(), book.getQuantity(), book.getType(),
+                    book.getPrice(), book.getAuthor(), book.getPublisher(), book.getIsbn(), book.getDescription(),
+                    book.getPublicationYear());
+            assertSameJson(bookStoreMapper.toDto(book), modelMapper.map(book, BookDto.class));
+            assertSameJson(bookStoreMapper.toDto(detail), modelMapper.map(detail, BookDto.class));
+        }
+    }
+
+    @Test
+    @Description("The pages, the ranked and the filtered books and the suggestions are mapped as ModelMapper did")
+    public void testListingsParity() throws Exception {
+        List<BookSummaryEntity> summaries = new ArrayList<>();
+        for (BookEntity book : getBooks()) {
+            summaries.add(new BookSummaryEntity(book.getId(), book.getTitle(), book.getQuantity(), book.getType(),
+                    book.getPrice(), book.getAuthor(), book.getPublisher(), book.getIsbn(),
+                    book.getPublicationYear()));
+        }
+        BooksPageEntity page = new BooksPageEntity(summaries, "cursor");
+        assertSameJson(bookStoreMapper.toDto(page), modelMapper.map(page, BooksPageDto.class));
+        assertSameJson(bookStoreMapper.toDto(summaries.get(0)), modelMapper.map(summaries.get(0), BookSummaryDto.class));
+
+        RankedBooksEntity ranked = new RankedBooksEntity(getBooks(), 1, 2, 7);
+        assertSameJson(bookStoreMapper.toDto(ranked), modelMapper.map(ranked, RankedBooksDto.class));
+
+        FacetsEntity facets = new FacetsEntity(
+                List.of(new FacetCountEntity("REGULAR", 2), new FacetCountEntity("NEW_RELEASE", 0)),
+                List.of(new FacetCountEntity("1950", 1)),
+                List.of(new FacetCountEntity("0-999", 1), new FacetCountEntity("1000+", 2)),
+                List.of(new FacetCountEntity("inStock", 2), new FacetCountEntity("sold", 1)));
+        FacetedBooksEntity faceted = new FacetedBooksEntity(getBooks(), 0, 20, 3, facets);
+        assertSameJson(bookStoreMapper.toDto(faceted), modelMapper.map(faceted, FacetedBooksDto.class));
+
+        SuggestionsEntity suggestions = new SuggestionsEntity(List.of(
+                new SuggestionEntity("The Hobbit", SuggestionType.TITLE, 5L),
+                new SuggestionEntity("J.R.R. Tolkien", SuggestionType.AUTHOR, 8L)));
+        assertSameJson(bookStoreMapper.toDto(suggestions), modelMapper.map(suggestions, SuggestionsDto.class));
+    }
+
+    @Test
+    @Description("The purchase, with its client, its books and its date, is mapped as ModelMapper did")
+    public void testPurchaseParity() throws Exception {
+        ClientEntity client = ClientEntity.builder()
+                .id(1L)
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .phone("1234567890")
+                .address("123 Main St")
+                .loyaltyPoints(120L)
+                .build();
+
+        // The dates without seconds and with fractions of a second are the
+        // ones where the formats of a date differ.
+        for (LocalDateTime purchaseDate : List.of(
+                LocalDateTime.of(2025, 5, 1, 10, 15, 30),
+                LocalDateTime.of(2025, 5, 1, 10, 15),
+                LocalDateTime.of(2025, 5, 1, 10, 15, 30, 100_000_000),
+                LocalDateTime.of(2025, 5, 1, 10, 15, 30, 123_456_000))) {
+            PurchaseEntity purchase = PurchaseEntity.builder()
+                    .client(client)
+                    .books(getBooks())
+                    .loyaltyPoints(3L)
+                    .totalPrice(4523L)
+                    .purchaseDate(purchaseDate)
+                    .build();
+            assertSameJson(bookStoreMapper.toDto(purchase), modelMapper.map(purchase, PurchaseDto.class));
+        }
+
+        PurchaseEntity empty = PurchaseEntity.builder().books(List.of()).build();
+        assertSameJson(bookStoreMapper.toDto(empty), modelMapper.map(empty, PurchaseDto.class));
+    }
+
+    private void assertSameJson(Object mapped, Object expected) throws Exception {
+        assertThat(objectMapper.writeValueAsString(mapped)).isEqualTo(objectMapper.writeValueAsString(expected));
+    }
+
+    private List<BookEntity> getBooks() {
+        List<BookEntity> books = new ArrayList<>();
+        books.add(BookEntity.builder()
+                .id(1L)
+                .title("The Hobbit")
+                .quantity(5L)
+                .type(BookType.REGULAR)
+                .price(1499L)
+                .author("J.R.R. Tolkien")
+                .publisher("Houghton Mifflin")
+                .isbn("9780547928227")
+                .description("A fantasy novel about the journey of Bilbo Baggins.")
+                .publicationYear(1937)
+                .build());
+        books.add(BookEntity.builder()
+                .id(2L)
+                .title("Dune")
+                .quantity(0L)
+                .type(BookType.NEW_RELEASE)
+                .price(999L)
+                .author("Frank Herbert")
+                .isbn("9780441013593")
+                .sold(true)
+                .build());
+        books.add(BookEntity.builder()
+                .id(3L)
+                .title("Moby Dick")
+                .type(BookType.OLD_EDITIONS)
+                .isbn("9781503280786")
+                .publicationYear(1851)
+                .build());
+        books.add(new BookEntity());
+        return books;
+    }
+}
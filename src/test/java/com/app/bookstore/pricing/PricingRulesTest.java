@@ -0,0 +1,113 @@
+package com.app.bookstore.pricing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import com.app.bookstore.types.BookType;
+
+@SpringBootTest
+public class PricingRulesTest {
+
+    @TempDir
+    Path rulesDirectory;
+
+    @Test
+    @Description("The default rules are the discounts of every type of book")
+    public void testDefaultRules() {
+        PricingTable rules = new PricingRules(new ClassPathResource("pricing-rules.properties")).current();
+
+        assertThat(rules.getVersion()).isEqualTo(1L);
+        assertThat(rules.basisPoints(BookType.NEW_RELEASE, 1)).isEqualTo(10000);
+        assertThat(rules.basisPoints(BookType.NEW_RELEASE, 10)).isEqualTo(10000);
+        assertThat(rules.basisPoints(BookType.REGULAR, 2)).isEqualTo(10000);
+        assertThat(rules.basisPoints(BookType.REGULAR, 3)).isEqualTo(9000);
+        assertThat(rules.basisPoints(BookType.OLD_EDITIONS, 2)).isEqualTo(8000);
+        assertThat(rules.basisPoints(BookType.OLD_EDITIONS, 3)).isEqualTo(7500);
+        assertThat(rules.deductsFreeBooks(BookType.NEW_RELEASE)).isFalse();
+        assertThat(rules.deductsFreeBooks(BookType.REGULAR)).isTrue();
+        assertThat(rules.deductsFreeBooks(BookType.OLD_EDITIONS)).isTrue();
+
+        assertThat(rules.price(BookType.REGULAR, 350L, 2998L, 5000)).isEqualTo(944370L);
+        assertThat(rules.price(BookType.OLD_EDITIONS, 250L, 1L, 2)).isEqualTo(200L);
+        assertThat(rules.price(BookType.OLD_EDITIONS, 333L, 1L, 3)).isEqualTo(249L);
+    }
+
+    @Test
+    @Description("The price is computed in basis points, without the rounding errors of a double")
+    public void testPriceIsExact() throws Exception {
+        PricingTable rules = PricingTable.parse(1L, properties("REGULAR.basis-points=0:2900"));
+
+        // 100 * 0.29 is 28.999999999999996 as a double.
+        assertThat(rules.price(BookType.REGULAR, 100L, 1L, 1)).isEqualTo(29L);
+        assertThat(rules.hasRule(BookType.REGULAR)).isTrue();
+        assertThat(rules.hasRule(BookType.NEW_RELEASE)).isFalse();
+        assertThat(rules.hasRule(null)).isFalse();
+        assertThatThrownBy(() -> rules.price(BookType.REGULAR, Long.MAX_VALUE, 2L, 1))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    @Description("The tiers must start at 0 lines and be sorted")
+    public void testInvalidRules() {
+        assertThatThrownBy(() -> PricingTable.parse(1L, properties("REGULAR.basis-points=3:9000")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PricingTable.parse(1L, properties("REGULAR.basis-points=0:10000,3:9000,3:8000")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PricingTable.parse(1L, properties("REGULAR.basis-points=0-10000")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PricingTable.parse(1L, properties("REGULAR.basis-points=0:-1")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Description("The rules are read again when the file is modified and invalid rules are rejected")
+    public void testRulesAreReloaded() throws Exception {
+        Path file = rulesDirectory.resolve("pricing-rules.properties");
+        Files.writeString(file, "REGULAR.basis-points=0:10000,3:9000\n");
+        PricingRules pricingRules = new PricingRules(new FileSystemResource(file));
+
+        PricingTable first = pricingRules.current();
+        pricingRules.refresh();
+        assertThat(pricingRules.current()).isSameAs(first);
+
+        // Every write gets a later time, two writes in the same millisecond
+        // would not be seen as a change.
+        long modified = file.toFile().lastModified();
+        Files.writeString(file, "REGULAR.basis-points=0:10000,2:8500\n");
+        file.toFile().setLastModified(modified += 1000);
+        pricingRules.refresh();
+
+        PricingTable second = pricingRules.current();
+        assertThat(second.getVersion()).isEqualTo(2L);
+        assertThat(second.basisPoints(BookType.REGULAR, 2)).isEqualTo(8500);
+        assertThat(first.basisPoints(BookType.REGULAR, 2)).isEqualTo(10000);
+
+        Files.writeString(file, "REGULAR.basis-points=0:ten\n");
+        file.toFile().setLastModified(modified += 1000);
+        assertThatThrownBy(pricingRules::refresh).isInstanceOf(IllegalArgumentException.class);
+        assertThat(pricingRules.current()).isSameAs(second);
+    }
+
+    private Properties properties(String rules) {
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(rules));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,114 @@
+package com.app.bookstore.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.entities.BookEntity;
+
+@SpringBootTest
+public class BooksRepositoryTest {
+
+    @Autowired
+    private BooksRepository booksRepository;
+
+    @Test
+    @Description("The stock is taken only when there are enough units, the last units sell the book")
+    public void testDecrementStock() {
+        BookEntity book = booksRepository.findById(4L).orElseThrow();
+        try {
+            assertThat(booksRepository.decrementStock(new long[] { 4L }, new long[] { book.getQuantity() + 1 }))
+                    .containsExactly(0);
+            assertThat(booksRepository.decrementStock(new long[] { 4L }, new long[] { 1L })).containsExactly(1);
+            assertThat(booksRepository.findById(4L).orElseThrow())
+                    .extracting(BookEntity::getQuantity, BookEntity::isSold)
+                    .containsExactly(book.getQuantity() - 1, false);
+
+            assertThat(booksRepository.decrementStock(new long[] { 4L }, new long[] { book.getQuantity() - 1 }))
+                    .containsExactly(1);
+            assertThat(booksRepository.findById(4L).orElseThrow())
+                    .extracting(BookEntity::getQuantity, BookEntity::isSold)
+                    .containsExactly(0L, true);
+            assertThat(booksRepository.decrementStock(new long[] { 4L }, new long[] { 1L })).containsExactly(0);
+        } finally {
+            booksRepository.save(book);
+        }
+    }
+
+    @Test
+    @Description("The stock of several books is taken with one batch, every book reports its own result")
+    public void testDecrementStockBatch() {
+        BookEntity first = booksRepository.findById(1L).orElseThrow();
+        BookEntity second = booksRepository.findById(2L).orElseThrow();
+        try {
+            assertThat(booksRepository.decrementStock(new long[] { 1L, 2L },
+                    new long[] { 1L, second.getQuantity() + 1 })).containsExactly(1, 0);
+            assertThat(booksRepository.findById(1L).orElseThrow().getQuantity()).isEqualTo(first.getQuantity() - 1);
+            assertThat(booksRepository.findById(2L).orElseThrow().getQuantity()).isEqualTo(second.getQuantity());
+        } finally {
+            booksRepository.save(first);
+            booksRepository.save(second);
+        }
+    }
+
+    @Test
+    @Description("The units sold in memory are written in one batch, the books without stock are sold")
+    public void testApplyStockChanges() {
+        BookEntity first = booksRepository.findById(1L).orElseThrow();
+        BookEntity second = booksRepository.findById(2L).orElseThrow();
+        try {
+            booksRepository.applyStockChanges(new long[] { 1L, 2L }, new long[] { 1L, second.getQuantity() });
+            assertThat(booksRepository.findById(1L).orElseThrow())
+                    .extracting(BookEntity::getQuantity, BookEntity::isSold)
+                    .containsExactly(first.getQuantity() - 1, false);
+            assertThat(booksRepository.findById(2L).orElseThrow())
+                    .extracting(BookEntity::getQuantity, BookEntity::isSold)
+                    .containsExactly(0L, true);
+        } finally {
+            booksRepository.save(first);
+            booksRepository.save(second);
+        }
+    }
+
+    @Test
+    @Description("Concurrent purchases of the last units never sell more units than the stock")
+    public void testDecrementStockConcurrently() throws Exception {
+        BookEntity book = booksRepository.findById(3L).orElseThrow();
+        int buyers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(buyers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < buyers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return booksRepository.decrementStock(new long[] { 3L }, new long[] { 1L })[0];
+                }));
+            }
+            start.countDown();
+
+            int sold = 0;
+            for (Future<Integer> result : results) {
+                sold += result.get();
+            }
+
+            assertThat((long) sold).isEqualTo(book.getQuantity());
+            assertThat(booksRepository.findById(3L).orElseThrow())
+                    .extracting(BookEntity::getQuantity, BookEntity::isSold)
+                    .containsExactly(0L, true);
+        } finally {
+            executor.shutdownNow();
+            booksRepository.save(book);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.app.bookstore.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.entities.ClientEntity;
+
+@SpringBootTest
+public class ClientsRepositoryTest {
+
+    @Autowired
+    private ClientsRepository clientsRepository;
+
+    @Test
+    @Description("The points are updated only when the client has the points required")
+    public void testUpdateLoyaltyPoints() {
+        ClientEntity client = clientsRepository.findById(1L).orElseThrow();
+        try {
+            assertThat(clientsRepository.updateLoyaltyPoints(1L, 5L, 0L)).isEqualTo(1);
+            assertThat(clientsRepository.findById(1L).orElseThrow().getLoyaltyPoints())
+                    .isEqualTo(client.getLoyaltyPoints() + 5);
+
+            assertThat(clientsRepository.updateLoyaltyPoints(1L, -100L, client.getLoyaltyPoints() + 6)).isZero();
+            assertThat(clientsRepository.updateLoyaltyPoints(1L, -20L, client.getLoyaltyPoints() + 5)).isEqualTo(1);
+            assertThat(clientsRepository.findById(1L).orElseThrow().getLoyaltyPoints())
+                    .isEqualTo(client.getLoyaltyPoints() - 15);
+            assertThat(clientsRepository.updateLoyaltyPoints(1000L, 5L, 0L)).isZero();
+        } finally {
+            clientsRepository.save(client);
+        }
+    }
+
+    @Test
+    @Description("Concurrent purchases of the same client never spend more points than the client has")
+    public void testUpdateLoyaltyPointsConcurrently() throws Exception {
+        ClientEntity client = clientsRepository.findById(2L).orElseThrow();
+        int purchases = 16;
+        long points = 50L;
+        ExecutorService executor = Executors.newFixedThreadPool(purchases);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < purchases; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return clientsRepository.updateLoyaltyPoints(2L, -points, points);
+                }));
+            }
+            start.countDown();
+
+            int updated = 0;
+            for (Future<Integer> result : results) {
+                updated += result.get();
+            }
+
+            assertThat((long) updated).isEqualTo(client.getLoyaltyPoints() / points);
+            assertThat(clientsRepository.findById(2L).orElseThrow().getLoyaltyPoints())
+                    .isEqualTo(client.getLoyaltyPoints() % points);
+        } finally {
+            executor.shutdownNow();
+            clientsRepository.save(client);
+        }
+    }
+
+    @Test
+    @Description("The points of many purchases are updated in one batch, in the order of the arrays")
+    public void testUpdateLoyaltyPointsBatch() {
+        ClientEntity first = clientsRepository.findById(3L).orElseThrow();
+        ClientEntity second = clientsRepository.findById(4L).orElseThrow();
+        try {
+            // The second update of the first client needs the points left by
+            // the first one.
+            assertThat(clientsRepository.updateLoyaltyPoints(new long[] { 3L, 3L, 4L, 1000L },
+                    new long[] { -first.getLoyaltyPoints(), -10L, 5L, 5L },
+                    new long[] { first.getLoyaltyPoints(), 10L, 0L, 0L }))
+                    .containsExactly(1, 0, 1, 0);
+            assertThat(clientsRepository.findById(3L).orElseThrow().getLoyaltyPoints()).isZero();
+            assertThat(clientsRepository.findById(4L).orElseThrow().getLoyaltyPoints())
+                    .isEqualTo(second.getLoyaltyPoints() + 5);
+        } finally {
+            clientsRepository.save(first);
+            clientsRepository.save(second);
+        }
+    }
+}
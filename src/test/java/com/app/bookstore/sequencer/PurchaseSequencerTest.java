@@ -0,0 +1,525 @@
+package com.app.bookstore.sequencer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.ClientEntity;
+import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.entities.PendingPurchaseEntity;
+import com.app.bookstore.entities.PurchaseEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.exceptions.UnconfirmedPurchaseException;
+import com.app.bookstore.inventory.BooksInventory;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.repositories.ClientsRepository;
+import com.app.bookstore.services.PurchaseService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest
+public class PurchaseSequencerTest {
+
+    @Autowired
+    private PurchaseService purchaseService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private BooksRepository booksRepository;
+
+    @Autowired
+    private ClientsRepository clientsRepository;
+
+    @Autowired
+    private BooksInventory booksInventory;
+
+    @Autowired
+    private PurchaseSequencer purchaseSequencer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @Description("The size of the ring must be a power of two")
+    public void testRingSize() {
+        assertThatThrownBy(() -> new PurchaseSequencer(null, null, null, new SimpleMeterRegistry(), true, 1000, 1, 0L, 10_000L))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The size of the ring must be a power of two: 1000");
+        assertThatThrownBy(() -> new PurchaseSequencer(null, null, null, new SimpleMeterRegistry(), true, 0, 1, 0L, 10_000L))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PurchaseSequencer(null, null, null, new SimpleMeterRegistry(), true, 8, 0, 0L, 10_000L))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Wrong batch of purchases, size 0 and window 0");
+    }
+
+    @Test
+    @Description("The group commit is enabled by default, the purchases of the application are applied by the sequencer")
+    public void testGroupCommitByDefault() {
+        ClientEntity client = clientsRepository.findById(4L).orElseThrow();
+        BookEntity book = booksRepository.findById(6L).orElseThrow();
+        Counter applied = meterRegistry.get("bookstore.purchases.sequenced").tag("result", "applied").counter();
+        double before = applied.count();
+        try {
+            assertThat(purchaseSequencer.isEnabled()).isTrue();
+            PurchaseEntity purchase = purchaseSequencer.run(OrderEntity.builder()
+                    .clientId(4L)
+                    .purchasedBook(List.of(book.getIsbn()))
+                    .freeBooks(Collections.emptyList())
+                    .build());
+
+            assertThat(purchase.getClient().getLoyaltyPoints()).isEqualTo(client.getLoyaltyPoints() + 1);
+            assertThat(applied.count()).isEqualTo(before + 1);
+        } finally {
+            booksInventory.flush();
+            clientsRepository.save(client);
+            booksRepository.save(book);
+            // The database wins once the difference is found twice.
+            booksInventory.reconcile();
+            booksInventory.reconcile();
+        }
+    }
+
+    @Test
+    @Description("The purchases are applied by the sequencer thread in the order they were put")
+    public void testPurchasesAppliedInOrder() throws Exception {
+        PurchaseService purchaseService = Mockito.mock(PurchaseService.class);
+        List<Long> applied = Collections.synchronizedList(new ArrayList<>());
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        when(purchaseService.apply(Mockito.any())).thenAnswer(invocation -> {
+            PendingPurchaseEntity pending = invocation.getArgument(0);
+            applied.add(pending.getUsedLoyaltyPoints());
+            threads.add(Thread.currentThread().getName());
+            return pending.getPurchase();
+        });
+        PurchaseSequencer sequencer = sequencer(purchaseService, 4, 1);
+        sequencer.start();
+        try {
+            List<Future<PurchaseEntity>> results = new ArrayList<>();
+            for (long i = 0; i < 10; i++) {
+                results.add(sequencer.submit(pending(i)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get().getTotalPrice()).isEqualTo(i);
+            }
+            assertThat(applied).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+            assertThat(threads).containsOnly("purchase-sequencer");
+        } finally {
+            sequencer.stop();
+        }
+    }
+
+    @Test
+    @Description("A purchase that fails is returned to its thread, the next ones are applied")
+    public void testPurchaseFails() throws Exception {
+        PurchaseService purchaseService = Mockito.mock(PurchaseService.class);
+        OrderEntity order = OrderEntity.builder().clientId(1L).build();
+        when(purchaseService.prepare(order)).thenReturn(pending(1L));
+        when(purchaseService.apply(Mockito.any()))
+                .thenThrow(new PurchaseException("Not enough quantity for book with ISBN 978-1-23456-789-2",
+                        BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode()))
+                .thenAnswer(invocation -> ((PendingPurchaseEntity) invocation.getArgument(0)).getPurchase());
+        PurchaseSequencer sequencer = sequencer(purchaseService, 4, 1);
+        sequencer.start();
+        try {
+            assertThatThrownBy(() -> sequencer.run(order))
+                .isInstanceOf(PurchaseException.class)
+                .hasMessage("Not enough quantity for book with ISBN 978-1-23456-789-2");
+            assertThat(sequencer.run(order).getTotalPrice()).isEqualTo(1L);
+        } finally {
+            sequencer.stop();
+        }
+    }
+
+    @Test
+    @Description("Concurrent purchases on a ring smaller than them are all applied once, by a single thread")
+    public void testConcurrentPurchases() throws Exception {
+        PurchaseService purchaseService = Mockito.mock(PurchaseService.class);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        when(purchaseService.apply(Mockito.any())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return ((PendingPurchaseEntity) invocation.getArgument(0)).getPurchase();
+        });
+        PurchaseSequencer sequencer = sequencer(purchaseService, 8, 4);
+        sequencer.start();
+
+        int clients = 16;
+        int purchases = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                long client = i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long total = 0L;
+                    for (int purchase = 0; purchase < purchases; purchase++) {
+                        total += sequencer.submit(pending(client)).get().getTotalPrice();
+                    }
+                    return total;
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < clients; i++) {
+                assertThat(results.get(i).get()).isEqualTo(i * (long) purchases);
+            }
+            verify(purchaseService, times(clients * purchases)).apply(Mockito.any());
+            assertThat(threads).containsExactly("purchase-sequencer");
+        } finally {
+            executor.shutdownNow();
+            sequencer.stop();
+        }
+    }
+
+    @Test
+    @Description("The purchases that arrive within the window are applied in a single transaction, up to the size of the batch")
+    public void testPurchasesBatched() throws Exception {
+        PurchaseService purchaseService = Mockito.mock(PurchaseService.class);
+        when(purchaseService.apply(Mockito.any()))
+                .thenAnswer(invocation -> ((PendingPurchaseEntity) invocation.getArgument(0)).getPurchase());
+        doThrow(new PurchaseException("Not enough loyalty points to receive the free books",
+                BookStoreErrorCodes.NOT_ENOUGH_LOYALTY_POINTS.getErrorCode()))
+                .when(purchaseService).apply(Mockito.argThat(pending -> pending.getUsedLoyaltyPoints() == 2L));
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Connection connection = Mockito.mock(Connection.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // The window is long enough for all the purchases to arrive.
+        PurchaseSequencer sequencer = new PurchaseSequencer(purchaseService, transactionManager,
+                dataSource(connection), meterRegistry, true, 16, 4, 1_000_000L, 10_000L);
+        sequencer.start();
+        try {
+            List<Future<PurchaseEntity>> results = new ArrayList<>();
+            for (long i = 0; i < 8; i++) {
+                results.add(sequencer.submit(pending(i)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                if (i == 2) {
+                    assertThatThrownBy(results.get(i)::get).hasCauseInstanceOf(PurchaseException.class);
+                } else {
+                    assertThat(results.get(i).get().getTotalPrice()).isEqualTo(i);
+                }
+            }
+            // A transaction for every batch and a savepoint for every purchase.
+            verify(transactionManager, times(2)).getTransaction(Mockito.any());
+            verify(transactionManager, times(2)).commit(Mockito.any());
+            verify(connection, times(8)).setSavepoint();
+            verify(connection, times(7)).releaseSavepoint(Mockito.any());
+            verify(connection, times(1)).rollback(Mockito.any());
+            assertThat(meterRegistry.get("bookstore.purchases.batch.size").summary().count()).isEqualTo(2L);
+            assertThat(meterRegistry.get("bookstore.purchases.batch.size").summary().totalAmount()).isEqualTo(8.0);
+            assertThat(meterRegistry.get("bookstore.purchases.sequenced").tag("result", "applied").counter().count())
+                    .isEqualTo(7.0);
+            assertThat(meterRegistry.get("bookstore.purchases.sequenced").tag("result", "rolled-back").counter()
+                    .count()).isEqualTo(1.0);
+        } finally {
+            sequencer.stop();
+        }
+    }
+
+    @Test
+    @Description("A purchase of a batch that fails on the database is rolled back to its savepoint, the others are committed")
+    public void testPurchaseRolledBackToSavepoint() throws Exception {
+        ClientEntity client = clientsRepository.findById(4L).orElseThrow();
+        BookEntity book = booksRepository.findById(6L).orElseThrow();
+        PurchaseSequencer sequencer = new PurchaseSequencer(purchaseService, transactionManager, dataSource,
+                new SimpleMeterRegistry(), true, 16, 2, 1_000_000L, 10_000L);
+        sequencer.start();
+        try {
+            // Both orders are checked with the 10 points of the client, only
+            // the first one can use them.
+            clientsRepository.save(client.toBuilder().loyaltyPoints(10L).build());
+            OrderEntity order = OrderEntity.builder()
+                    .clientId(4L)
+                    .purchasedBook(List.of(book.getIsbn()))
+                    .freeBooks(List.of(book.getIsbn()))
+                    .build();
+            PendingPurchaseEntity first = purchaseService.prepare(order);
+            PendingPurchaseEntity second = purchaseService.prepare(order);
+
+            Future<PurchaseEntity> firstResult = sequencer.submit(first);
+            Future<PurchaseEntity> secondResult = sequencer.submit(second);
+
+            assertThat(firstResult.get().getClient().getLoyaltyPoints()).isZero();
+            assertThatThrownBy(secondResult::get)
+                .hasCauseInstanceOf(PurchaseException.class)
+                .hasMessageContaining("Not enough loyalty points to receive the free books");
+            assertThat(clientsRepository.findById(4L).orElseThrow().getLoyaltyPoints()).isZero();
+            assertThat(booksInventory.available(6L)).isEqualTo(book.getQuantity() - 1);
+            booksInventory.flush();
+            assertThat(booksRepository.findById(6L).orElseThrow().getQuantity()).isEqualTo(book.getQuantity() - 1);
+        } finally {
+            sequencer.stop();
+            clientsRepository.save(client);
+            booksRepository.save(book);
+            // The database wins once the difference is found twice.
+            booksInventory.reconcile();
+            booksInventory.reconcile();
+        }
+    }
+
+    @Test
+    @Description("A purchase of a batch that fails with a database error is rolled back to its savepoint, the others are committed")
+    public void testPurchaseDatabaseErrorRolledBackToSavepoint() throws Exception {
+        ClientEntity client = clientsRepository.findById(4L).orElseThrow();
+        BookEntity book = booksRepository.findById(6L).orElseThrow();
+        PurchaseSequencer sequencer = new PurchaseSequencer(purchaseService, transactionManager, dataSource,
+                new SimpleMeterRegistry(), true, 16, 2, 1_000_000L, 10_000L);
+        sequencer.start();
+        try {
+            clientsRepository.save(client.toBuilder().loyaltyPoints(10L).build());
+            OrderEntity order = OrderEntity.builder()
+                    .clientId(4L)
+                    .purchasedBook(List.of(book.getIsbn()))
+                    .freeBooks(Collections.emptyList())
+                    .build();
+            PendingPurchaseEntity first = purchaseService.prepare(order);
+            // The points of the client overflow, the database rejects the update.
+            PendingPurchaseEntity second = purchaseService.prepare(order);
+            second.getPurchase().setLoyaltyPoints(Long.MAX_VALUE);
+
+            Future<PurchaseEntity> firstResult = sequencer.submit(first);
+            Future<PurchaseEntity> secondResult = sequencer.submit(second);
+
+            assertThat(firstResult.get().getClient().getLoyaltyPoints()).isEqualTo(11L);
+            assertThatThrownBy(secondResult::get).hasCauseInstanceOf(DataAccessException.class);
+            assertThat(clientsRepository.findById(4L).orElseThrow().getLoyaltyPoints()).isEqualTo(11L);
+            assertThat(booksInventory.available(6L)).isEqualTo(book.getQuantity() - 1);
+        } finally {
+            sequencer.stop();
+            booksInventory.flush();
+            clientsRepository.save(client);
+            booksRepository.save(book);
+            // The database wins once the difference is found twice.
+            booksInventory.reconcile();
+            booksInventory.reconcile();
+        }
+    }
+
+    @Test
+    @Description("When the commit of a batch fails all its purchases fail")
+    public void testBatchCommitFails() throws Exception {
+        PurchaseService purchaseService = Mockito.mock(PurchaseService.class);
+        when(purchaseService.apply(Mockito.any()))
+                .thenAnswer(invocation -> ((PendingPurchaseEntity) invocation.getArgument(0)).getPurchase());
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        doThrow(new TransactionSystemException("Could not commit"))
+                .when(transactionManager).commit(Mockito.any());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PurchaseSequencer sequencer = new PurchaseSequencer(purchaseService, transactionManager,
+                dataSource(Mockito.mock(Connection.class)), meterRegistry, true, 16, 2, 1_000_000L, 10_000L);
+        sequencer.start();
+        try {
+            Future<PurchaseEntity> first = sequencer.submit(pending(1L));
+            Future<PurchaseEntity> second = sequencer.submit(pending(2L));
+
+            assertThatThrownBy(first::get).hasCauseInstanceOf(TransactionSystemException.class);
+            assertThatThrownBy(second::get).hasCauseInstanceOf(TransactionSystemException.class);
+            assertThat(meterRegistry.get("bookstore.purchases.batch.failed").counter().count()).isEqualTo(1.0);
+        } finally {
+            sequencer.stop();
+        }
+    }
+
+    @Test
+    @Description("An error that is not an exception fails the purchases of its batch, the sequencer goes on with the next ones")
+    public void testBatchError() throws Exception {
+        PurchaseService purchaseService = Mockito.mock(PurchaseService.class);
+        when(purchaseService.apply(Mockito.any()))
+                .thenThrow(new StackOverflowError())
+                .thenAnswer(invocation -> ((PendingPurchaseEntity) invocation.getArgument(0)).getPurchase());
+        PurchaseSequencer sequencer = sequencer(purchaseService, 4, 1);
+        sequencer.start();
+        try {
+            assertThatThrownBy(() -> sequencer.submit(pending(1L)).get())
+                    .hasCauseInstanceOf(StackOverflowError.class);
+            assertThat(sequencer.submit(pending(2L)).get().getTotalPrice()).isEqualTo(2L);
+        } finally {
+            sequencer.stop();
+        }
+    }
+
+    @Test
+    @Description("A purchase that is not taken by the sequencer in time fails and is never applied")
+    public void testPurchaseTimeout() throws Exception {
+        PurchaseService purchaseService = Mockito.mock(PurchaseService.class);
+        OrderEntity order = OrderEntity.builder().clientId(2L).build();
+        PendingPurchaseEntity late = pending(2L);
+        when(purchaseService.prepare(order)).thenReturn(late);
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        when(purchaseService.apply(Mockito.any())).thenAnswer(invocation -> {
+            applying.countDown();
+            finish.await();
+            return ((PendingPurchaseEntity) invocation.getArgument(0)).getPurchase();
+        });
+        PurchaseSequencer sequencer = new PurchaseSequencer(purchaseService,
+                Mockito.mock(PlatformTransactionManager.class), dataSource(Mockito.mock(Connection.class)),
+                new SimpleMeterRegistry(), true, 4, 1, 0L, 100L);
+        sequencer.start();
+        try {
+            // The sequencer is busy with the first purchase.
+            Future<PurchaseEntity> first = sequencer.submit(pending(1L));
+            applying.await();
+
+            assertThatThrownBy(() -> sequencer.run(order))
+                    .isInstanceOf(PurchaseException.class)
+                    .hasMessage("The purchase was not applied in time, nothing was bought")
+                    .extracting("erroCode").isEqualTo(BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode());
+
+            finish.countDown();
+            assertThat(first.get().getTotalPrice()).isEqualTo(1L);
+            assertThat(sequencer.submit(pending(3L)).get().getTotalPrice()).isEqualTo(3L);
+            verify(purchaseService, Mockito.never()).apply(late);
+        } finally {
+            finish.countDown();
+            sequencer.stop();
+        }
+    }
+
+    @Test
+    @Description("A purchase taken by the sequencer that is not confirmed in time fails with the handle of its purchase")
+    public void testPurchaseUnconfirmed() throws Exception {
+        PurchaseService purchaseService = Mockito.mock(PurchaseService.class);
+        OrderEntity order = OrderEntity.builder().clientId(1L).build();
+        when(purchaseService.prepare(order)).thenReturn(pending(1L));
+        CountDownLatch finish = new CountDownLatch(1);
+        when(purchaseService.apply(Mockito.any())).thenAnswer(invocation -> {
+            finish.await();
+            return ((PendingPurchaseEntity) invocation.getArgument(0)).getPurchase();
+        });
+        PurchaseSequencer sequencer = new PurchaseSequencer(purchaseService,
+                Mockito.mock(PlatformTransactionManager.class), dataSource(Mockito.mock(Connection.class)),
+                new SimpleMeterRegistry(), true, 4, 1, 0L, 100L);
+        sequencer.start();
+        try {
+            UnconfirmedPurchaseException unconfirmed = catchThrowableOfType(UnconfirmedPurchaseException.class,
+                    () -> sequencer.run(order));
+            assertThat(unconfirmed)
+                    .hasMessage("The purchase was not confirmed in time, it may have been applied")
+                    .extracting("erroCode").isEqualTo(BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode());
+
+            finish.countDown();
+            assertThat(unconfirmed.getPurchase().get().getTotalPrice()).isEqualTo(1L);
+        } finally {
+            finish.countDown();
+            sequencer.stop();
+        }
+    }
+
+    @Test
+    @Description("A purchase that finds the ring full waits for a slot only until its timeout, and the ring goes on")
+    public void testRingFullTimeout() throws Exception {
+        PurchaseService purchaseService = Mockito.mock(PurchaseService.class);
+        OrderEntity order = OrderEntity.builder().clientId(3L).build();
+        PendingPurchaseEntity late = pending(3L);
+        when(purchaseService.prepare(order)).thenReturn(late);
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        when(purchaseService.apply(Mockito.any())).thenAnswer(invocation -> {
+            applying.countDown();
+            finish.await();
+            return ((PendingPurchaseEntity) invocation.getArgument(0)).getPurchase();
+        });
+        PurchaseSequencer sequencer = new PurchaseSequencer(purchaseService,
+                Mockito.mock(PlatformTransactionManager.class), dataSource(Mockito.mock(Connection.class)),
+                new SimpleMeterRegistry(), true, 1, 1, 0L, 100L);
+        sequencer.start();
+        try {
+            // The sequencer is busy with the first purchase and the second one
+            // takes the only slot of the ring.
+            Future<PurchaseEntity> first = sequencer.submit(pending(1L));
+            applying.await();
+            Future<PurchaseEntity> second = sequencer.submit(pending(2L));
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> sequencer.run(order))
+                    .isInstanceOf(PurchaseException.class)
+                    .hasMessage("The purchase was not applied in time, nothing was bought")
+                    .extracting("erroCode").isEqualTo(BookStoreErrorCodes.PURCHASE_TIMEOUT.getErrorCode());
+            assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+
+            finish.countDown();
+            assertThat(first.get().getTotalPrice()).isEqualTo(1L);
+            assertThat(second.get().getTotalPrice()).isEqualTo(2L);
+            assertThat(sequencer.submit(pending(4L)).get().getTotalPrice()).isEqualTo(4L);
+            verify(purchaseService, Mockito.never()).apply(late);
+        } finally {
+            finish.countDown();
+            sequencer.stop();
+        }
+    }
+
+    @Test
+    @Description("The purchases are not accepted while the sequencer is not running")
+    public void testNotRunning() throws Exception {
+        PurchaseSequencer sequencer = new PurchaseSequencer(Mockito.mock(PurchaseService.class),
+                Mockito.mock(PlatformTransactionManager.class), dataSource(Mockito.mock(Connection.class)),
+                new SimpleMeterRegistry(), false, 4, 1, 0L, 10_000L);
+        sequencer.start();
+
+        assertThat(sequencer.isEnabled()).isFalse();
+        assertThatThrownBy(() -> sequencer.submit(pending(1L)))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("The purchase sequencer is not running");
+    }
+
+    private PurchaseSequencer sequencer(PurchaseService purchaseService, int ringSize, int batchSize)
+            throws SQLException {
+        return new PurchaseSequencer(purchaseService, Mockito.mock(PlatformTransactionManager.class),
+                dataSource(Mockito.mock(Connection.class)), new SimpleMeterRegistry(), true, ringSize, batchSize, 0L, 10_000L);
+    }
+
+    private DataSource dataSource(Connection connection) throws SQLException {
+        DataSource dataSource = Mockito.mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    // The total price identifies the purchase.
+    private PendingPurchaseEntity pending(long id) {
+        return PendingPurchaseEntity.builder()
+                .usedLoyaltyPoints(id)
+                .purchase(PurchaseEntity.builder().totalPrice(id).build())
+                .build();
+    }
+}
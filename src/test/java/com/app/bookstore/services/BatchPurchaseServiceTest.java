@@ -0,0 +1,261 @@
+package com.app.bookstore.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Description;
+import org.springframework.core.io.ClassPathResource;
+
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.entities.BatchOrderEntity;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.ClientEntity;
+import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.entities.PurchaseResultEntity;
+import com.app.bookstore.exceptions.BookStoreErrorCodes;
+import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.inventory.BooksInventory;
+import com.app.bookstore.pricing.PricingRules;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.repositories.ClientsRepository;
+import com.app.bookstore.types.BookType;
+
+@SpringBootTest
+public class BatchPurchaseServiceTest {
+
+    private static final String OLD_EDITION = "978-1-23456-789-2";
+    private static final String REGULAR = "978-1-23456-789-4";
+
+    @Test
+    @Description("The orders are served in the order of the batch, every order is purchased or fails on its own")
+    public void testPurchaseBatch() {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        BatchPurchaseService service = getService(clientsRepository, booksRepository, false);
+        stubRepositories(clientsRepository, booksRepository);
+        when(booksRepository.decrementStock(Mockito.any(), Mockito.any()))
+                .thenAnswer(BatchPurchaseServiceTest::updated);
+        when(clientsRepository.updateLoyaltyPoints(Mockito.any(long[].class), Mockito.any(), Mockito.any()))
+                .thenAnswer(BatchPurchaseServiceTest::updated);
+
+        List<PurchaseResultEntity> results = service.run(getBatch()).getResults();
+
+        assertThat(results).extracting(PurchaseResultEntity::getErrorCode).containsExactly(
+                null,
+                BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode(),
+                BookStoreErrorCodes.CLIENT_NOT_FOUND.getErrorCode(),
+                BookStoreErrorCodes.NOT_ENOUGH_LOYALTY_POINTS.getErrorCode(),
+                null);
+        assertThat(results).extracting(PurchaseResultEntity::getClientId).containsExactly(1L, 2L, 3L, 2L, 1L);
+        assertThat(results.get(1).getMsg()).isEqualTo("Not enough quantity for book with ISBN " + REGULAR);
+
+        // The second purchase of the client sees the points and the units
+        // left by the first one.
+        assertThat(results.get(0).getPurchase().getLoyaltyPoints()).isEqualTo(2L);
+        assertThat(results.get(0).getPurchase().getClient().getLoyaltyPoints()).isEqualTo(102L);
+        assertThat(results.get(0).getPurchase().getBooks())
+                .extracting(BookEntity::getIsbn, BookEntity::getQuantity)
+                .containsExactly(tuple(OLD_EDITION, 1L), tuple(REGULAR, 0L));
+        assertThat(results.get(4).getPurchase().getClient().getLoyaltyPoints()).isEqualTo(103L);
+        assertThat(results.get(4).getPurchase().getBooks())
+                .extracting(BookEntity::getQuantity)
+                .containsExactly(0L);
+
+        // One query for the clients and one for the books, one batch for the
+        // stock in the order of the ISBNs and one for the points.
+        verify(clientsRepository).findAllById(Set.of(1L, 2L, 3L));
+        verify(booksRepository).findAllByIsbn(List.of(OLD_EDITION, REGULAR));
+        verify(booksRepository).decrementStock(new long[] { 3L, 3L, 5L }, new long[] { 1L, 1L, 1L });
+        verify(clientsRepository).updateLoyaltyPoints(new long[] { 1L, 1L }, new long[] { 2L, 1L },
+                new long[] { 0L, 0L });
+        verify(booksRepository, never()).applyStockChanges(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @Description("The units taken by an order whose stock or points are taken meanwhile are given back")
+    public void testPurchaseBatchGivesBackStock() {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        BatchPurchaseService service = getService(clientsRepository, booksRepository, false);
+        stubRepositories(clientsRepository, booksRepository);
+        // The last unit of the regular book and the points of the client were
+        // taken by other purchases.
+        when(booksRepository.decrementStock(Mockito.any(), Mockito.any())).thenReturn(new int[] { 1, 1, 0 });
+        when(clientsRepository.updateLoyaltyPoints(Mockito.any(long[].class), Mockito.any(), Mockito.any()))
+                .thenReturn(new int[] { 0 });
+
+        List<PurchaseResultEntity> results = service.run(getBatch()).getResults();
+
+        assertThat(results.get(0).getErrorCode()).isEqualTo(BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode());
+        assertThat(results.get(4).getErrorCode())
+                .isEqualTo(BookStoreErrorCodes.NOT_ENOUGH_LOYALTY_POINTS.getErrorCode());
+        verify(clientsRepository).updateLoyaltyPoints(new long[] { 1L }, new long[] { 1L }, new long[] { 0L });
+        verify(booksRepository).applyStockChanges(new long[] { 3L, 3L }, new long[] { -1L, -1L });
+    }
+
+    @Test
+    @Description("The orders take the units of the in-memory inventory, and give them back when they fail")
+    public void testPurchaseBatchWithInventory() {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        BooksInventory inventory = new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class),
+                true);
+        BatchPurchaseService service = getService(clientsRepository, booksRepository, inventory);
+        stubRepositories(clientsRepository, booksRepository);
+        when(clientsRepository.updateLoyaltyPoints(Mockito.any(long[].class), Mockito.any(), Mockito.any()))
+                .thenReturn(new int[] { 1, 0 });
+
+        List<PurchaseResultEntity> results = service.run(getBatch()).getResults();
+
+        assertThat(results).extracting(PurchaseResultEntity::getErrorCode).containsExactly(
+                null,
+                BookStoreErrorCodes.NOT_ENOUGH_BOOKS.getErrorCode(),
+                BookStoreErrorCodes.CLIENT_NOT_FOUND.getErrorCode(),
+                BookStoreErrorCodes.NOT_ENOUGH_LOYALTY_POINTS.getErrorCode(),
+                BookStoreErrorCodes.NOT_ENOUGH_LOYALTY_POINTS.getErrorCode());
+        assertThat(inventory.available(3L)).isEqualTo(1L);
+        assertThat(inventory.available(5L)).isZero();
+        verify(booksRepository, never()).decrementStock(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @Description("An order without the points left by the orders before it takes no units, so a later order of the same book is purchased")
+    public void testPurchaseBatchPointsBeforeStock() {
+        for (boolean inventoryEnabled : new boolean[] { false, true }) {
+            ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+            BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+            BatchPurchaseService service = getService(clientsRepository, booksRepository, inventoryEnabled);
+            stubRepositories(clientsRepository, booksRepository);
+            when(clientsRepository.findAllById(Mockito.anyIterable())).thenReturn(List.of(
+                    ClientEntity.builder().id(1L).name("John Doe").loyaltyPoints(10L).build(),
+                    ClientEntity.builder().id(2L).name("Jane Doe").loyaltyPoints(0L).build()));
+            when(booksRepository.decrementStock(Mockito.any(), Mockito.any()))
+                    .thenAnswer(BatchPurchaseServiceTest::updated);
+            when(clientsRepository.updateLoyaltyPoints(Mockito.any(long[].class), Mockito.any(), Mockito.any()))
+                    .thenAnswer(BatchPurchaseServiceTest::updated);
+
+            // The first order spends 9 of the 10 points of the client, so the
+            // second one cannot take the free book, and the last unit of the
+            // regular book is left for the third one.
+            List<PurchaseResultEntity> results = service.run(new BatchOrderEntity(List.of(
+                    OrderEntity.builder()
+                            .clientId(1L)
+                            .purchasedBook(List.of(OLD_EDITION, OLD_EDITION))
+                            .freeBooks(List.of(OLD_EDITION))
+                            .build(),
+                    OrderEntity.builder()
+                            .clientId(1L)
+                            .purchasedBook(List.of(REGULAR))
+                            .freeBooks(List.of(REGULAR))
+                            .build(),
+                    order(2L, List.of(REGULAR))))).getResults();
+
+            assertThat(results).extracting(PurchaseResultEntity::getErrorCode).containsExactly(
+                    null,
+                    BookStoreErrorCodes.NOT_ENOUGH_LOYALTY_POINTS.getErrorCode(),
+                    null);
+            assertThat(results.get(0).getPurchase().getClient().getLoyaltyPoints()).isEqualTo(1L);
+            assertThat(results.get(2).getPurchase().getBooks())
+                    .extracting(BookEntity::getQuantity)
+                    .containsExactly(0L);
+        }
+    }
+
+    @Test
+    @Description("A batch without orders or with too many orders is not valid")
+    public void testPurchaseBatchNotValid() {
+        BatchPurchaseService service = new BatchPurchaseService(null, null, null, null, null, null, null, 2);
+
+        assertThatThrownBy(() -> service.run(new BatchOrderEntity(Collections.emptyList())))
+                .isInstanceOf(PurchaseException.class)
+                .hasMessage("The list of orders cannot be null or empty");
+        assertThatThrownBy(() -> service.run(new BatchOrderEntity(List.of(order(1L, List.of(REGULAR)),
+                order(1L, List.of(REGULAR)), order(1L, List.of(REGULAR))))))
+                .isInstanceOf(PurchaseException.class)
+                .hasMessage("The list of orders cannot have more than 2 orders");
+    }
+
+    private static int[] updated(InvocationOnMock invocation) {
+        int[] updated = new int[invocation.<long[]>getArgument(0).length];
+        Arrays.fill(updated, 1);
+        return updated;
+    }
+
+    private BatchPurchaseService getService(ClientsRepository clientsRepository, BooksRepository booksRepository,
+            boolean inventoryEnabled) {
+        return getService(clientsRepository, booksRepository,
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), inventoryEnabled));
+    }
+
+    private BatchPurchaseService getService(ClientsRepository clientsRepository, BooksRepository booksRepository,
+            BooksInventory inventory) {
+        PricingRules pricingRules = new PricingRules(new ClassPathResource("pricing-rules.properties"));
+        ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        PurchaseService purchaseService = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), pricingRules, inventory,
+                eventPublisher);
+        return new BatchPurchaseService(purchaseService, clientsRepository, booksRepository,
+                new NormalizeOrderService(), pricingRules, inventory, eventPublisher, 500);
+    }
+
+    private void stubRepositories(ClientsRepository clientsRepository, BooksRepository booksRepository) {
+        when(clientsRepository.findAllById(Mockito.anyIterable())).thenReturn(List.of(
+                ClientEntity.builder().id(1L).name("John Doe").loyaltyPoints(100L).build(),
+                ClientEntity.builder().id(2L).name("Jane Doe").loyaltyPoints(5L).build()));
+        when(booksRepository.findAllByIsbn(Mockito.anyList())).thenReturn(List.of(
+                BookEntity.builder()
+                        .id(3l)
+                        .title("Old Edition Book")
+                        .quantity(2l)
+                        .type(BookType.OLD_EDITIONS)
+                        .price(200L)
+                        .isbn(OLD_EDITION)
+                        .build(),
+                BookEntity.builder()
+                        .id(5l)
+                        .title("Another Regular Book")
+                        .quantity(1l)
+                        .type(BookType.REGULAR)
+                        .price(350L)
+                        .isbn(REGULAR)
+                        .build()));
+    }
+
+    // The first order takes the last unit of the regular book, so the second
+    // one fails. The third client does not exist and the fourth order needs
+    // more points than the client has.
+    private BatchOrderEntity getBatch() {
+        return new BatchOrderEntity(List.of(
+                order(1L, List.of(OLD_EDITION, REGULAR)),
+                order(2L, List.of(REGULAR)),
+                order(3L, List.of(OLD_EDITION)),
+                OrderEntity.builder()
+                        .clientId(2L)
+                        .purchasedBook(List.of(OLD_EDITION))
+                        .freeBooks(List.of(OLD_EDITION))
+                        .build(),
+                order(1L, List.of(OLD_EDITION))));
+    }
+
+    private OrderEntity order(Long clientId, List<String> isbns) {
+        return OrderEntity.builder()
+                .clientId(clientId)
+                .purchasedBook(isbns)
+                .freeBooks(Collections.emptyList())
+                .build();
+    }
+}
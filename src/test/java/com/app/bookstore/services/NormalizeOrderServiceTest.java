@@ -0,0 +1,61 @@
+package com.app.bookstore.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+
+import com.app.bookstore.entities.NormalizedOrderEntity;
+import com.app.bookstore.entities.OrderEntity;
+
+@SpringBootTest
+public class NormalizeOrderServiceTest {
+
+    @Test
+    @Description("Sanity test")
+    public void sanity() {
+        assertThat(new NormalizeOrderService()).isNotNull();
+    }
+
+    @Test
+    @Description("The units of every ISBN are counted in the order the ISBNs appear for the first time")
+    public void testNormalizeOrder() {
+        NormalizeOrderService service = new NormalizeOrderService();
+
+        NormalizedOrderEntity order = service.run(OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of(
+                        "978-1-23456-789-4",
+                        "978-1-23456-789-2",
+                        "978-1-23456-789-4",
+                        "978-1-23456-789-0",
+                        "978-1-23456-789-4"))
+                .freeBooks(List.of("978-1-23456-789-2"))
+                .build());
+
+        assertThat(order.getClientId()).isEqualTo(1L);
+        assertThat(order.getPurchasedBooks()).hasSize(5);
+        assertThat(order.getPurchasedUnits()).containsExactly(
+                entry("978-1-23456-789-4", 3L),
+                entry("978-1-23456-789-2", 1L),
+                entry("978-1-23456-789-0", 1L));
+        assertThat(order.getFreeUnits()).containsExactly(entry("978-1-23456-789-2", 1L));
+        assertThat(order.purchased("978-1-23456-789-4")).isEqualTo(3L);
+        assertThat(order.free("978-1-23456-789-4")).isZero();
+    }
+
+    @Test
+    @Description("An order without lists of books has no units")
+    public void testNormalizeOrderWithoutBooks() {
+        NormalizedOrderEntity order = new NormalizeOrderService().run(OrderEntity.builder().clientId(1L).build());
+
+        assertThat(order.getPurchasedBooks()).isEmpty();
+        assertThat(order.getFreeBooks()).isEmpty();
+        assertThat(order.getPurchasedUnits()).isEmpty();
+        assertThat(order.getFreeUnits()).isEmpty();
+    }
+}
@@ -2,22 +2,35 @@ package com.app.bookstore.services;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Description;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.app.bookstore.catalog.BooksCatalog;
 import com.app.bookstore.entities.BookEntity;
 import com.app.bookstore.entities.ClientEntity;
 import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.entities.PendingPurchaseEntity;
 import com.app.bookstore.entities.PurchaseEntity;
 import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.inventory.BooksInventory;
+import com.app.bookstore.pricing.PricingRules;
 import com.app.bookstore.repositories.BooksRepository;
 import com.app.bookstore.repositories.ClientsRepository;
 import com.app.bookstore.types.BookType;
@@ -28,7 +41,7 @@ public class PurchaseServiceTest {
     @Test
     @Description("Sanity test")
     public void sanity() {
-        assertThat(new PurchaseService(null, null)).isNotNull();
+        assertThat(new PurchaseService(null, null, null, null, null, null, null)).isNotNull();
     }
 
     @Test
@@ -36,7 +49,10 @@ public class PurchaseServiceTest {
     public void testPurchaseServiceWithNullOrder() {
         ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
         BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
-        PurchaseService service = new PurchaseService(clientsRepository, booksRepository);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), false),
+                Mockito.mock(ApplicationEventPublisher.class));
 
         when(clientsRepository.findById(Mockito.any()))
                 .thenReturn(Optional.of(ClientEntity.builder()
@@ -47,6 +63,10 @@ public class PurchaseServiceTest {
 
         when(booksRepository.findAllByIsbn(Mockito.anyList())).thenReturn(getRepositoryBooks());
 
+        when(booksRepository.decrementStock(Mockito.any(), Mockito.any())).thenAnswer(PurchaseServiceTest::stockTaken);
+        when(clientsRepository.updateLoyaltyPoints(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenReturn(1);
+
         OrderEntity order = OrderEntity.builder()
                 .clientId(1L)
                 .purchasedBook(List.of(
@@ -83,6 +103,7 @@ public class PurchaseServiceTest {
                                 .totalPrice(2650L)
                                 .purchaseDate(null)
                                 .build());
+        verify(clientsRepository).updateLoyaltyPoints(1L, -45L, 60L);
     }
 
     @Test
@@ -90,7 +111,10 @@ public class PurchaseServiceTest {
     public void testPurchaseOrderNotEnoughBooks () {
         ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
         BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
-        PurchaseService service = new PurchaseService(clientsRepository, booksRepository);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), false),
+                Mockito.mock(ApplicationEventPublisher.class));
 
         when(clientsRepository.findById(Mockito.any()))
                 .thenReturn(Optional.of(ClientEntity.builder()
@@ -121,7 +145,10 @@ public class PurchaseServiceTest {
     public void testPurchaseOrderWithLess3Book () {
         ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
         BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
-        PurchaseService service = new PurchaseService(clientsRepository, booksRepository);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), false),
+                Mockito.mock(ApplicationEventPublisher.class));
 
         when(clientsRepository.findById(Mockito.any()))
                 .thenReturn(Optional.of(ClientEntity.builder()
@@ -132,6 +159,58 @@ public class PurchaseServiceTest {
 
         when(booksRepository.findAllByIsbn(Mockito.anyList())).thenReturn(getSmallRepository());
 
+        when(booksRepository.decrementStock(Mockito.any(), Mockito.any())).thenAnswer(PurchaseServiceTest::stockTaken);
+        when(clientsRepository.updateLoyaltyPoints(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenReturn(1);
+
+        OrderEntity order = OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of(
+                        "978-1-23456-789-2",
+                        "978-1-23456-789-4"))
+                .freeBooks(Collections.emptyList())
+                .build();
+
+        assertThat(service.run(order)).usingRecursiveComparison()
+                .ignoringFields("purchaseDate", "books.sold")
+                .isEqualTo(
+                        PurchaseEntity.builder()
+                                .client(ClientEntity.builder()
+                                        .id(1L)
+                                        .name("John Doe")
+                                        .loyaltyPoints(102L)
+                                        .build())
+                                .books(getSmallOrder())
+                                .loyaltyPoints(2L)
+                                .totalPrice(510L)
+                                .purchaseDate(null)
+                                .build());
+    }
+
+    @Test
+    @Description("Perchuse service resolves the books with the catalog and reads them by id")
+    public void testPurchaseOrderResolvesBooksWithCatalog () {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), false),
+                Mockito.mock(ApplicationEventPublisher.class));
+
+        when(clientsRepository.findById(Mockito.any()))
+                .thenReturn(Optional.of(ClientEntity.builder()
+                        .id(1L)
+                        .name("John Doe")
+                        .loyaltyPoints(100L)
+                        .build()));
+
+        when(booksRepository.findAllAvailableBooks()).thenReturn(getSmallRepository());
+        when(booksRepository.findAllById(Set.of(3L, 5L))).thenReturn(getSmallRepository());
+
+        when(booksRepository.decrementStock(Mockito.any(), Mockito.any())).thenAnswer(PurchaseServiceTest::stockTaken);
+        when(clientsRepository.updateLoyaltyPoints(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenReturn(1);
+
         OrderEntity order = OrderEntity.builder()
                 .clientId(1L)
                 .purchasedBook(List.of(
@@ -154,6 +233,285 @@ public class PurchaseServiceTest {
                                 .totalPrice(510L)
                                 .purchaseDate(null)
                                 .build());
+        verify(booksRepository, never()).findAllByIsbn(Mockito.anyList());
+    }
+
+    @Test
+    @Description("Perchuse service with an order with thousands of lines of the same books")
+    public void testPurchaseOrderWithRepeatedBooks () {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), false),
+                Mockito.mock(ApplicationEventPublisher.class));
+
+        when(clientsRepository.findById(Mockito.any()))
+                .thenReturn(Optional.of(ClientEntity.builder()
+                        .id(1L)
+                        .name("John Doe")
+                        .loyaltyPoints(100L)
+                        .build()));
+
+        List<BookEntity> repositoryBooks = List.of(
+                BookEntity.builder()
+                        .id(5l)
+                        .title("Another Regular Book")
+                        .quantity(10000l)
+                        .type(BookType.REGULAR)
+                        .price(350L)
+                        .isbn("978-1-23456-789-4")
+                        .build(),
+                BookEntity.builder()
+                        .id(3l)
+                        .title("Old Edition Book")
+                        .quantity(10000l)
+                        .type(BookType.OLD_EDITIONS)
+                        .price(200L)
+                        .isbn("978-1-23456-789-2")
+                        .build());
+        // Every ISBN is searched once although it is repeated on the order.
+        when(booksRepository.findAllByIsbn(List.of("978-1-23456-789-4", "978-1-23456-789-2")))
+                .thenReturn(repositoryBooks);
+
+        List<String> purchasedBooks = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            purchasedBooks.add(i % 5 < 3 ? "978-1-23456-789-4" : "978-1-23456-789-2");
+        }
+        when(booksRepository.decrementStock(Mockito.any(), Mockito.any())).thenAnswer(PurchaseServiceTest::stockTaken);
+        when(clientsRepository.updateLoyaltyPoints(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenReturn(1);
+
+        OrderEntity order = OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(purchasedBooks)
+                .freeBooks(List.of("978-1-23456-789-4", "978-1-23456-789-4"))
+                .build();
+
+        PurchaseEntity purchase = service.run(order);
+
+        // 2998 regular books with 10% discount and 2000 old editions with 25%.
+        assertThat(purchase.getTotalPrice()).isEqualTo(1244370L);
+        assertThat(purchase.getLoyaltyPoints()).isEqualTo(4998L);
+        assertThat(purchase.getClient().getLoyaltyPoints()).isEqualTo(5078L);
+        assertThat(purchase.getBooks()).extracting(BookEntity::getQuantity).containsExactly(7000L, 8000L);
+        // The rows are updated in the order of their ISBN.
+        verify(booksRepository).decrementStock(new long[] { 3L, 5L }, new long[] { 2000L, 3000L });
+    }
+
+    @Test
+    @Description("Perchuse service lists the ISBNs that do not exist as they were sent")
+    public void testPurchaseOrderWithNonExistingBooks () {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), false),
+                Mockito.mock(ApplicationEventPublisher.class));
+
+        when(clientsRepository.findById(Mockito.any()))
+                .thenReturn(Optional.of(ClientEntity.builder()
+                        .id(1L)
+                        .name("John Doe")
+                        .loyaltyPoints(100L)
+                        .build()));
+
+        when(booksRepository.findAllByIsbn(Mockito.anyList())).thenReturn(getSmallRepository());
+
+        OrderEntity order = OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of(
+                        "978-0-00000-000-1",
+                        "978-1-23456-789-2",
+                        "978-0-00000-000-1",
+                        "978-0-00000-000-2"))
+                .build();
+
+        assertThatThrownBy(() -> service.run(order))
+            .isInstanceOf(PurchaseException.class)
+            .hasMessage("Book with ISBN [978-0-00000-000-1, 978-0-00000-000-1, 978-0-00000-000-2] does not exist");
+    }
+
+    @Test
+    @Description("Perchuse service fails when the stock was taken by another purchase after the books were read")
+    public void testPurchaseOrderStockTakenMeanwhile () {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), false),
+                Mockito.mock(ApplicationEventPublisher.class));
+
+        when(clientsRepository.findById(Mockito.any()))
+                .thenReturn(Optional.of(ClientEntity.builder()
+                        .id(1L)
+                        .name("John Doe")
+                        .loyaltyPoints(100L)
+                        .build()));
+
+        List<BookEntity> repositoryBooks = getSmallRepository();
+        when(booksRepository.findAllByIsbn(Mockito.anyList())).thenReturn(repositoryBooks);
+        // The old edition still has its 2 units on the database, the regular
+        // book was sold meanwhile.
+        when(booksRepository.decrementStock(new long[] { 3L, 5L }, new long[] { 1L, 1L }))
+                .thenReturn(new int[] { 1, 0 });
+
+        OrderEntity order = OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of(
+                        "978-1-23456-789-2",
+                        "978-1-23456-789-4"))
+                .freeBooks(Collections.emptyList())
+                .build();
+
+        assertThatThrownBy(() -> service.run(order))
+            .isInstanceOf(PurchaseException.class)
+            .hasMessage("Not enough quantity for book with ISBN 978-1-23456-789-4");
+        assertThat(repositoryBooks).extracting(BookEntity::getQuantity).containsExactly(2L, 1L);
+        verify(booksRepository, never()).saveAll(Mockito.anyList());
+        verify(clientsRepository, never()).save(Mockito.any());
+    }
+
+    @Test
+    @Description("Perchuse service fails when the loyalty points were used by another purchase after the client was read")
+    public void testPurchaseOrderLoyaltyPointsUsedMeanwhile () {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), false),
+                Mockito.mock(ApplicationEventPublisher.class));
+
+        when(clientsRepository.findById(Mockito.any()))
+                .thenReturn(Optional.of(ClientEntity.builder()
+                        .id(1L)
+                        .name("John Doe")
+                        .loyaltyPoints(10L)
+                        .build()));
+
+        when(booksRepository.findAllByIsbn(Mockito.anyList())).thenReturn(getSmallRepository());
+        when(booksRepository.decrementStock(Mockito.any(), Mockito.any())).thenAnswer(PurchaseServiceTest::stockTaken);
+        // The client had 10 points when it was read, they are not on the
+        // database anymore.
+        when(clientsRepository.updateLoyaltyPoints(1L, -9L, 10L)).thenReturn(0);
+
+        OrderEntity order = OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of(
+                        "978-1-23456-789-2",
+                        "978-1-23456-789-4"))
+                .freeBooks(List.of("978-1-23456-789-4"))
+                .build();
+
+        assertThatThrownBy(() -> service.run(order))
+            .isInstanceOf(PurchaseException.class)
+            .hasMessage("Not enough loyalty points to receive the free books");
+        verify(clientsRepository, never()).save(Mockito.any());
+    }
+
+    @Test
+    @Description("Perchuse service takes the stock from the inventory in memory and writes it to the database behind")
+    public void testPurchaseOrderWithInventory () {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        BooksInventory booksInventory = new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), true);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                booksInventory, Mockito.mock(ApplicationEventPublisher.class));
+
+        when(clientsRepository.findById(Mockito.any()))
+                .thenReturn(Optional.of(ClientEntity.builder()
+                        .id(1L)
+                        .name("John Doe")
+                        .loyaltyPoints(100L)
+                        .build()));
+        when(clientsRepository.updateLoyaltyPoints(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenReturn(1);
+        // The database is written behind, so it still has the 2 units of the
+        // old edition when the second purchase reads it.
+        when(booksRepository.findAllByIsbn(Mockito.anyList())).thenAnswer(invocation -> getSmallRepository());
+
+        OrderEntity order = OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of(
+                        "978-1-23456-789-2",
+                        "978-1-23456-789-2"))
+                .freeBooks(Collections.emptyList())
+                .build();
+
+        assertThat(service.run(order).getBooks())
+                .filteredOn(book -> book.getId() == 3L)
+                .extracting(BookEntity::getQuantity)
+                .containsExactly(0L);
+        assertThatThrownBy(() -> service.run(order))
+            .isInstanceOf(PurchaseException.class)
+            .hasMessage("Not enough quantity for book with ISBN 978-1-23456-789-2");
+        verify(booksRepository, never()).decrementStock(Mockito.any(), Mockito.any());
+
+        booksInventory.flush();
+        verify(booksRepository).applyStockChanges(new long[] { 3L }, new long[] { 2L });
+    }
+
+    @Test
+    @Description("Preparing a purchase prices it without taking the stock or the loyalty points")
+    public void testPrepareAndApplyPurchase () {
+        ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+        BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+        PurchaseService service = new PurchaseService(clientsRepository, booksRepository,
+                new BooksCatalog(booksRepository), new NormalizeOrderService(), getPricingRules(),
+                new BooksInventory(booksRepository, Mockito.mock(ApplicationEventPublisher.class), false),
+                Mockito.mock(ApplicationEventPublisher.class));
+
+        when(clientsRepository.findById(Mockito.any()))
+                .thenReturn(Optional.of(ClientEntity.builder()
+                        .id(1L)
+                        .name("John Doe")
+                        .loyaltyPoints(100L)
+                        .build()));
+        when(clientsRepository.updateLoyaltyPoints(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenReturn(1);
+        when(booksRepository.findAllByIsbn(Mockito.anyList())).thenReturn(getSmallRepository());
+        when(booksRepository.decrementStock(Mockito.any(), Mockito.any())).thenAnswer(PurchaseServiceTest::stockTaken);
+
+        PendingPurchaseEntity pending = service.prepare(OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of(
+                        "978-1-23456-789-2",
+                        "978-1-23456-789-4"))
+                .freeBooks(List.of("978-1-23456-789-4"))
+                .build());
+
+        assertThat(pending.getPurchase().getTotalPrice()).isEqualTo(160L);
+        assertThat(pending.getUsedLoyaltyPoints()).isEqualTo(10L);
+        verify(booksRepository, never()).decrementStock(Mockito.any(), Mockito.any());
+        verify(clientsRepository, never()).updateLoyaltyPoints(Mockito.anyLong(), Mockito.anyLong(),
+                Mockito.anyLong());
+
+        assertThatThrownBy(() -> service.apply(pending))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("A purchase must be applied within a transaction");
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        PurchaseEntity purchase;
+        try {
+            purchase = service.apply(pending);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertThat(purchase.getClient().getLoyaltyPoints()).isEqualTo(91L);
+        verify(booksRepository).decrementStock(new long[] { 3L, 5L }, new long[] { 1L, 1L });
+        verify(clientsRepository).updateLoyaltyPoints(1L, -9L, 10L);
+    }
+
+    // Every book has enough stock on the database.
+    private static int[] stockTaken(InvocationOnMock invocation) {
+        int[] updated = new int[invocation.<long[]>getArgument(0).length];
+        Arrays.fill(updated, 1);
+        return updated;
+    }
+
+    private PricingRules getPricingRules() {
+        return new PricingRules(new ClassPathResource("pricing-rules.properties"));
     }
 
     private List<BookEntity> getSmallOrder() {
@@ -0,0 +1,68 @@
+package com.app.bookstore.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.inventory.BooksInventory;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.repositories.ClientsRepository;
+
+/**
+ * The purchase on the database: the stock and the points are updated in one
+ * transaction.
+ */
+@SpringBootTest
+public class PurchaseServiceTransactionTest {
+
+    @Autowired
+    private PurchaseService purchaseService;
+
+    @Autowired
+    private BooksRepository booksRepository;
+
+    @Autowired
+    private BooksInventory booksInventory;
+
+    @MockitoSpyBean
+    private ClientsRepository clientsRepository;
+
+    @Test
+    @Description("The stock taken is rolled back when the points of the client were used meanwhile")
+    public void testPurchaseIsRolledBack() {
+        List<BookEntity> before = booksRepository.findAllById(List.of(1L, 2L));
+        // The points are not on the database anymore when they are updated.
+        doReturn(0).when(clientsRepository).updateLoyaltyPoints(eq(2L), anyLong(), anyLong());
+
+        assertThatThrownBy(() -> purchaseService.run(OrderEntity.builder()
+                .clientId(2L)
+                .purchasedBook(List.of("9780451524935", "9780743273565"))
+                .freeBooks(List.of("9780743273565"))
+                .build()))
+                .isInstanceOf(PurchaseException.class)
+                .hasMessage("Not enough loyalty points to receive the free books");
+
+        assertThat(booksRepository.findAllById(List.of(1L, 2L)))
+                .extracting(BookEntity::getQuantity, BookEntity::isSold)
+                .containsExactlyElementsOf(before.stream()
+                        .map(book -> tuple(book.getQuantity(), book.isSold()))
+                        .toList());
+        // The units taken from the inventory are given back.
+        assertThat(booksInventory.available(1L)).isEqualTo(before.get(0).getQuantity());
+        assertThat(booksInventory.available(2L)).isEqualTo(before.get(1).getQuantity());
+    }
+}
@@ -0,0 +1,155 @@
+package com.app.bookstore.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Description;
+import org.springframework.core.io.ClassPathResource;
+
+import com.app.bookstore.catalog.BooksCatalog;
+import com.app.bookstore.catalog.CatalogChangedEvent;
+import com.app.bookstore.entities.BookEntity;
+import com.app.bookstore.entities.ClientEntity;
+import com.app.bookstore.entities.OrderEntity;
+import com.app.bookstore.entities.QuoteEntity;
+import com.app.bookstore.exceptions.PurchaseException;
+import com.app.bookstore.inventory.BooksInventory;
+import com.app.bookstore.pricing.PricingRules;
+import com.app.bookstore.pricing.QuoteCache;
+import com.app.bookstore.repositories.BooksRepository;
+import com.app.bookstore.repositories.ClientsRepository;
+import com.app.bookstore.types.BookType;
+
+@SpringBootTest
+public class QuoteServiceTest {
+
+    private final ClientsRepository clientsRepository = Mockito.mock(ClientsRepository.class);
+    private final BooksRepository booksRepository = Mockito.mock(BooksRepository.class);
+    private final ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+    private final BooksCatalog booksCatalog = new BooksCatalog(booksRepository);
+    private final QuoteCache quoteCache = new QuoteCache(16);
+
+    @Test
+    @Description("Sanity test")
+    public void sanity() {
+        assertThat(new QuoteService(null, null, null, null, null, null)).isNotNull();
+    }
+
+    @Test
+    @Description("The quote prices the order as the purchase and changes nothing")
+    public void testQuoteOrder() {
+        QuoteService service = getService(100L);
+
+        QuoteEntity quote = service.run(OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of("978-1-23456-789-2", "978-1-23456-789-4", "978-1-23456-789-4"))
+                .freeBooks(List.of("978-1-23456-789-4"))
+                .build());
+
+        // 1 old edition with 25% discount and 1 regular book with 10%.
+        assertThat(quote.getTotalPrice()).isEqualTo(465L);
+        assertThat(quote.getLoyaltyPoints()).isEqualTo(2L);
+        assertThat(quote.getUsedLoyaltyPoints()).isEqualTo(10L);
+        assertThat(quote.getCatalogVersion()).isEqualTo(1L);
+        assertThat(quote.getBooks()).extracting(BookEntity::getIsbn)
+                .containsExactly("978-1-23456-789-2", "978-1-23456-789-4");
+        assertThat(booksCatalog.current().getAvailableBooks()).extracting(BookEntity::getQuantity)
+                .containsExactly(2L, 2L);
+        verify(booksRepository, never()).saveAll(Mockito.anyList());
+        verify(clientsRepository, never()).save(Mockito.any());
+        verify(eventPublisher, never()).publishEvent(Mockito.any());
+    }
+
+    @Test
+    @Description("The same order is quoted once per version of the catalog, whatever the order of its lines")
+    public void testQuoteIsMemoized() {
+        QuoteService service = getService(100L);
+
+        QuoteEntity first = service.run(OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of("978-1-23456-789-2", "978-1-23456-789-4", "978-1-23456-789-4"))
+                .build());
+        QuoteEntity second = service.run(OrderEntity.builder()
+                .clientId(2L)
+                .purchasedBook(List.of("978-1-23456-789-4", "978-1-23456-789-2", "978-1-23456-789-4"))
+                .build());
+        assertThat(second).isSameAs(first);
+        assertThat(quoteCache.size()).isEqualTo(1);
+
+        booksCatalog.onCatalogChanged(new CatalogChangedEvent(Map.of("978-1-23456-789-4", 1L)));
+
+        assertThatThrownBy(() -> service.run(OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of("978-1-23456-789-4", "978-1-23456-789-2", "978-1-23456-789-4"))
+                .build()))
+                .isInstanceOf(PurchaseException.class)
+                .hasMessage("Not enough quantity for book with ISBN 978-1-23456-789-4");
+    }
+
+    @Test
+    @Description("The loyalty points of the client are checked although the quote is memoized")
+    public void testQuoteChecksLoyaltyPoints() {
+        QuoteService service = getService(10L);
+        OrderEntity order = OrderEntity.builder()
+                .clientId(1L)
+                .purchasedBook(List.of("978-1-23456-789-2", "978-1-23456-789-4"))
+                .freeBooks(List.of("978-1-23456-789-4"))
+                .build();
+
+        assertThat(service.run(order).getUsedLoyaltyPoints()).isEqualTo(10L);
+
+        when(clientsRepository.findById(1L)).thenReturn(Optional.of(ClientEntity.builder()
+                .id(1L)
+                .name("John Doe")
+                .loyaltyPoints(9L)
+                .build()));
+
+        assertThatThrownBy(() -> service.run(order))
+                .isInstanceOf(PurchaseException.class)
+                .hasMessage("Not enough loyalty points to receive the free books");
+    }
+
+    private QuoteService getService(long loyaltyPoints) {
+        when(clientsRepository.findById(Mockito.any())).thenReturn(Optional.of(ClientEntity.builder()
+                .id(1L)
+                .name("John Doe")
+                .loyaltyPoints(loyaltyPoints)
+                .build()));
+        when(booksRepository.findAllAvailableBooks()).thenReturn(List.of(
+                BookEntity.builder()
+                        .id(3l)
+                        .title("Old Edition Book")
+                        .quantity(2l)
+                        .type(BookType.OLD_EDITIONS)
+                        .price(200L)
+                        .isbn("978-1-23456-789-2")
+                        .build(),
+                BookEntity.builder()
+                        .id(5l)
+                        .title("Another Regular Book")
+                        .quantity(2l)
+                        .type(BookType.REGULAR)
+                        .price(350L)
+                        .isbn("978-1-23456-789-4")
+                        .build()));
+
+        PricingRules pricingRules = new PricingRules(new ClassPathResource("pricing-rules.properties"));
+        NormalizeOrderService normalizeOrderService = new NormalizeOrderService();
+        PurchaseService purchaseService = new PurchaseService(clientsRepository, booksRepository, booksCatalog,
+                normalizeOrderService, pricingRules, new BooksInventory(booksRepository, eventPublisher, true),
+                eventPublisher);
+        return new QuoteService(purchaseService, normalizeOrderService, booksCatalog, booksRepository,
+                pricingRules, quoteCache);
+    }
+}